@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchTransformer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEventBatch;
+
+/**
+ * Measures the conversion of a Kinesis record to its log events, from the
+ * compressed payload.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    public int eventCount;
+
+    @Param({ "0", "10" })
+    public int fieldCount;
+
+    @Param({ "0", "0.5" })
+    public double jsonRatio;
+
+    private final ElasticsearchTransformer transformer = new ElasticsearchTransformer();
+    private Record record;
+
+    @Setup
+    public void setUp() throws IOException {
+        record = new Record().withData(ByteBuffer.wrap(PayloadGenerator.generateCompressed(eventCount, fieldCount,
+                jsonRatio))).withSequenceNumber("1");
+    }
+
+    @Benchmark
+    public Collection<CloudWatchLogsEvent> toClass() throws IOException {
+        return transformer.toClass(record);
+    }
+
+    @Benchmark
+    public CloudWatchLogsEventBatch toBatch() {
+        return transformer.toBatch(record);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Generates CloudWatch Logs subscription payloads, such as those read from
+ * Kinesis, with a given number of log events and extracted fields, and a given
+ * share of messages that embed a JSON object. Payloads are the same for the
+ * same parameters.
+ */
+public final class PayloadGenerator {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String[] PATHS = { "/", "/index.html", "/images/logo.png", "/api/v1/users", "/health" };
+    private static final String[] LEVELS = { "DEBUG", "INFO", "WARN", "ERROR" };
+
+    private PayloadGenerator() {}
+
+    /**
+     * Returns the uncompressed JSON payload.
+     *
+     * @param eventCount The number of log events.
+     * @param fieldCount The number of extracted fields of each log event, or 0
+     *        for none.
+     * @param jsonRatio The share of messages that embed a JSON object, from 0
+     *        to 1.
+     */
+    public static byte[] generate(int eventCount, int fieldCount, double jsonRatio) throws IOException {
+        Random random = new Random(eventCount * 31 + fieldCount);
+        long timestamp = 1421116133213L;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeStringField("messageType", "DATA_MESSAGE");
+            generator.writeStringField("owner", "123456789012");
+            generator.writeStringField("logGroup", "/aws/lambda/benchmark");
+            generator.writeStringField("logStream", "2015/01/13/[$LATEST]0123456789abcdef0123456789abcdef");
+            generator.writeArrayFieldStart("subscriptionFilters");
+            generator.writeString("benchmark");
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("logEvents");
+            for (int i = 0; i < eventCount; i++) {
+                generator.writeStartObject();
+                generator.writeStringField("id", "3195310660696698337880902507980421114328961542429822" + (1000 + i));
+                generator.writeNumberField("timestamp", timestamp + i * 7);
+                generator.writeStringField("message", random.nextDouble() < jsonRatio ? jsonMessage(random, i)
+                        : accessLogMessage(random));
+
+                if (fieldCount > 0) {
+                    generator.writeObjectFieldStart("extractedFields");
+                    for (int field = 0; field < fieldCount; field++) {
+                        generator.writeStringField("field" + field, fieldValue(random, field));
+                    }
+                    generator.writeEndObject();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the payload compressed with gzip, as CloudWatch Logs puts it in
+     * Kinesis records.
+     */
+    public static byte[] generateCompressed(int eventCount, int fieldCount, double jsonRatio) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(generate(eventCount, fieldCount, jsonRatio));
+        }
+        return out.toByteArray();
+    }
+
+    private static String accessLogMessage(Random random) {
+        return "127.0.0." + random.nextInt(256) + " - frank [13/Jan/2015:02:08:53 +0000] \"GET "
+                + PATHS[random.nextInt(PATHS.length)] + " HTTP/1.1\" 200 " + random.nextInt(100000);
+    }
+
+    // like the lines logged by Lambda functions, with a JSON object after a prefix
+    private static String jsonMessage(Random random, int index) {
+        return "2015-01-13T02:08:53.213Z\t6b4f2a1e-9b2c-11e4-bd06-0800200c9a66\t{\"level\":\""
+                + LEVELS[random.nextInt(LEVELS.length)] + "\",\"requestId\":" + index + ",\"latency\":"
+                + random.nextDouble() * 100 + ",\"path\":\"" + PATHS[random.nextInt(PATHS.length)]
+                + "\",\"user\":{\"name\":\"frank\",\"roles\":[\"admin\",\"dev\"]},\"cached\":" + random.nextBoolean()
+                + "}";
+    }
+
+    private static String fieldValue(Random random, int field) {
+        switch (field % 3) {
+            case 0:
+                return String.valueOf(random.nextInt(100000));
+            case 1:
+                return "value-" + random.nextInt(1000);
+            default:
+                return "{\"nested\":" + random.nextInt(10) + "}";
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchTransformer;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchTransformerUtils;
+import com.amazonaws.services.logs.connectors.s3.S3Transformer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Measures the conversion of decoded log events to the output of each
+ * connector. Each operation converts every log event of a generated payload,
+ * and results are given per log event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(TransformBenchmark.EVENT_COUNT)
+public class TransformBenchmark {
+
+    static final int EVENT_COUNT = 1000;
+
+    @Param({ "0", "10", "50" })
+    public int fieldCount;
+
+    @Param({ "0", "0.5", "1" })
+    public double jsonRatio;
+
+    private final ElasticsearchTransformer elasticsearchTransformer = new ElasticsearchTransformer();
+    private final S3Transformer s3Transformer = new S3Transformer();
+    private List<CloudWatchLogsEvent> events;
+    private List<String> messages;
+
+    @Setup
+    public void setUp() throws IOException {
+        Record record = new Record().withData(ByteBuffer.wrap(PayloadGenerator.generateCompressed(EVENT_COUNT,
+                fieldCount, jsonRatio))).withSequenceNumber("1");
+        events = new ArrayList<>(elasticsearchTransformer.toClass(record));
+
+        messages = new ArrayList<>(events.size());
+        for (CloudWatchLogsEvent event : events) {
+            messages.add(event.getMessage());
+        }
+    }
+
+    @Benchmark
+    public void elasticsearchFromClass(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < events.size(); i++) {
+            blackhole.consume(elasticsearchTransformer.fromClass(events.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void s3FromClass(Blackhole blackhole) throws IOException {
+        for (int i = 0; i < events.size(); i++) {
+            blackhole.consume(s3Transformer.fromClass(events.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void extractJson(Blackhole blackhole) {
+        for (int i = 0; i < messages.size(); i++) {
+            blackhole.consume(ElasticsearchTransformerUtils.extractJson(messages.get(i)));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An in-heap buffer, like the BasicMemoryBuffer of the Kinesis Connector
+ * Library, whose record count and byte size limits are tuned while running.
+ *
+ * The limits grow additively while emits complete within the target latency
+ * without failures, and are halved when an emit is slower or has failures,
+ * within the configured bounds. The byte size limit keeps its configured ratio
+ * to the record count limit, and the time limit is left as configured. Only one
+ * decrease is made for the emits that were in flight together, so that a slow
+ * period does not shrink the limits once for each of them.
+ */
+public class AdaptiveMemoryBuffer<T> implements IAdaptiveBuffer<T> {
+
+    private static final Log LOG = LogFactory.getLog(AdaptiveMemoryBuffer.class);
+
+    // the limits grow by this fraction of the record count bounds on each fast emit
+    private static final int INCREASE_STEPS = 32;
+
+    private final long minRecordCount;
+    private final long maxRecordCount;
+    private final long increment;
+    private final double bytesPerRecord;
+    private final long targetLatency;
+    private final long millisecondsToBuffer;
+
+    private volatile long numRecordsToBuffer;
+    private long lastDecreaseTime;
+
+    private final List<T> buffer = new ArrayList<>();
+    private long byteCount;
+    private String firstSequenceNumber;
+    private String lastSequenceNumber;
+    private long previousFlushTimeMillisecond;
+
+    public AdaptiveMemoryBuffer(CloudWatchLogsConnectorConfiguration configuration) {
+        this.minRecordCount = Math.max(configuration.ADAPTIVE_BUFFER_MIN_RECORD_COUNT, 1);
+        this.maxRecordCount = Math.max(configuration.ADAPTIVE_BUFFER_MAX_RECORD_COUNT, minRecordCount);
+        this.increment = Math.max((maxRecordCount - minRecordCount) / INCREASE_STEPS, 1);
+        this.bytesPerRecord = (double) configuration.BUFFER_BYTE_SIZE_LIMIT
+                / Math.max(configuration.BUFFER_RECORD_COUNT_LIMIT, 1);
+        this.targetLatency = configuration.ADAPTIVE_BUFFER_TARGET_LATENCY;
+        this.millisecondsToBuffer = configuration.BUFFER_MILLISECONDS_LIMIT;
+
+        // starts from the configured limit
+        this.numRecordsToBuffer = Math.min(Math.max(configuration.BUFFER_RECORD_COUNT_LIMIT, minRecordCount),
+                maxRecordCount);
+        this.previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getBytesToBuffer() {
+        return (long) (numRecordsToBuffer * bytesPerRecord);
+    }
+
+    @Override
+    public long getNumRecordsToBuffer() {
+        return numRecordsToBuffer;
+    }
+
+    public long getMillisecondsToBuffer() {
+        return millisecondsToBuffer;
+    }
+
+    @Override
+    public void consumeRecord(T record, int recordBytes, String sequenceNumber) {
+        if (buffer.isEmpty()) {
+            firstSequenceNumber = sequenceNumber;
+        }
+        lastSequenceNumber = sequenceNumber;
+        buffer.add(record);
+        byteCount += recordBytes;
+    }
+
+    @Override
+    public void clear() {
+        buffer.clear();
+        byteCount = 0;
+        previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getFirstSequenceNumber() {
+        return firstSequenceNumber;
+    }
+
+    @Override
+    public String getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+
+    @Override
+    public boolean shouldFlush() {
+        long timelapseMillisecond = System.currentTimeMillis() - previousFlushTimeMillisecond;
+        return !buffer.isEmpty()
+                && (buffer.size() >= getNumRecordsToBuffer() || byteCount >= getBytesToBuffer()
+                        || timelapseMillisecond >= getMillisecondsToBuffer());
+    }
+
+    @Override
+    public List<T> getRecords() {
+        return buffer;
+    }
+
+    @Override
+    public synchronized void recordEmit(int records, int failures, long startTime, long endTime) {
+        long current = numRecordsToBuffer;
+
+        if (failures > 0 || endTime - startTime > targetLatency) {
+            // the emits that started before the last decrease were sent with the larger limits
+            if (startTime < lastDecreaseTime) {
+                return;
+            }
+            lastDecreaseTime = endTime;
+            numRecordsToBuffer = Math.max(current / 2, minRecordCount);
+        } else if (records * 2 >= current) {
+            // only grow limits that are reached, rather than those of buffers flushed on time
+            numRecordsToBuffer = Math.min(current + increment, maxRecordCount);
+        }
+
+        if (numRecordsToBuffer != current && LOG.isDebugEnabled()) {
+            LOG.debug("Buffer record count limit changed from " + current + " to " + numRecordsToBuffer
+                    + " after an emit of " + records + " records in " + (endTime - startTime) + " milliseconds with "
+                    + failures + " failures");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Sums the buffers of all the record processors of the JVM, and publishes the
+ * totals as the MBean com.amazonaws.services.logs.connectors:type=BufferMetrics.
+ */
+public final class BufferMetrics implements BufferMetricsMXBean {
+
+    private static final Log LOG = LogFactory.getLog(BufferMetrics.class);
+
+    private static final String OBJECT_NAME = "com.amazonaws.services.logs.connectors:type=BufferMetrics";
+
+    private static final BufferMetrics INSTANCE = register(new BufferMetrics());
+
+    private final AtomicLong estimatedHeapSize = new AtomicLong();
+    private final AtomicLong bufferedRecords = new AtomicLong();
+
+    private BufferMetrics() {
+    }
+
+    public static BufferMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private static BufferMetrics register(BufferMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // the metrics are still kept, and can be read from the instance
+            LOG.warn("Could not register " + OBJECT_NAME, e);
+        }
+        return metrics;
+    }
+
+    /**
+     * Adds (or removes, with negative values) buffered log events.
+     */
+    void add(long records, long heapSize) {
+        bufferedRecords.addAndGet(records);
+        estimatedHeapSize.addAndGet(heapSize);
+    }
+
+    @Override
+    public long getEstimatedHeapSize() {
+        return estimatedHeapSize.get();
+    }
+
+    @Override
+    public long getBufferedRecords() {
+        return bufferedRecords.get();
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+/**
+ * The buffers of the record processors of a worker, as seen through JMX.
+ */
+public interface BufferMetricsMXBean {
+
+    /**
+     * Returns the estimated heap taken by the buffered log events, in bytes.
+     */
+    long getEstimatedHeapSize();
+
+    /**
+     * Returns the number of buffered log events.
+     */
+    long getBufferedRecords();
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
+
+/**
+ * Adds the settings of the CloudWatch Logs connectors to those of the Kinesis
+ * Connector Library. Settings are read from the same properties, and missing
+ * or invalid values fall back to their defaults.
+ */
+public class CloudWatchLogsConnectorConfiguration extends KinesisConnectorConfiguration {
+
+    private static final Log LOG = LogFactory.getLog(CloudWatchLogsConnectorConfiguration.class);
+
+    public static final String PROP_PARALLEL_TRANSFORM = "parallelTransform";
+    public static final String PROP_PARALLEL_TRANSFORM_THREADS = "parallelTransformThreads";
+
+    public static final String PROP_MAX_PENDING_EMITS = "maxPendingEmits";
+
+    public static final String PROP_FILTER_OWNERS = "filterOwners";
+    public static final String PROP_FILTER_EXCLUDE_OWNERS = "filterExcludeOwners";
+    public static final String PROP_FILTER_LOG_GROUPS = "filterLogGroups";
+    public static final String PROP_FILTER_EXCLUDE_LOG_GROUPS = "filterExcludeLogGroups";
+    public static final String PROP_FILTER_LOG_STREAMS = "filterLogStreams";
+    public static final String PROP_FILTER_EXCLUDE_LOG_STREAMS = "filterExcludeLogStreams";
+    public static final String PROP_FILTER_START_TIME = "filterStartTime";
+    public static final String PROP_FILTER_END_TIME = "filterEndTime";
+    public static final String PROP_FILTER_MAX_AGE = "filterMaxAge";
+    public static final String PROP_FILTER_MESSAGES = "filterMessages";
+    public static final String PROP_FILTER_EXCLUDE_MESSAGES = "filterExcludeMessages";
+    public static final String PROP_FILTER_FIELDS = "filterFields";
+    public static final String PROP_FILTER_EXCLUDE_FIELDS = "filterExcludeFields";
+
+    public static final String PROP_DEDUPLICATE = "deduplicate";
+    public static final String PROP_DEDUPLICATION_WINDOW = "deduplicationWindow";
+    public static final String PROP_DEDUPLICATION_EXPECTED_EVENTS = "deduplicationExpectedEvents";
+    public static final String PROP_DEDUPLICATION_FALSE_POSITIVE_RATE = "deduplicationFalsePositiveRate";
+
+    public static final String PROP_ADAPTIVE_BUFFER = "adaptiveBuffer";
+    public static final String PROP_ADAPTIVE_BUFFER_MIN_RECORD_COUNT = "adaptiveBufferMinRecordCount";
+    public static final String PROP_ADAPTIVE_BUFFER_MAX_RECORD_COUNT = "adaptiveBufferMaxRecordCount";
+    public static final String PROP_ADAPTIVE_BUFFER_TARGET_LATENCY = "adaptiveBufferTargetLatency";
+
+    public static final String PROP_S3_OFF_HEAP_BUFFER = "s3OffHeapBuffer";
+    public static final String PROP_S3_BUFFER_DIRECTORY = "s3BufferDirectory";
+    public static final String PROP_S3_OUTPUT_FORMAT = "s3OutputFormat";
+    public static final String PROP_S3_COMPRESSION = "s3Compression";
+    public static final String PROP_S3_MULTIPART_PART_SIZE = "s3MultipartPartSize";
+    public static final String PROP_S3_PARTITIONED = "s3Partitioned";
+    public static final String PROP_S3_MAX_OPEN_PARTITIONS = "s3MaxOpenPartitions";
+    public static final String PROP_S3_PARTITION_BYTE_SIZE_LIMIT = "s3PartitionByteSizeLimit";
+
+    public static final String PROP_FAN_OUT_SINKS = "fanOutSinks";
+
+    public static final String PROP_ELASTICSEARCH_INDEX_PREFIX = "elasticsearchIndexPrefix";
+    public static final String PROP_ELASTICSEARCH_INDEX_ROLLOVER = "elasticsearchIndexRollover";
+    public static final String PROP_ELASTICSEARCH_BULK_REQUEST_SIZE = "elasticsearchBulkRequestSize";
+    public static final String PROP_ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS = "elasticsearchMaxInFlightRequests";
+    public static final String PROP_ELASTICSEARCH_MAX_RETRIES = "elasticsearchMaxRetries";
+    public static final String PROP_ELASTICSEARCH_RETRY_INITIAL_BACKOFF = "elasticsearchRetryInitialBackoff";
+    public static final String PROP_ELASTICSEARCH_RETRY_MAX_BACKOFF = "elasticsearchRetryMaxBackoff";
+    public static final String PROP_ELASTICSEARCH_RETRY_BUDGET_PERCENT = "elasticsearchRetryBudgetPercent";
+    public static final String PROP_ELASTICSEARCH_SPILL_DIRECTORY = "elasticsearchSpillDirectory";
+
+    public static final String PROP_METRICS_FACTORY = "metricsFactory";
+    public static final String PROP_METRICS_LEVEL = "metricsLevel";
+    public static final String PROP_METRICS_JMX = "metricsJmx";
+    public static final String PROP_METRICS_PROMETHEUS_PORT = "metricsPrometheusPort";
+
+    public static final boolean DEFAULT_PARALLEL_TRANSFORM = false;
+    public static final int DEFAULT_PARALLEL_TRANSFORM_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_MAX_PENDING_EMITS = 4;
+    public static final String DEFAULT_FILTER_OWNERS = "";
+    public static final String DEFAULT_FILTER_EXCLUDE_OWNERS = "";
+    public static final String DEFAULT_FILTER_LOG_GROUPS = "";
+    public static final String DEFAULT_FILTER_EXCLUDE_LOG_GROUPS = "";
+    public static final String DEFAULT_FILTER_LOG_STREAMS = "";
+    public static final String DEFAULT_FILTER_EXCLUDE_LOG_STREAMS = "";
+    public static final long DEFAULT_FILTER_START_TIME = 0;
+    public static final long DEFAULT_FILTER_END_TIME = 0;
+    public static final long DEFAULT_FILTER_MAX_AGE = 0;
+    public static final String DEFAULT_FILTER_MESSAGES = "";
+    public static final String DEFAULT_FILTER_EXCLUDE_MESSAGES = "";
+    public static final String DEFAULT_FILTER_FIELDS = "";
+    public static final String DEFAULT_FILTER_EXCLUDE_FIELDS = "";
+    public static final boolean DEFAULT_DEDUPLICATE = false;
+    public static final int DEFAULT_DEDUPLICATION_WINDOW = 60 * 60 * 1000;
+    public static final int DEFAULT_DEDUPLICATION_EXPECTED_EVENTS = 1000000;
+    public static final double DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE = 0.0001;
+    public static final boolean DEFAULT_ADAPTIVE_BUFFER = false;
+    public static final int DEFAULT_ADAPTIVE_BUFFER_MIN_RECORD_COUNT = 10;
+    public static final int DEFAULT_ADAPTIVE_BUFFER_MAX_RECORD_COUNT = 10000;
+    public static final int DEFAULT_ADAPTIVE_BUFFER_TARGET_LATENCY = 1000;
+    public static final boolean DEFAULT_S3_OFF_HEAP_BUFFER = false;
+    public static final String DEFAULT_S3_BUFFER_DIRECTORY = System.getProperty("java.io.tmpdir");
+    public static final String DEFAULT_S3_OUTPUT_FORMAT = "json";
+    public static final String DEFAULT_S3_COMPRESSION = "none";
+    public static final int DEFAULT_S3_MULTIPART_PART_SIZE = 8 * 1024 * 1024;
+    public static final boolean DEFAULT_S3_PARTITIONED = false;
+    public static final int DEFAULT_S3_MAX_OPEN_PARTITIONS = 100;
+    public static final int DEFAULT_S3_PARTITION_BYTE_SIZE_LIMIT = 5 * 1024 * 1024;
+    public static final String DEFAULT_FAN_OUT_SINKS = "elasticsearch, s3";
+    public static final String DEFAULT_ELASTICSEARCH_INDEX_PREFIX = "cwl-";
+    public static final String DEFAULT_ELASTICSEARCH_INDEX_ROLLOVER = "daily";
+    public static final int DEFAULT_ELASTICSEARCH_BULK_REQUEST_SIZE = 500;
+    public static final int DEFAULT_ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS = 8;
+    public static final int DEFAULT_ELASTICSEARCH_MAX_RETRIES = 5;
+    public static final int DEFAULT_ELASTICSEARCH_RETRY_INITIAL_BACKOFF = 200;
+    public static final int DEFAULT_ELASTICSEARCH_RETRY_MAX_BACKOFF = 30000;
+    public static final int DEFAULT_ELASTICSEARCH_RETRY_BUDGET_PERCENT = 20;
+    public static final String DEFAULT_ELASTICSEARCH_SPILL_DIRECTORY = "elasticsearch-spill";
+    public static final String DEFAULT_METRICS_FACTORY = "local";
+    public static final String DEFAULT_METRICS_LEVEL = "DETAILED";
+    public static final boolean DEFAULT_METRICS_JMX = true;
+    public static final int DEFAULT_METRICS_PROMETHEUS_PORT = 0;
+
+    public final boolean PARALLEL_TRANSFORM;
+    public final int PARALLEL_TRANSFORM_THREADS;
+    public final int MAX_PENDING_EMITS;
+    public final String FILTER_OWNERS;
+    public final String FILTER_EXCLUDE_OWNERS;
+    public final String FILTER_LOG_GROUPS;
+    public final String FILTER_EXCLUDE_LOG_GROUPS;
+    public final String FILTER_LOG_STREAMS;
+    public final String FILTER_EXCLUDE_LOG_STREAMS;
+    public final long FILTER_START_TIME;
+    public final long FILTER_END_TIME;
+    public final long FILTER_MAX_AGE;
+    public final String FILTER_MESSAGES;
+    public final String FILTER_EXCLUDE_MESSAGES;
+    public final String FILTER_FIELDS;
+    public final String FILTER_EXCLUDE_FIELDS;
+    public final boolean DEDUPLICATE;
+    public final int DEDUPLICATION_WINDOW;
+    public final int DEDUPLICATION_EXPECTED_EVENTS;
+    public final double DEDUPLICATION_FALSE_POSITIVE_RATE;
+    public final boolean ADAPTIVE_BUFFER;
+    public final int ADAPTIVE_BUFFER_MIN_RECORD_COUNT;
+    public final int ADAPTIVE_BUFFER_MAX_RECORD_COUNT;
+    public final int ADAPTIVE_BUFFER_TARGET_LATENCY;
+    public final boolean S3_OFF_HEAP_BUFFER;
+    public final String S3_BUFFER_DIRECTORY;
+    public final String S3_OUTPUT_FORMAT;
+    public final String S3_COMPRESSION;
+    public final int S3_MULTIPART_PART_SIZE;
+    public final boolean S3_PARTITIONED;
+    public final int S3_MAX_OPEN_PARTITIONS;
+    public final int S3_PARTITION_BYTE_SIZE_LIMIT;
+    public final String FAN_OUT_SINKS;
+    public final String ELASTICSEARCH_INDEX_PREFIX;
+    public final String ELASTICSEARCH_INDEX_ROLLOVER;
+    public final int ELASTICSEARCH_BULK_REQUEST_SIZE;
+    public final int ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS;
+    public final int ELASTICSEARCH_MAX_RETRIES;
+    public final int ELASTICSEARCH_RETRY_INITIAL_BACKOFF;
+    public final int ELASTICSEARCH_RETRY_MAX_BACKOFF;
+    public final int ELASTICSEARCH_RETRY_BUDGET_PERCENT;
+    public final String ELASTICSEARCH_SPILL_DIRECTORY;
+    public final String METRICS_FACTORY;
+    public final String METRICS_LEVEL;
+    public final boolean METRICS_JMX;
+    public final int METRICS_PROMETHEUS_PORT;
+
+    private final Properties properties;
+
+    public CloudWatchLogsConnectorConfiguration(Properties properties, AWSCredentialsProvider credentialsProvider) {
+        super(properties, credentialsProvider);
+        this.properties = properties;
+
+        PARALLEL_TRANSFORM = getBooleanProperty(PROP_PARALLEL_TRANSFORM, DEFAULT_PARALLEL_TRANSFORM);
+        PARALLEL_TRANSFORM_THREADS = getIntegerProperty(PROP_PARALLEL_TRANSFORM_THREADS,
+                DEFAULT_PARALLEL_TRANSFORM_THREADS);
+        MAX_PENDING_EMITS = getIntegerProperty(PROP_MAX_PENDING_EMITS, DEFAULT_MAX_PENDING_EMITS);
+        FILTER_OWNERS = properties.getProperty(PROP_FILTER_OWNERS, DEFAULT_FILTER_OWNERS).trim();
+        FILTER_EXCLUDE_OWNERS = properties.getProperty(PROP_FILTER_EXCLUDE_OWNERS,
+                DEFAULT_FILTER_EXCLUDE_OWNERS).trim();
+        FILTER_LOG_GROUPS = properties.getProperty(PROP_FILTER_LOG_GROUPS, DEFAULT_FILTER_LOG_GROUPS).trim();
+        FILTER_EXCLUDE_LOG_GROUPS = properties.getProperty(PROP_FILTER_EXCLUDE_LOG_GROUPS,
+                DEFAULT_FILTER_EXCLUDE_LOG_GROUPS).trim();
+        FILTER_LOG_STREAMS = properties.getProperty(PROP_FILTER_LOG_STREAMS, DEFAULT_FILTER_LOG_STREAMS).trim();
+        FILTER_EXCLUDE_LOG_STREAMS = properties.getProperty(PROP_FILTER_EXCLUDE_LOG_STREAMS,
+                DEFAULT_FILTER_EXCLUDE_LOG_STREAMS).trim();
+        FILTER_START_TIME = getLongProperty(PROP_FILTER_START_TIME, DEFAULT_FILTER_START_TIME);
+        FILTER_END_TIME = getLongProperty(PROP_FILTER_END_TIME, DEFAULT_FILTER_END_TIME);
+        FILTER_MAX_AGE = getLongProperty(PROP_FILTER_MAX_AGE, DEFAULT_FILTER_MAX_AGE);
+        FILTER_MESSAGES = properties.getProperty(PROP_FILTER_MESSAGES, DEFAULT_FILTER_MESSAGES).trim();
+        FILTER_EXCLUDE_MESSAGES = properties.getProperty(PROP_FILTER_EXCLUDE_MESSAGES,
+                DEFAULT_FILTER_EXCLUDE_MESSAGES).trim();
+        FILTER_FIELDS = properties.getProperty(PROP_FILTER_FIELDS, DEFAULT_FILTER_FIELDS).trim();
+        FILTER_EXCLUDE_FIELDS = properties.getProperty(PROP_FILTER_EXCLUDE_FIELDS,
+                DEFAULT_FILTER_EXCLUDE_FIELDS).trim();
+        DEDUPLICATE = getBooleanProperty(PROP_DEDUPLICATE, DEFAULT_DEDUPLICATE);
+        DEDUPLICATION_WINDOW = getIntegerProperty(PROP_DEDUPLICATION_WINDOW, DEFAULT_DEDUPLICATION_WINDOW);
+        DEDUPLICATION_EXPECTED_EVENTS = getIntegerProperty(PROP_DEDUPLICATION_EXPECTED_EVENTS,
+                DEFAULT_DEDUPLICATION_EXPECTED_EVENTS);
+        DEDUPLICATION_FALSE_POSITIVE_RATE = getDoubleProperty(PROP_DEDUPLICATION_FALSE_POSITIVE_RATE,
+                DEFAULT_DEDUPLICATION_FALSE_POSITIVE_RATE);
+        ADAPTIVE_BUFFER = getBooleanProperty(PROP_ADAPTIVE_BUFFER, DEFAULT_ADAPTIVE_BUFFER);
+        ADAPTIVE_BUFFER_MIN_RECORD_COUNT = getIntegerProperty(PROP_ADAPTIVE_BUFFER_MIN_RECORD_COUNT,
+                DEFAULT_ADAPTIVE_BUFFER_MIN_RECORD_COUNT);
+        ADAPTIVE_BUFFER_MAX_RECORD_COUNT = getIntegerProperty(PROP_ADAPTIVE_BUFFER_MAX_RECORD_COUNT,
+                DEFAULT_ADAPTIVE_BUFFER_MAX_RECORD_COUNT);
+        ADAPTIVE_BUFFER_TARGET_LATENCY = getIntegerProperty(PROP_ADAPTIVE_BUFFER_TARGET_LATENCY,
+                DEFAULT_ADAPTIVE_BUFFER_TARGET_LATENCY);
+        S3_OFF_HEAP_BUFFER = getBooleanProperty(PROP_S3_OFF_HEAP_BUFFER, DEFAULT_S3_OFF_HEAP_BUFFER);
+        S3_BUFFER_DIRECTORY = properties.getProperty(PROP_S3_BUFFER_DIRECTORY, DEFAULT_S3_BUFFER_DIRECTORY).trim();
+        S3_OUTPUT_FORMAT = properties.getProperty(PROP_S3_OUTPUT_FORMAT, DEFAULT_S3_OUTPUT_FORMAT).trim();
+        S3_COMPRESSION = properties.getProperty(PROP_S3_COMPRESSION, DEFAULT_S3_COMPRESSION).trim();
+        S3_MULTIPART_PART_SIZE = getIntegerProperty(PROP_S3_MULTIPART_PART_SIZE, DEFAULT_S3_MULTIPART_PART_SIZE);
+        S3_PARTITIONED = getBooleanProperty(PROP_S3_PARTITIONED, DEFAULT_S3_PARTITIONED);
+        S3_MAX_OPEN_PARTITIONS = getIntegerProperty(PROP_S3_MAX_OPEN_PARTITIONS, DEFAULT_S3_MAX_OPEN_PARTITIONS);
+        S3_PARTITION_BYTE_SIZE_LIMIT = getIntegerProperty(PROP_S3_PARTITION_BYTE_SIZE_LIMIT,
+                DEFAULT_S3_PARTITION_BYTE_SIZE_LIMIT);
+        FAN_OUT_SINKS = properties.getProperty(PROP_FAN_OUT_SINKS, DEFAULT_FAN_OUT_SINKS).trim();
+        ELASTICSEARCH_INDEX_PREFIX = properties.getProperty(PROP_ELASTICSEARCH_INDEX_PREFIX,
+                DEFAULT_ELASTICSEARCH_INDEX_PREFIX).trim();
+        ELASTICSEARCH_INDEX_ROLLOVER = properties.getProperty(PROP_ELASTICSEARCH_INDEX_ROLLOVER,
+                DEFAULT_ELASTICSEARCH_INDEX_ROLLOVER).trim();
+        ELASTICSEARCH_BULK_REQUEST_SIZE = getIntegerProperty(PROP_ELASTICSEARCH_BULK_REQUEST_SIZE,
+                DEFAULT_ELASTICSEARCH_BULK_REQUEST_SIZE);
+        ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS = getIntegerProperty(PROP_ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS,
+                DEFAULT_ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS);
+        ELASTICSEARCH_MAX_RETRIES = getIntegerProperty(PROP_ELASTICSEARCH_MAX_RETRIES,
+                DEFAULT_ELASTICSEARCH_MAX_RETRIES);
+        ELASTICSEARCH_RETRY_INITIAL_BACKOFF = getIntegerProperty(PROP_ELASTICSEARCH_RETRY_INITIAL_BACKOFF,
+                DEFAULT_ELASTICSEARCH_RETRY_INITIAL_BACKOFF);
+        ELASTICSEARCH_RETRY_MAX_BACKOFF = getIntegerProperty(PROP_ELASTICSEARCH_RETRY_MAX_BACKOFF,
+                DEFAULT_ELASTICSEARCH_RETRY_MAX_BACKOFF);
+        ELASTICSEARCH_RETRY_BUDGET_PERCENT = getIntegerProperty(PROP_ELASTICSEARCH_RETRY_BUDGET_PERCENT,
+                DEFAULT_ELASTICSEARCH_RETRY_BUDGET_PERCENT);
+        ELASTICSEARCH_SPILL_DIRECTORY = properties.getProperty(PROP_ELASTICSEARCH_SPILL_DIRECTORY,
+                DEFAULT_ELASTICSEARCH_SPILL_DIRECTORY).trim();
+        METRICS_FACTORY = properties.getProperty(PROP_METRICS_FACTORY, DEFAULT_METRICS_FACTORY).trim();
+        METRICS_LEVEL = properties.getProperty(PROP_METRICS_LEVEL, DEFAULT_METRICS_LEVEL).trim();
+        METRICS_JMX = getBooleanProperty(PROP_METRICS_JMX, DEFAULT_METRICS_JMX);
+        METRICS_PROMETHEUS_PORT = getIntegerProperty(PROP_METRICS_PROMETHEUS_PORT, DEFAULT_METRICS_PROMETHEUS_PORT);
+    }
+
+    /**
+     * Returns a configuration where the properties named prefix + name take
+     * the place of those named name, such as s3.bufferMillisecondsLimit for
+     * the S3 sink of a fan-out connector.
+     */
+    public CloudWatchLogsConnectorConfiguration withOverrides(String prefix) {
+        Properties overridden = new Properties();
+        overridden.putAll(properties);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix) && name.length() > prefix.length()) {
+                overridden.setProperty(name.substring(prefix.length()), properties.getProperty(name));
+            }
+        }
+        return new CloudWatchLogsConnectorConfiguration(overridden, AWS_CREDENTIALS_PROVIDER);
+    }
+
+    /**
+     * Returns the raw value of a property, or null if it is not set.
+     */
+    public String getProperty(String property) {
+        return properties.getProperty(property);
+    }
+
+    private boolean getBooleanProperty(String property, boolean defaultValue) {
+        String value = properties.getProperty(property);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private int getIntegerProperty(String property, int defaultValue) {
+        String value = properties.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid value for " + property + ": " + value + ". Using the default value " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private long getLongProperty(String property, long defaultValue) {
+        String value = properties.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid value for " + property + ": " + value + ". Using the default value " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private double getDoubleProperty(String property, double defaultValue) {
+        String value = properties.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.error("Invalid value for " + property + ": " + value + ". Using the default value " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
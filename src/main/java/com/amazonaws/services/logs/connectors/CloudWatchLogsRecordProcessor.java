@@ -0,0 +1,688 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.InvalidStateException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.KinesisClientLibDependencyException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.ShutdownException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.ThrottlingException;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessor;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessorCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.lib.worker.ShutdownReason;
+import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
+import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
+import com.amazonaws.services.kinesis.connectors.interfaces.ICollectionTransformer;
+import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.kinesis.connectors.interfaces.ITransformer;
+import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.connectors.ConnectorMetrics.Stage;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
+
+/**
+ * Record processor for CloudWatch Logs subscription streams. It follows the
+ * flow of the Kinesis Connector Library processor (transform, filter, buffer,
+ * then emit and checkpoint once the buffer is full), and can optionally run the
+ * transformer on a shared ForkJoinPool: the records of a GetRecords batch are
+ * then uncompressed and parsed in parallel, and buffered log events are
+ * converted to the output type in parallel, without changing their order.
+ *
+ * With an {@link IAsyncEmitter}, full buffers are handed to the emitter without
+ * waiting for them to be acknowledged. The checkpoint only moves past a buffer
+ * once it and every earlier buffer have been acknowledged, and the processor
+ * blocks when too many of its buffers are pending.
+ *
+ * An {@link IAdaptiveBuffer} is told of the latency and failures of each emit.
+ *
+ * Buffers are given the estimated heap size of each log event rather than the
+ * size of the compressed record it came from, so that their byte size limit
+ * bounds the memory they hold. The totals are published through
+ * {@link BufferMetrics}.
+ *
+ * An {@link ISerializedBuffer} keeps the log events serialized, and its bytes
+ * are handed to an {@link ISerializedEmitter} without being transformed again.
+ *
+ * The partitions of an {@link IPartitionedBuffer} are emitted one after another
+ * to an {@link IPartitionedEmitter}, and checkpointed together.
+ *
+ * The time taken by each stage, the log events and bytes read, the fill level
+ * of the buffer and the lag of checkpoints are recorded to
+ * {@link ConnectorMetrics}.
+ *
+ * A filter that is an {@link ICheckpointListener} is told the ids of the log
+ * events it kept once they have been emitted and checkpointed.
+ */
+public class CloudWatchLogsRecordProcessor<U> implements IRecordProcessor {
+
+    private static final Log LOG = LogFactory.getLog(CloudWatchLogsRecordProcessor.class);
+
+    private final IBuffer<CloudWatchLogsEvent> buffer;
+    private final IFilter<CloudWatchLogsEvent> filter;
+    private final IEmitter<U> emitter;
+    private final ITransformerBase<CloudWatchLogsEvent, U> transformer;
+    private final ForkJoinPool transformPool;
+
+    // set when the buffer tunes its limits to the emitter
+    private final IAdaptiveBuffer<CloudWatchLogsEvent> adaptiveBuffer;
+
+    // set when the buffer only keeps serialized log events
+    private final ISerializedBuffer<CloudWatchLogsEvent> serializedBuffer;
+
+    // set when the buffer splits the log events into partitions
+    private final IPartitionedBuffer<CloudWatchLogsEvent> partitionedBuffer;
+
+    private final BufferMetrics bufferMetrics = BufferMetrics.getInstance();
+    private long bufferedRecords;
+    private long bufferedHeapSize;
+    private long publishedRecords;
+    private long publishedHeapSize;
+
+    private final ConnectorMetrics metrics = ConnectorMetrics.getInstance();
+
+    // when the last buffered record arrived in the stream, or 0 if unknown
+    private long bufferedArrivalTime;
+
+    // set when the filter is told of the checkpointed log events, along with their ids
+    private final ICheckpointListener checkpointListener;
+    private List<String> bufferedIds = new ArrayList<>();
+
+    // set when the emitter can send buffers without waiting for them
+    private final IAsyncEmitter<U> asyncEmitter;
+    private final Deque<PendingEmit> pendingEmits = new ArrayDeque<>();
+    private final int maxPendingEmits;
+
+    private final int retryLimit;
+    private final long backoffInterval;
+
+    private boolean isShutdown = false;
+    private String shardId;
+
+    /**
+     * @param transformPool The pool to run the transformer on, or null to run it on
+     *        the processor thread.
+     */
+    public CloudWatchLogsRecordProcessor(IBuffer<CloudWatchLogsEvent> buffer, IFilter<CloudWatchLogsEvent> filter,
+            IEmitter<U> emitter, ITransformerBase<CloudWatchLogsEvent, U> transformer,
+            CloudWatchLogsConnectorConfiguration configuration, ForkJoinPool transformPool) {
+        if (buffer == null || filter == null || emitter == null || transformer == null) {
+            throw new IllegalArgumentException("buffer, filter, emitter, and transformer must not be null");
+        }
+
+        this.buffer = buffer;
+        this.filter = filter;
+        this.checkpointListener = filter instanceof ICheckpointListener ? (ICheckpointListener) filter : null;
+        this.emitter = emitter;
+        this.transformer = transformer;
+
+        // only the CloudWatch Logs transformer knows how to split its work
+        this.transformPool = transformer instanceof CloudWatchLogsSubscriptionTransformer ? transformPool : null;
+        if (transformer instanceof CloudWatchLogsSubscriptionTransformer) {
+            ((CloudWatchLogsSubscriptionTransformer<?>) transformer).setDecodeMetrics(metrics);
+        }
+
+        this.asyncEmitter = emitter instanceof IAsyncEmitter ? (IAsyncEmitter<U>) emitter : null;
+        this.adaptiveBuffer = buffer instanceof IAdaptiveBuffer ? (IAdaptiveBuffer<CloudWatchLogsEvent>) buffer
+                : null;
+
+        if (buffer instanceof ISerializedBuffer) {
+            if (!(emitter instanceof ISerializedEmitter)) {
+                throw new IllegalArgumentException("A serialized buffer requires an ISerializedEmitter");
+            }
+            this.serializedBuffer = (ISerializedBuffer<CloudWatchLogsEvent>) buffer;
+        } else {
+            this.serializedBuffer = null;
+        }
+
+        if (buffer instanceof IPartitionedBuffer) {
+            if (!(emitter instanceof IPartitionedEmitter)) {
+                throw new IllegalArgumentException("A partitioned buffer requires an IPartitionedEmitter");
+            }
+            this.partitionedBuffer = (IPartitionedBuffer<CloudWatchLogsEvent>) buffer;
+        } else {
+            this.partitionedBuffer = null;
+        }
+        this.maxPendingEmits = Math.max(configuration.MAX_PENDING_EMITS, 1);
+
+        // limit must be greater than zero
+        this.retryLimit = configuration.RETRY_LIMIT <= 0 ? 1 : configuration.RETRY_LIMIT;
+        this.backoffInterval = configuration.BACKOFF_INTERVAL;
+    }
+
+    @Override
+    public void initialize(String shardId) {
+        this.shardId = shardId;
+    }
+
+    @Override
+    public void processRecords(List<Record> records, IRecordProcessorCheckpointer checkpointer) {
+        // note that records from the same shard are processed in order
+        if (isShutdown) {
+            LOG.warn("processRecords called on shutdown record processor for shardId: " + shardId);
+            return;
+        }
+        if (shardId == null) {
+            throw new IllegalStateException("Record processor not initialized");
+        }
+
+        processTransformedRecords(records, transformRecords(records), checkpointer);
+    }
+
+    /**
+     * Filters, buffers and emits the log events of records that have already
+     * been transformed, such as by the {@link FanOutRecordProcessor} that this
+     * processor is a sink of.
+     */
+    void processTransformedRecords(List<Record> records, List<Collection<CloudWatchLogsEvent>> transformedRecords,
+            IRecordProcessorCheckpointer checkpointer) {
+        long startTime = System.nanoTime();
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            for (CloudWatchLogsEvent logEvent : transformedRecords.get(i)) {
+                filterAndBufferRecord(logEvent, record);
+            }
+        }
+        metrics.recordStage(Stage.BUFFER, System.nanoTime() - startTime);
+        metrics.recordBufferFill(bufferedRecords, buffer.getNumRecordsToBuffer(), bufferedHeapSize,
+                buffer.getBytesToBuffer());
+        publishBufferMetrics();
+
+        if (buffer.shouldFlush()) {
+            if (serializedBuffer != null) {
+                emitSerialized(checkpointer);
+                return;
+            }
+            if (partitionedBuffer != null) {
+                emitPartitions(checkpointer);
+                return;
+            }
+
+            List<U> emitItems = transformToOutput(buffer.getRecords());
+            if (asyncEmitter != null) {
+                emitAsync(emitItems);
+            } else {
+                emit(checkpointer, emitItems);
+            }
+        }
+
+        if (asyncEmitter != null) {
+            checkpointAcknowledged(checkpointer, false);
+        }
+    }
+
+    /**
+     * Returns whether some of the log events given to this processor have
+     * neither been emitted nor failed yet.
+     */
+    boolean hasUnacknowledgedRecords() {
+        return bufferedRecords > 0 || !pendingEmits.isEmpty();
+    }
+
+    /**
+     * Converts each record to its log events, keeping the order of the records.
+     */
+    List<Collection<CloudWatchLogsEvent>> transformRecords(List<Record> records) {
+        List<Collection<CloudWatchLogsEvent>> transformedRecords;
+        if (transformPool != null && records.size() > 1) {
+            transformedRecords = getSubscriptionTransformer().toClass(records, transformPool);
+        } else {
+            transformedRecords = new ArrayList<>(records.size());
+            for (Record record : records) {
+                try {
+                    transformedRecords.add(transformRecord(record));
+                } catch (IOException e) {
+                    LOG.error(e);
+                    transformedRecords.add(Collections.<CloudWatchLogsEvent> emptyList());
+                }
+            }
+        }
+
+        metrics.recordDecoded(records, transformedRecords);
+        return transformedRecords;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<CloudWatchLogsEvent> transformRecord(Record record) throws IOException {
+        if (transformer instanceof ICollectionTransformer) {
+            return ((ICollectionTransformer<CloudWatchLogsEvent, U>) transformer).toClass(record);
+        } else if (transformer instanceof ITransformer) {
+            return Collections.singletonList(((ITransformer<CloudWatchLogsEvent, U>) transformer).toClass(record));
+        } else {
+            throw new RuntimeException("Transformer must implement ITransformer or ICollectionTransformer");
+        }
+    }
+
+    private void filterAndBufferRecord(CloudWatchLogsEvent logEvent, Record record) {
+        if (filter.keepRecord(logEvent)) {
+            // serialized log events are no longer on the heap
+            long heapSize = serializedBuffer != null ? 0 : logEvent.getEstimatedSize();
+            buffer.consumeRecord(logEvent, (int) Math.min(heapSize, Integer.MAX_VALUE), record.getSequenceNumber());
+            bufferedRecords++;
+            bufferedHeapSize += heapSize;
+            bufferedArrivalTime = getArrivalTime(record);
+            if (checkpointListener != null && logEvent.getId() != null) {
+                bufferedIds.add(logEvent.getId());
+            }
+        }
+    }
+
+    private static long getArrivalTime(Record record) {
+        Date arrivalTime = record.getApproximateArrivalTimestamp();
+        return arrivalTime == null ? 0 : arrivalTime.getTime();
+    }
+
+    private void clearBuffer() {
+        buffer.clear();
+        bufferedRecords = 0;
+        bufferedHeapSize = 0;
+        bufferedArrivalTime = 0;
+        takeBufferedIds();
+        publishBufferMetrics();
+    }
+
+    /**
+     * Returns the ids of the buffered log events, and forgets them.
+     */
+    private List<String> takeBufferedIds() {
+        List<String> ids = bufferedIds;
+        if (!ids.isEmpty()) {
+            bufferedIds = new ArrayList<>();
+        }
+        return ids;
+    }
+
+    /**
+     * Records a checkpoint past the given log events, which are then done with.
+     */
+    private void onCheckpoint(long arrivalTime, List<String> ids) {
+        metrics.recordCheckpoint(shardId, arrivalTime);
+        if (checkpointListener != null && !ids.isEmpty()) {
+            checkpointListener.onCheckpoint(ids);
+        }
+    }
+
+    /**
+     * Adds the changes to the buffer since the last call to the totals of the
+     * worker, once per batch of records rather than once per log event.
+     */
+    private void publishBufferMetrics() {
+        bufferMetrics.add(bufferedRecords - publishedRecords, bufferedHeapSize - publishedHeapSize);
+        publishedRecords = bufferedRecords;
+        publishedHeapSize = bufferedHeapSize;
+    }
+
+    private List<U> transformToOutput(List<CloudWatchLogsEvent> items) {
+        long startTime = System.nanoTime();
+        List<U> emitItems;
+        if (transformPool != null && items.size() > 1) {
+            emitItems = getSubscriptionTransformer().fromClass(items, transformPool);
+        } else {
+            emitItems = new ArrayList<>(items.size());
+            for (CloudWatchLogsEvent item : items) {
+                try {
+                    emitItems.add(transformer.fromClass(item));
+                } catch (IOException e) {
+                    LOG.error("Failed to transform record " + item + " to output type", e);
+                }
+            }
+        }
+
+        metrics.recordStage(Stage.TRANSFORM, System.nanoTime() - startTime);
+        return emitItems;
+    }
+
+    /**
+     * Records the latency of an emit, and tells the adaptive buffer about it.
+     */
+    private void recordEmit(int numberOfRecords, int failedRecords, long startTime, long endTime) {
+        metrics.recordStage(Stage.EMIT, TimeUnit.MILLISECONDS.toNanos(endTime - startTime));
+        if (adaptiveBuffer != null) {
+            adaptiveBuffer.recordEmit(numberOfRecords, failedRecords, startTime, endTime);
+        }
+    }
+
+    private CloudWatchLogsSubscriptionTransformer<U> getSubscriptionTransformer() {
+        return (CloudWatchLogsSubscriptionTransformer<U>) transformer;
+    }
+
+    private void emit(IRecordProcessorCheckpointer checkpointer, List<U> emitItems) {
+        List<U> unprocessed = new ArrayList<>(emitItems);
+        try {
+            for (int numTries = 0; numTries < retryLimit; numTries++) {
+                long startTime = System.currentTimeMillis();
+                int numberOfRecords = unprocessed.size();
+                unprocessed = emitter.emit(new UnmodifiableBuffer<U>(buffer, unprocessed));
+                recordEmit(numberOfRecords, unprocessed.size(), startTime, System.currentTimeMillis());
+                if (unprocessed.isEmpty()) {
+                    break;
+                }
+                sleep(backoffInterval);
+            }
+            if (!unprocessed.isEmpty()) {
+                emitter.fail(unprocessed);
+            }
+
+            String lastSequenceNumberProcessed = buffer.getLastSequenceNumber();
+            long arrivalTime = bufferedArrivalTime;
+            List<String> ids = takeBufferedIds();
+            clearBuffer();
+
+            // checkpoint once all of the records have been consumed
+            if (lastSequenceNumberProcessed != null) {
+                checkpointer.checkpoint(lastSequenceNumberProcessed);
+                onCheckpoint(arrivalTime, ids);
+            }
+        } catch (IOException | KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                | ShutdownException e) {
+            LOG.error(e);
+            emitter.fail(unprocessed);
+        }
+    }
+
+    private void emitSerialized(IRecordProcessorCheckpointer checkpointer) {
+        ISerializedEmitter serializedEmitter = (ISerializedEmitter) emitter;
+        int numberOfRecords = serializedBuffer.getNumberOfRecords();
+        String firstSequenceNumber = buffer.getFirstSequenceNumber();
+        String lastSequenceNumberProcessed = buffer.getLastSequenceNumber();
+
+        boolean emitted = false;
+        for (int numTries = 0; numTries < retryLimit && !emitted; numTries++) {
+            if (numTries > 0) {
+                sleep(backoffInterval);
+            }
+
+            long startTime = System.currentTimeMillis();
+            try {
+                emitted = serializedEmitter.emit(serializedBuffer.getSerializedRecords(), numberOfRecords,
+                        firstSequenceNumber, lastSequenceNumberProcessed);
+            } catch (IOException e) {
+                LOG.error(e);
+            }
+            recordEmit(numberOfRecords, emitted ? 0 : numberOfRecords, startTime, System.currentTimeMillis());
+        }
+
+        if (!emitted) {
+            LOG.error("Failed to emit " + numberOfRecords + " records from " + firstSequenceNumber + " to "
+                    + lastSequenceNumberProcessed);
+        }
+
+        // like the records given to IEmitter.fail, records that could not be emitted are checkpointed
+        long arrivalTime = bufferedArrivalTime;
+        List<String> ids = takeBufferedIds();
+        clearBuffer();
+        if (lastSequenceNumberProcessed != null) {
+            try {
+                checkpointer.checkpoint(lastSequenceNumberProcessed);
+                onCheckpoint(arrivalTime, ids);
+            } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                    | ShutdownException e) {
+                LOG.error(e);
+            }
+        }
+    }
+
+    private void emitPartitions(IRecordProcessorCheckpointer checkpointer) {
+        IPartitionedEmitter<U> partitionedEmitter = (IPartitionedEmitter<U>) emitter;
+
+        for (Map.Entry<String, List<CloudWatchLogsEvent>> partition : partitionedBuffer.getPartitions().entrySet()) {
+            List<U> unprocessed = transformToOutput(partition.getValue());
+            try {
+                for (int numTries = 0; numTries < retryLimit; numTries++) {
+                    long startTime = System.currentTimeMillis();
+                    int numberOfRecords = unprocessed.size();
+                    unprocessed = partitionedEmitter.emit(partition.getKey(), new UnmodifiableBuffer<U>(buffer,
+                            unprocessed));
+                    recordEmit(numberOfRecords, unprocessed.size(), startTime, System.currentTimeMillis());
+                    if (unprocessed.isEmpty()) {
+                        break;
+                    }
+                    sleep(backoffInterval);
+                }
+            } catch (IOException e) {
+                LOG.error(e);
+            }
+            if (!unprocessed.isEmpty()) {
+                emitter.fail(unprocessed);
+            }
+        }
+
+        // like the records given to IEmitter.fail, partitions that could not be emitted are checkpointed
+        String lastSequenceNumberProcessed = buffer.getLastSequenceNumber();
+        long arrivalTime = bufferedArrivalTime;
+        List<String> ids = takeBufferedIds();
+        clearBuffer();
+        if (lastSequenceNumberProcessed != null) {
+            try {
+                checkpointer.checkpoint(lastSequenceNumberProcessed);
+                onCheckpoint(arrivalTime, ids);
+            } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                    | ShutdownException e) {
+                LOG.error(e);
+            }
+        }
+    }
+
+    private void emitAsync(List<U> emitItems) {
+        PendingEmit pendingEmit = new PendingEmit(buffer.getLastSequenceNumber(), bufferedArrivalTime,
+                takeBufferedIds());
+
+        // the records now belong to the emitter, which hands back those that failed
+        clearBuffer();
+        pendingEmits.addLast(pendingEmit);
+        pendingEmit.send(emitItems);
+    }
+
+    /**
+     * Retries or fails the buffers at the head of the queue once they have been
+     * acknowledged, and checkpoints the last of them.
+     *
+     * @param waitForAll Whether to wait until every pending buffer has been
+     *        acknowledged, rather than only until few enough of them are pending.
+     */
+    private void checkpointAcknowledged(IRecordProcessorCheckpointer checkpointer, boolean waitForAll) {
+        String lastSequenceNumberProcessed = null;
+        long arrivalTime = 0;
+        List<String> ids = new ArrayList<>();
+
+        while (!pendingEmits.isEmpty()) {
+            PendingEmit pendingEmit = pendingEmits.peekFirst();
+            boolean wait = waitForAll || pendingEmits.size() > maxPendingEmits;
+
+            List<U> failures = pendingEmit.getFailures(wait);
+            if (failures == null) {
+                // later buffers cannot be checkpointed before this one
+                break;
+            }
+
+            if (!failures.isEmpty() && pendingEmit.tries < retryLimit) {
+                long delay = pendingEmit.completionTime + backoffInterval - System.currentTimeMillis();
+                if (delay > 0) {
+                    if (!wait) {
+                        break;
+                    }
+                    sleep(delay);
+                }
+                pendingEmit.send(failures);
+                continue;
+            }
+
+            if (!failures.isEmpty()) {
+                emitter.fail(failures);
+            }
+
+            pendingEmits.removeFirst();
+            ids.addAll(pendingEmit.ids);
+            if (pendingEmit.sequenceNumber != null) {
+                lastSequenceNumberProcessed = pendingEmit.sequenceNumber;
+                arrivalTime = pendingEmit.arrivalTime;
+            }
+        }
+
+        if (lastSequenceNumberProcessed != null) {
+            try {
+                checkpointer.checkpoint(lastSequenceNumberProcessed);
+                onCheckpoint(arrivalTime, ids);
+            } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                    | ShutdownException e) {
+                LOG.error(e);
+            }
+        }
+    }
+
+    private static void sleep(long sleepTime) {
+        try {
+            Thread.sleep(sleepTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void shutdown(IRecordProcessorCheckpointer checkpointer, ShutdownReason reason) {
+        LOG.info("Shutting down record processor with shardId: " + shardId + " with reason " + reason);
+        if (isShutdown) {
+            LOG.warn("Record processor for shardId: " + shardId + " has been shutdown multiple times.");
+            return;
+        }
+
+        switch (reason) {
+            case TERMINATE:
+                if (serializedBuffer != null) {
+                    if (serializedBuffer.getNumberOfRecords() > 0) {
+                        emitSerialized(checkpointer);
+                    }
+                } else if (partitionedBuffer != null) {
+                    emitPartitions(checkpointer);
+                } else if (asyncEmitter != null) {
+                    emitAsync(transformToOutput(buffer.getRecords()));
+                    checkpointAcknowledged(checkpointer, true);
+                } else {
+                    emit(checkpointer, transformToOutput(buffer.getRecords()));
+                }
+                try {
+                    checkpointer.checkpoint();
+                } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                        | ShutdownException e) {
+                    LOG.error(e);
+                }
+                break;
+            case ZOMBIE:
+                break;
+            default:
+                throw new IllegalStateException("invalid shutdown reason");
+        }
+
+        // the buffer is dropped along with the processor, and its log events are not checkpointed
+        bufferedRecords = 0;
+        bufferedHeapSize = 0;
+        takeBufferedIds();
+        publishBufferMetrics();
+        metrics.removeShard(shardId);
+
+        if (buffer instanceof Closeable) {
+            try {
+                ((Closeable) buffer).close();
+            } catch (IOException e) {
+                LOG.error(e);
+            }
+        }
+
+        emitter.shutdown();
+        isShutdown = true;
+    }
+
+    /**
+     * A buffer handed to the asynchronous emitter, and the sequence number to
+     * checkpoint once it has been acknowledged.
+     */
+    private final class PendingEmit implements IAsyncEmitter.Callback<U> {
+
+        private final String sequenceNumber;
+        private final long arrivalTime;
+        private final List<String> ids;
+        private int tries;
+        private int numberOfRecords;
+        private long startTime;
+
+        // null while the records are in flight
+        private List<U> failures;
+        private long completionTime;
+
+        PendingEmit(String sequenceNumber, long arrivalTime, List<String> ids) {
+            this.sequenceNumber = sequenceNumber;
+            this.arrivalTime = arrivalTime;
+            this.ids = ids;
+        }
+
+        void send(List<U> records) {
+            synchronized (this) {
+                failures = null;
+                numberOfRecords = records.size();
+                startTime = System.currentTimeMillis();
+            }
+            tries++;
+            asyncEmitter.emitAsync(records, this);
+        }
+
+        @Override
+        public void onComplete(List<U> failures) {
+            long endTime = System.currentTimeMillis();
+            int emittedRecords;
+            long emitStartTime;
+            synchronized (this) {
+                this.failures = failures;
+                this.completionTime = endTime;
+                emittedRecords = numberOfRecords;
+                emitStartTime = startTime;
+                notifyAll();
+            }
+
+            recordEmit(emittedRecords, failures.size(), emitStartTime, endTime);
+        }
+
+        /**
+         * Returns the records that failed, or null if the records are still in
+         * flight.
+         */
+        synchronized List<U> getFailures(boolean wait) {
+            while (wait && failures == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            return failures;
+        }
+    }
+}
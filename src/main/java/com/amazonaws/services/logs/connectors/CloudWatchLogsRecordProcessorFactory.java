@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessor;
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
+import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Creates a {@link CloudWatchLogsRecordProcessor} for each shard. When parallel
+ * transformation is enabled, all processors of the worker share one
+ * ForkJoinPool, so that a few busy shards can use every core of the host. The
+ * pool is shut down when the factory is closed.
+ */
+public class CloudWatchLogsRecordProcessorFactory<U> extends
+        KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, U> implements Closeable {
+
+    private final IKinesisConnectorPipeline<CloudWatchLogsEvent, U> pipeline;
+    private final CloudWatchLogsConnectorConfiguration configuration;
+    private final ForkJoinPool transformPool;
+
+    public CloudWatchLogsRecordProcessorFactory(IKinesisConnectorPipeline<CloudWatchLogsEvent, U> pipeline,
+            CloudWatchLogsConnectorConfiguration configuration) {
+        super(pipeline, configuration);
+        this.pipeline = pipeline;
+        this.configuration = configuration;
+
+        if (configuration.PARALLEL_TRANSFORM) {
+            this.transformPool = new ForkJoinPool(Math.max(configuration.PARALLEL_TRANSFORM_THREADS, 1));
+        } else {
+            this.transformPool = null;
+        }
+    }
+
+    @Override
+    public IRecordProcessor createProcessor() {
+        try {
+            return new CloudWatchLogsRecordProcessor<U>(pipeline.getBuffer(configuration),
+                    pipeline.getFilter(configuration), pipeline.getEmitter(configuration),
+                    pipeline.getTransformer(configuration), configuration, transformPool);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Shuts down the transform pool, once the worker has shut down the
+     * processors of this factory.
+     */
+    @Override
+    public void close() {
+        if (transformPool != null) {
+            transformPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.connectors.metrics.Gauge;
+import com.amazonaws.services.logs.connectors.metrics.Meter;
+import com.amazonaws.services.logs.connectors.metrics.MetricsRegistry;
+import com.amazonaws.services.logs.connectors.metrics.StripedCounter;
+import com.amazonaws.services.logs.connectors.metrics.StripedHistogram;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.DecodeMetrics;
+
+/**
+ * The metrics that the record processors of the JVM record to the default
+ * {@link MetricsRegistry}:
+ *
+ * <ul>
+ * <li>stage_duration_microseconds, by stage: the time taken to uncompress and
+ * parse each record, to filter and buffer each batch of records, to transform
+ * each full buffer to the output type, and to emit it</li>
+ * <li>log_events_total and record_bytes_total: the log events decoded and the
+ * compressed bytes read, with their rates</li>
+ * <li>log_group_events_total, by logGroup: the log events decoded from each log
+ * group</li>
+ * <li>buffer_fill_percent: how full the buffer is after each batch, relative
+ * to its record count or byte size limit</li>
+ * <li>buffered_log_events and buffered_heap_bytes: the totals of
+ * {@link BufferMetrics}</li>
+ * <li>checkpoint_lag_milliseconds, by shardId: how long the last checkpointed
+ * record had been in the stream when it was checkpointed</li>
+ * </ul>
+ */
+public final class ConnectorMetrics implements DecodeMetrics {
+
+    // log groups beyond this many are counted together, so the number of metrics stays bounded
+    static final int MAX_LOG_GROUPS = 1000;
+    static final String OTHER_LOG_GROUPS = "other";
+
+    private static final ConnectorMetrics INSTANCE = new ConnectorMetrics(MetricsRegistry.getDefault(),
+            BufferMetrics.getInstance());
+
+    /**
+     * The stages that each log event goes through.
+     */
+    public enum Stage {
+        GUNZIP, PARSE, BUFFER, TRANSFORM, EMIT
+    }
+
+    private final MetricsRegistry registry;
+    private final StripedHistogram[] stageDurations = new StripedHistogram[Stage.values().length];
+    private final Meter logEvents;
+    private final Meter recordBytes;
+    private final StripedHistogram bufferFill;
+    private final ConcurrentMap<String, StripedCounter> logGroupEvents = new ConcurrentHashMap<>();
+
+    ConnectorMetrics(MetricsRegistry registry, final BufferMetrics bufferMetrics) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stageDurations[stage.ordinal()] = registry.histogram("stage_duration_microseconds", "stage",
+                    stage.name().toLowerCase(Locale.ENGLISH));
+        }
+        this.logEvents = registry.meter("log_events_total");
+        this.recordBytes = registry.meter("record_bytes_total");
+        this.bufferFill = registry.histogram("buffer_fill_percent");
+
+        registry.gauge(new Gauge() {
+
+            @Override
+            public double getValue() {
+                return bufferMetrics.getBufferedRecords();
+            }
+        }, "buffered_log_events");
+        registry.gauge(new Gauge() {
+
+            @Override
+            public double getValue() {
+                return bufferMetrics.getEstimatedHeapSize();
+            }
+        }, "buffered_heap_bytes");
+    }
+
+    public static ConnectorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        stageDurations[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    @Override
+    public void recordUncompress(long nanos) {
+        recordStage(Stage.GUNZIP, nanos);
+    }
+
+    @Override
+    public void recordParse(long nanos) {
+        recordStage(Stage.PARSE, nanos);
+    }
+
+    /**
+     * Counts the bytes of a batch of records and the log events decoded from
+     * them. The log events of a record all come from the same log group.
+     */
+    public void recordDecoded(List<Record> records, List<Collection<CloudWatchLogsEvent>> transformedRecords) {
+        long bytes = 0;
+        long events = 0;
+        for (int i = 0; i < records.size(); i++) {
+            bytes += records.get(i).getData().remaining();
+
+            Collection<CloudWatchLogsEvent> logEvents = transformedRecords.get(i);
+            if (!logEvents.isEmpty()) {
+                events += logEvents.size();
+                getLogGroupCounter(logEvents.iterator().next().getLogGroup()).add(logEvents.size());
+            }
+        }
+
+        recordBytes.mark(bytes);
+        logEvents.mark(events);
+    }
+
+    private StripedCounter getLogGroupCounter(String logGroup) {
+        StripedCounter counter = logGroup == null ? null : logGroupEvents.get(logGroup);
+        if (counter != null) {
+            return counter;
+        }
+        if (logGroup == null || logGroupEvents.size() >= MAX_LOG_GROUPS) {
+            return registry.counter("log_group_events_total", "logGroup", OTHER_LOG_GROUPS);
+        }
+
+        counter = registry.counter("log_group_events_total", "logGroup", logGroup);
+        logGroupEvents.putIfAbsent(logGroup, counter);
+        return counter;
+    }
+
+    /**
+     * Records how full a buffer is, as the larger of its record count and
+     * byte size relative to their limits.
+     */
+    public void recordBufferFill(long records, long recordLimit, long bytes, long byteLimit) {
+        double fill = Math.max(recordLimit > 0 ? (double) records / recordLimit : 0,
+                byteLimit > 0 ? (double) bytes / byteLimit : 0);
+        bufferFill.record(Math.round(fill * 100));
+    }
+
+    /**
+     * Records the checkpoint of a shard up to a record that arrived in the
+     * stream at the given time, in milliseconds since the epoch.
+     */
+    public void recordCheckpoint(String shardId, long arrivalTime) {
+        if (shardId == null || arrivalTime <= 0) {
+            return;
+        }
+        CheckpointLag lag = registry.gauge(new CheckpointLag(), "checkpoint_lag_milliseconds", "shardId", shardId);
+        lag.value = Math.max(System.currentTimeMillis() - arrivalTime, 0);
+    }
+
+    /**
+     * Drops the metrics of a shard that the worker no longer processes.
+     */
+    public void removeShard(String shardId) {
+        if (shardId != null) {
+            registry.remove("checkpoint_lag_milliseconds", "shardId", shardId);
+        }
+    }
+
+    private static final class CheckpointLag implements Gauge {
+
+        private volatile long value;
+
+        @Override
+        public double getValue() {
+            return value;
+        }
+    }
+}
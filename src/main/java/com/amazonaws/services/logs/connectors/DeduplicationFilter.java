@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.List;
+
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Drops log events whose id has already been emitted during the deduplication
+ * window, such as the events of records read again from the last checkpoint
+ * after a failover. Dropping them before they are buffered saves transforming
+ * and emitting them twice.
+ *
+ * Ids are only looked up when events are filtered. They are remembered once
+ * the record processor reports them through {@link ICheckpointListener}, that
+ * is once their events have been emitted and checkpointed, so events that were
+ * buffered and then dropped, such as when a lease is lost, are kept when their
+ * records are read again.
+ *
+ * The ids are kept in a {@link RotatingBloomFilter}, so memory does not grow
+ * with the number of events, and a small share of new events may be taken for
+ * duplicates. One filter should be shared by all the shards of a worker, as
+ * records are often read again by another record processor.
+ */
+public class DeduplicationFilter implements IFilter<CloudWatchLogsEvent>, ICheckpointListener {
+
+    private final RotatingBloomFilter seenIds;
+
+    public DeduplicationFilter(CloudWatchLogsConnectorConfiguration configuration) {
+        this(configuration.DEDUPLICATION_EXPECTED_EVENTS, configuration.DEDUPLICATION_FALSE_POSITIVE_RATE,
+                configuration.DEDUPLICATION_WINDOW);
+    }
+
+    /**
+     * @param expectedEvents The number of events in one window.
+     * @param falsePositiveRate The rate of new events that may be dropped.
+     * @param window How long ids are remembered at least, in milliseconds.
+     */
+    public DeduplicationFilter(long expectedEvents, double falsePositiveRate, long window) {
+        this.seenIds = new RotatingBloomFilter(expectedEvents, falsePositiveRate, window);
+    }
+
+    @Override
+    public boolean keepRecord(CloudWatchLogsEvent record) {
+        String id = record.getId();
+        return id == null || !seenIds.contains(id);
+    }
+
+    @Override
+    public void onCheckpoint(List<String> ids) {
+        for (int i = 0; i < ids.size(); i++) {
+            seenIds.add(ids.get(i));
+        }
+    }
+}
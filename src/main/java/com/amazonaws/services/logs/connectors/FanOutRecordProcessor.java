@@ -0,0 +1,203 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.InvalidStateException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.KinesisClientLibDependencyException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.ShutdownException;
+import com.amazonaws.services.kinesis.clientlibrary.exceptions.ThrottlingException;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessor;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessorCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.lib.worker.ShutdownReason;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Record processor that delivers the log events of a shard to several sinks,
+ * such as Elasticsearch and S3, while reading and decoding each record once.
+ *
+ * Each sink is a {@link CloudWatchLogsRecordProcessor} with its own filter,
+ * buffer and emitter, which is handed the decoded log events. Sinks checkpoint
+ * through their own checkpointer, which only records how far they have got:
+ * the shard is checkpointed at the lowest of these sequence numbers, once every
+ * sink has acknowledged the records before it. A sink that holds no log events
+ * has acknowledged every record given to it.
+ */
+public class FanOutRecordProcessor implements IRecordProcessor {
+
+    private static final Log LOG = LogFactory.getLog(FanOutRecordProcessor.class);
+
+    private final List<CloudWatchLogsRecordProcessor<?>> sinks;
+    private final List<SinkCheckpointer> sinkCheckpointers;
+
+    private String checkpointedSequenceNumber;
+    private boolean isShutdown = false;
+    private String shardId;
+
+    /**
+     * @param sinks The processors of the sinks. The records are decoded by the
+     *        transformer of the first one.
+     */
+    public FanOutRecordProcessor(List<CloudWatchLogsRecordProcessor<?>> sinks) {
+        if (sinks.isEmpty()) {
+            throw new IllegalArgumentException("At least one sink is required");
+        }
+
+        this.sinks = new ArrayList<>(sinks);
+        this.sinkCheckpointers = new ArrayList<>(sinks.size());
+        for (int i = 0; i < sinks.size(); i++) {
+            sinkCheckpointers.add(new SinkCheckpointer());
+        }
+    }
+
+    @Override
+    public void initialize(String shardId) {
+        this.shardId = shardId;
+        for (CloudWatchLogsRecordProcessor<?> sink : sinks) {
+            sink.initialize(shardId);
+        }
+    }
+
+    @Override
+    public void processRecords(List<Record> records, IRecordProcessorCheckpointer checkpointer) {
+        if (isShutdown) {
+            LOG.warn("processRecords called on shutdown record processor for shardId: " + shardId);
+            return;
+        }
+        if (shardId == null) {
+            throw new IllegalStateException("Record processor not initialized");
+        }
+
+        List<Collection<CloudWatchLogsEvent>> transformedRecords = sinks.get(0).transformRecords(records);
+        String lastSequenceNumber = records.isEmpty() ? null : records.get(records.size() - 1).getSequenceNumber();
+
+        for (int i = 0; i < sinks.size(); i++) {
+            CloudWatchLogsRecordProcessor<?> sink = sinks.get(i);
+            SinkCheckpointer sinkCheckpointer = sinkCheckpointers.get(i);
+
+            sink.processTransformedRecords(records, transformedRecords, sinkCheckpointer);
+            if (lastSequenceNumber != null && !sink.hasUnacknowledgedRecords()) {
+                // the sink has emitted or dropped every log event of the records
+                sinkCheckpointer.checkpoint(lastSequenceNumber);
+            }
+        }
+
+        checkpoint(checkpointer);
+    }
+
+    /**
+     * Checkpoints the lowest sequence number that every sink has acknowledged.
+     */
+    private void checkpoint(IRecordProcessorCheckpointer checkpointer) {
+        BigInteger lowest = null;
+        String sequenceNumber = null;
+        for (SinkCheckpointer sinkCheckpointer : sinkCheckpointers) {
+            if (sinkCheckpointer.sequenceNumber == null) {
+                return;
+            }
+            if (lowest == null || sinkCheckpointer.sequenceNumber.compareTo(lowest) < 0) {
+                lowest = sinkCheckpointer.sequenceNumber;
+                sequenceNumber = sinkCheckpointer.sequenceNumberString;
+            }
+        }
+
+        if (sequenceNumber.equals(checkpointedSequenceNumber)) {
+            return;
+        }
+
+        try {
+            checkpointer.checkpoint(sequenceNumber);
+            checkpointedSequenceNumber = sequenceNumber;
+        } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                | ShutdownException e) {
+            LOG.error(e);
+        }
+    }
+
+    @Override
+    public void shutdown(IRecordProcessorCheckpointer checkpointer, ShutdownReason reason) {
+        LOG.info("Shutting down record processor with shardId: " + shardId + " with reason " + reason);
+        if (isShutdown) {
+            LOG.warn("Record processor for shardId: " + shardId + " has been shutdown multiple times.");
+            return;
+        }
+
+        // every sink flushes its buffer when the shard has ended
+        boolean allCheckpointed = true;
+        for (int i = 0; i < sinks.size(); i++) {
+            sinks.get(i).shutdown(sinkCheckpointers.get(i), reason);
+            allCheckpointed &= sinkCheckpointers.get(i).shardEnded;
+        }
+
+        if (reason == ShutdownReason.TERMINATE) {
+            try {
+                if (allCheckpointed) {
+                    checkpointer.checkpoint();
+                } else {
+                    checkpoint(checkpointer);
+                }
+            } catch (KinesisClientLibDependencyException | InvalidStateException | ThrottlingException
+                    | ShutdownException e) {
+                LOG.error(e);
+            }
+        }
+
+        isShutdown = true;
+    }
+
+    /**
+     * Records how far a sink has checkpointed, without checkpointing the shard.
+     */
+    private static final class SinkCheckpointer implements IRecordProcessorCheckpointer {
+
+        private BigInteger sequenceNumber;
+        private String sequenceNumberString;
+        private boolean shardEnded;
+
+        @Override
+        public void checkpoint() {
+            shardEnded = true;
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber) {
+            // sequence numbers are decimal, and grow with the position in the shard
+            BigInteger value = new BigInteger(sequenceNumber);
+            if (this.sequenceNumber == null || value.compareTo(this.sequenceNumber) > 0) {
+                this.sequenceNumber = value;
+                this.sequenceNumberString = sequenceNumber;
+            }
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber, long subSequenceNumber) {
+            // sinks emit whole records, so the position within an aggregated record does not matter
+            checkpoint(sequenceNumber);
+        }
+
+        @Override
+        public void checkpoint(Record record) {
+            checkpoint(record.getSequenceNumber());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessor;
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
+import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
+import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
+import com.amazonaws.services.logs.connectors.filter.PredicateFilter;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
+
+/**
+ * Creates a {@link FanOutRecordProcessor} for each shard, with a sink for each
+ * of the added pipelines. As with {@link CloudWatchLogsRecordProcessorFactory},
+ * all the processors of the worker share one ForkJoinPool when parallel
+ * transformation is enabled, which is shut down when the factory is closed.
+ *
+ * Records are decoded once for all the sinks, so the header rules of the
+ * shared configuration apply to all of them, while each sink has its own
+ * configuration for the rest of its pipeline. A sink configuration with other
+ * rules on owners, log groups or log streams is rejected when it is added.
+ */
+public class FanOutRecordProcessorFactory extends KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, Object>
+        implements Closeable {
+
+    private static final List<String> HEADER_PROPERTIES = Arrays.asList(
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_OWNERS,
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_EXCLUDE_OWNERS,
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_LOG_GROUPS,
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_EXCLUDE_LOG_GROUPS,
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_LOG_STREAMS,
+            CloudWatchLogsConnectorConfiguration.PROP_FILTER_EXCLUDE_LOG_STREAMS);
+
+    private final List<IKinesisConnectorPipeline<CloudWatchLogsEvent, ?>> pipelines = new ArrayList<>();
+    private final List<CloudWatchLogsConnectorConfiguration> sinkConfigurations = new ArrayList<>();
+    private final CloudWatchLogsConnectorConfiguration configuration;
+    private final ForkJoinPool transformPool;
+
+    public FanOutRecordProcessorFactory(CloudWatchLogsConnectorConfiguration configuration) {
+        // each sink has its own pipeline
+        super(null, configuration);
+        this.configuration = configuration;
+
+        if (configuration.PARALLEL_TRANSFORM) {
+            this.transformPool = new ForkJoinPool(Math.max(configuration.PARALLEL_TRANSFORM_THREADS, 1));
+        } else {
+            this.transformPool = null;
+        }
+    }
+
+    /**
+     * Adds a sink to the processors created from now on.
+     *
+     * @throws IllegalArgumentException if the sink configuration has its own
+     *         rules on owners, log groups or log streams.
+     */
+    public FanOutRecordProcessorFactory addSink(IKinesisConnectorPipeline<CloudWatchLogsEvent, ?> pipeline,
+            CloudWatchLogsConnectorConfiguration sinkConfiguration) {
+        for (String property : HEADER_PROPERTIES) {
+            String value = sinkConfiguration.getProperty(property);
+            String sharedValue = configuration.getProperty(property);
+            if (value == null ? sharedValue != null : !value.equals(sharedValue)) {
+                throw new IllegalArgumentException(property
+                        + " applies to all the sinks and cannot be overridden for one of them");
+            }
+        }
+        pipelines.add(pipeline);
+        sinkConfigurations.add(sinkConfiguration);
+        return this;
+    }
+
+    @Override
+    public IRecordProcessor createProcessor() {
+        if (pipelines.isEmpty()) {
+            throw new IllegalStateException("At least one sink is required");
+        }
+
+        try {
+            List<CloudWatchLogsRecordProcessor<?>> sinks = new ArrayList<>(pipelines.size());
+            for (int i = 0; i < pipelines.size(); i++) {
+                sinks.add(createSink(pipelines.get(i), sinkConfigurations.get(i), i == 0));
+            }
+            return new FanOutRecordProcessor(sinks);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    private <U> CloudWatchLogsRecordProcessor<U> createSink(IKinesisConnectorPipeline<CloudWatchLogsEvent, U> pipeline,
+            CloudWatchLogsConnectorConfiguration sinkConfiguration, boolean decoder) {
+        ITransformerBase<CloudWatchLogsEvent, U> transformer = pipeline.getTransformer(sinkConfiguration);
+        if (decoder && transformer instanceof CloudWatchLogsSubscriptionTransformer) {
+            // the first sink decodes the records of every sink
+            ((CloudWatchLogsSubscriptionTransformer<U>) transformer).setHeaderPredicate(
+                    PredicateFilter.compileHeader(configuration));
+        }
+
+        return new CloudWatchLogsRecordProcessor<U>(pipeline.getBuffer(sinkConfiguration),
+                pipeline.getFilter(sinkConfiguration), pipeline.getEmitter(sinkConfiguration), transformer,
+                sinkConfiguration, transformPool);
+    }
+
+    /**
+     * Shuts down the transform pool, once the worker has shut down the
+     * processors of this factory.
+     */
+    @Override
+    public void close() {
+        if (transformPool != null) {
+            transformPool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
+
+/**
+ * A buffer whose flush thresholds follow how fast the emitter keeps up.
+ * {@link CloudWatchLogsRecordProcessor} reports each emit of a flushed buffer.
+ *
+ * @param <T> the type of the buffered records
+ */
+public interface IAdaptiveBuffer<T> extends IBuffer<T> {
+
+    /**
+     * Reports an emit of flushed records. This may be called from another thread
+     * than the one filling the buffer, and while later records are buffered.
+     *
+     * @param records The number of records emitted.
+     * @param failures The number of records that failed.
+     * @param startTime When the emit started, in milliseconds.
+     * @param endTime When the emit completed, in milliseconds.
+     */
+    void recordEmit(int records, int failures, long startTime, long endTime);
+}
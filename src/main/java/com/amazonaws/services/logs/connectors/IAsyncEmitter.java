@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.List;
+
+import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
+
+/**
+ * An emitter that sends records without waiting for the destination to
+ * acknowledge them, so that a record processor can keep reading its shard while
+ * earlier buffers are in flight. {@link CloudWatchLogsRecordProcessor} only
+ * checkpoints a buffer once it and every earlier buffer have been acknowledged.
+ *
+ * @param <T> the type of the records to emit
+ */
+public interface IAsyncEmitter<T> extends IEmitter<T> {
+
+    /**
+     * Starts sending the records. This may block while the emitter has too many
+     * requests in flight, and calls the callback once every record has been
+     * either acknowledged or rejected.
+     */
+    void emitAsync(List<T> records, Callback<T> callback);
+
+    /**
+     * Receives the outcome of {@link IAsyncEmitter#emitAsync(List, Callback)}.
+     */
+    interface Callback<T> {
+
+        /**
+         * Called exactly once, possibly on another thread.
+         *
+         * @param failures The records that were not accepted and may be retried.
+         */
+        void onComplete(List<T> failures);
+    }
+}
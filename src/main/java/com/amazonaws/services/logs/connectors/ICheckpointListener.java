@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.List;
+
+/**
+ * A filter that has to know which of the log events it kept are done with: a
+ * {@link CloudWatchLogsRecordProcessor} tells it the ids of the log events it
+ * has emitted, or given up on, once the shard is checkpointed past them. Log
+ * events that are dropped without being emitted, such as the buffer of a
+ * processor that lost its lease, are never reported, so they are kept again
+ * when their records are read again.
+ */
+public interface ICheckpointListener {
+
+    /**
+     * Called with the ids of the log events that will not be read again.
+     * Implementations must be safe to call from several threads.
+     */
+    void onCheckpoint(List<String> ids);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
+
+/**
+ * A buffer that routes records to partitions, such as the prefixes of the keys
+ * they are written to. {@link CloudWatchLogsRecordProcessor} emits each
+ * partition separately to an {@link IPartitionedEmitter}, and checkpoints once
+ * all of them have been emitted.
+ *
+ * @param <T> the type of the buffered records
+ */
+public interface IPartitionedBuffer<T> extends IBuffer<T> {
+
+    /**
+     * Returns the records consumed since the last clear, by partition.
+     */
+    Map<String, List<T>> getPartitions();
+}
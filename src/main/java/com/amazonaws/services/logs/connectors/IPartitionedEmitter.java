@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
+import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
+
+/**
+ * An emitter that sends the partitions of an {@link IPartitionedBuffer} one at
+ * a time.
+ *
+ * @param <T> the type of the records to emit
+ */
+public interface IPartitionedEmitter<T> extends IEmitter<T> {
+
+    /**
+     * Sends the records of one partition.
+     *
+     * @param partition The name of the partition.
+     * @param buffer The records of the partition, with the sequence numbers of
+     *            the whole buffer.
+     * @return The records that failed and may be retried.
+     */
+    List<T> emit(String partition, UnmodifiableBuffer<T> buffer) throws IOException;
+}
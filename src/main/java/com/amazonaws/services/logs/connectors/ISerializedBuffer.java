@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.nio.ByteBuffer;
+
+import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
+
+/**
+ * A buffer that serializes records as they are consumed and keeps only their
+ * bytes, for example outside of the heap. {@link #getRecords()} is empty, and
+ * {@link CloudWatchLogsRecordProcessor} hands the serialized records to an
+ * {@link ISerializedEmitter} instead.
+ *
+ * @param <T> the type of the buffered records
+ */
+public interface ISerializedBuffer<T> extends IBuffer<T> {
+
+    /**
+     * Returns the records consumed since the last clear, serialized as they are
+     * to be emitted, for example one after another. The buffer is only valid
+     * until the next call to consumeRecord or clear.
+     */
+    ByteBuffer getSerializedRecords();
+
+    /**
+     * Returns the number of records consumed since the last clear.
+     */
+    int getNumberOfRecords();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * An emitter that sends the serialized records of an {@link ISerializedBuffer}
+ * as they are, without rebuilding them on the heap.
+ */
+public interface ISerializedEmitter {
+
+    /**
+     * Sends the records.
+     *
+     * @param records The serialized records, which must not be modified.
+     * @param numberOfRecords The number of records.
+     * @param firstSequenceNumber The sequence number of the first record.
+     * @param lastSequenceNumber The sequence number of the last record.
+     * @return Whether all of the records have been sent. Otherwise, they are sent
+     *         again after a backoff.
+     */
+    boolean emit(ByteBuffer records, int numberOfRecords, String firstSequenceNumber, String lastSequenceNumber)
+            throws IOException;
+}
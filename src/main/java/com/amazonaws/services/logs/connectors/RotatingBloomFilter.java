@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers the keys seen during a time window in a fixed amount of memory.
+ *
+ * Keys are added to the current of two Bloom filters, and looked up in both.
+ * The current filter becomes the previous one once the window has passed or
+ * once it holds the expected number of keys, so that a key is remembered for
+ * at least one window, and the rate of false positives stays bounded. A key
+ * seen again is added to the current filter, to be remembered for longer.
+ *
+ * Keys may be added concurrently by several threads.
+ */
+final class RotatingBloomFilter {
+
+    private final int numBits;
+    private final int numHashes;
+    private final long expectedInsertions;
+    private final long window;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * @param expectedInsertions The number of keys in one window.
+     * @param falsePositiveRate The rate of new keys that may be taken for seen ones.
+     * @param window How long keys are remembered at least, in milliseconds.
+     */
+    RotatingBloomFilter(long expectedInsertions, double falsePositiveRate, long window) {
+        this.expectedInsertions = Math.max(expectedInsertions, 1);
+        this.window = window;
+
+        // the optimal sizes for the expected number of keys
+        double bits = -this.expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        this.numBits = (int) Math.max(Math.min(bits, (double) Integer.MAX_VALUE - 63), 64);
+        this.numHashes = (int) Math.max(Math.round((double) numBits / this.expectedInsertions * Math.log(2)), 1);
+
+        long now = System.currentTimeMillis();
+        this.current = new Generation(numBits, now);
+        this.previous = new Generation(numBits, now);
+    }
+
+    /**
+     * Adds a key, and returns whether it had not been seen during the window.
+     */
+    boolean add(CharSequence key) {
+        Generation generation = getCurrentGeneration(System.currentTimeMillis());
+        Generation previousGeneration = previous;
+
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        boolean seenBefore = true;
+        boolean added = false;
+        for (int i = 1; i <= numHashes; i++) {
+            int bit = bit(hash1 + i * hash2);
+
+            seenBefore &= previousGeneration.get(bit);
+            added |= generation.set(bit);
+        }
+
+        if (added) {
+            generation.insertions.incrementAndGet();
+        }
+        return added && !seenBefore;
+    }
+
+    /**
+     * Returns whether a key was seen during the window, without adding it.
+     */
+    boolean contains(CharSequence key) {
+        Generation generation = getCurrentGeneration(System.currentTimeMillis());
+        Generation previousGeneration = previous;
+
+        long hash = hash(key);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 1; i <= numHashes && (inCurrent || inPrevious); i++) {
+            int bit = bit(hash1 + i * hash2);
+            inCurrent &= generation.get(bit);
+            inPrevious &= previousGeneration.get(bit);
+        }
+        return inCurrent || inPrevious;
+    }
+
+    private int bit(int combinedHash) {
+        if (combinedHash < 0) {
+            combinedHash = ~combinedHash;
+        }
+        return combinedHash % numBits;
+    }
+
+    /**
+     * Returns the number of bits of each of the two filters.
+     */
+    int getNumBits() {
+        return numBits;
+    }
+
+    private Generation getCurrentGeneration(long now) {
+        Generation generation = current;
+        if (now - generation.start < window && generation.insertions.get() < expectedInsertions) {
+            return generation;
+        }
+
+        synchronized (this) {
+            if (current == generation) {
+                previous = generation;
+                current = new Generation(numBits, now);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Hashes the characters of the key to 64 bits, with FNV-1a followed by the
+     * finalizer of MurmurHash3 to spread keys that differ in a few digits.
+     */
+    private static long hash(CharSequence key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * One Bloom filter and when it was started.
+     */
+    private static final class Generation {
+
+        private final AtomicLongArray bits;
+        private final AtomicLong insertions = new AtomicLong();
+        private final long start;
+
+        Generation(int numBits, long start) {
+            this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+            this.start = start;
+        }
+
+        boolean get(int bit) {
+            return (bits.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+
+        /**
+         * Sets the bit, and returns whether it was not set before.
+         */
+        boolean set(int bit) {
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            while (true) {
+                long value = bits.get(index);
+                if ((value & mask) != 0) {
+                    return false;
+                }
+                if (bits.compareAndSet(index, value, value | mask)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
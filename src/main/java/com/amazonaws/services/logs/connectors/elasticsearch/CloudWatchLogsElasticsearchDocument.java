@@ -14,21 +14,54 @@
  */
 package com.amazonaws.services.logs.connectors.elasticsearch;
 
-import java.util.Map;
-
-import org.elasticsearch.common.lang3.StringUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
-import com.amazonaws.util.json.JSONException;
-import com.amazonaws.util.json.JSONObject;
+import com.amazonaws.services.logs.subscriptions.FieldType;
+import com.amazonaws.services.logs.subscriptions.FieldTypeCache;
+import com.amazonaws.services.logs.subscriptions.FieldTypeClassifier;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 /**
  * Defines the log event structure that would be sent to Elasticsearch.
+ *
+ * The source is written as UTF-8 with a streaming JSON generator into a buffer
+ * reused by the calling thread, and only copied once into its final byte[].
+ * JSON embedded in the message or in extracted fields is validated once and then
+ * spliced into the source as is.
  */
 public class CloudWatchLogsElasticsearchDocument {
 
     private static final String JSON_FIELD_NAME_PREFIX = "$";
 
+    private static final String ID_FIELD = "@id";
+    private static final String TIMESTAMP_FIELD = "@timestamp";
+    private static final String MESSAGE_FIELD = "@message";
+    private static final String OWNER_FIELD = "@owner";
+    private static final String LOG_GROUP_FIELD = "@log_group";
+    private static final String LOG_STREAM_FIELD = "@log_stream";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // smaller than the generator's own char buffer
+    private static final int RAW_CHUNK_SIZE = 1024;
+
+    // buffers that grew past this size are not kept for the next document
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteArrayOutputStream> SOURCE_BUFFERS = new ThreadLocal<ByteArrayOutputStream>() {
+
+        @Override
+        protected ByteArrayOutputStream initialValue() {
+            return new ByteArrayOutputStream(4096);
+        }
+    };
+
     private final String id;
     private final long timestamp;
     private final String message;
@@ -37,72 +70,185 @@ public class CloudWatchLogsElasticsearchDocument {
     private final String logGroup;
     private final String logStream;
 
-    private final String source;
-
-    public CloudWatchLogsElasticsearchDocument(CloudWatchLogsEvent event) throws JSONException {
-        JSONObject json = getFields(event.getMessage(), event.getExtractedFields());
-        json.put("@id", event.getId());
-        json.put("@timestamp", event.getTimestamp());
-        json.put("@message", event.getMessage());
-        json.put("@owner", event.getOwner());
-        json.put("@log_group", event.getLogGroup());
-        json.put("@log_stream", event.getLogStream());
+    private final byte[] source;
 
-        this.source = json.toString();
+    public CloudWatchLogsElasticsearchDocument(CloudWatchLogsEvent event) throws IOException {
+        this(event, null);
+    }
 
+    /**
+     * @param fieldTypes The types of the extracted fields seen so far, or null to
+     *        classify every value on its own.
+     */
+    public CloudWatchLogsElasticsearchDocument(CloudWatchLogsEvent event, FieldTypeCache fieldTypes)
+            throws IOException {
         this.id = event.getId();
         this.timestamp = event.getTimestamp();
         this.message = event.getMessage();
         this.owner = event.getOwner();
         this.logGroup = event.getLogGroup();
         this.logStream = event.getLogStream();
+
+        ByteArrayOutputStream buffer = SOURCE_BUFFERS.get();
+        buffer.reset();
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject();
+            writeStringField(generator, ID_FIELD, id);
+            generator.writeNumberField(TIMESTAMP_FIELD, timestamp);
+            writeStringField(generator, MESSAGE_FIELD, message);
+            writeStringField(generator, OWNER_FIELD, owner);
+            writeStringField(generator, LOG_GROUP_FIELD, logGroup);
+            writeStringField(generator, LOG_STREAM_FIELD, logStream);
+            writeFields(generator, event, fieldTypes);
+            generator.writeEndObject();
+        }
+
+        this.source = buffer.toByteArray();
+
+        if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+            SOURCE_BUFFERS.remove();
+        }
     }
 
     /**
-     * Determines which additional fields get put into the Elasticsearch document.
+     * Writes the additional fields that get put into the Elasticsearch document.
+     * Must be called right after the log event attributes and before the end of
+     * the object, since the fields of a JSON message may be written as raw text.
      */
-    private JSONObject getFields(String message, Map<String, String> extractedFields) throws JSONException {
+    private static void writeFields(JsonGenerator generator, CloudWatchLogsEvent event, FieldTypeCache fieldTypes)
+            throws IOException {
+        String message = event.getMessage();
+        int extractedFieldCount = event.getExtractedFieldCount();
 
         // if extractedFields are available from CloudWatch Logs, use them as Elasticsearch fields
-        if (extractedFields != null && extractedFields.size() > 0) {
-            JSONObject extractedFieldsInJson = new JSONObject();
-
-            for (Map.Entry<String, String> entry : extractedFields.entrySet()) {
-                String fieldName = entry.getKey();
-                String value = entry.getValue();
+        if (extractedFieldCount > 0) {
+            for (int i = 0; i < extractedFieldCount; i++) {
+                String fieldName = event.getExtractedFieldName(i);
+                String value = event.getExtractedFieldValue(i);
 
-                if (value == null) {
+                if (value == null || isReservedFieldName(fieldName)) {
                     // nothing to add
                     continue;
                 }
 
-                if (StringUtils.isNumeric(value)) {
-                    // the field value is a number - put it as a double
-                    extractedFieldsInJson.put(fieldName, Double.parseDouble(value));
+                // numbers and booleans are put with their JSON type
+                FieldType type = fieldTypes == null ? FieldTypeClassifier.classify(value) : fieldTypes.classify(
+                        event.getLogGroup(), fieldName, value);
+
+                if (writeTypedField(generator, fieldName, value, type)) {
                     continue;
                 }
 
-                String jsonSubString = ElasticsearchTransformerUtils.extractJson(value);
+                JsonSpan json = ElasticsearchTransformerUtils.findJson(value);
 
-                if (jsonSubString != null) {
+                if (json != null) {
                     // the field value contains valid json - copy the json to a new Elasticsearch object field
-                    extractedFieldsInJson.put(JSON_FIELD_NAME_PREFIX + fieldName, new JSONObject(jsonSubString));
+                    generator.writeFieldName(JSON_FIELD_NAME_PREFIX + fieldName);
+                    generator.writeRawValue("");
+                    writeRaw(generator, value, json.getStart(), json.getEnd());
                 }
 
                 // put the raw extracted field as a string
-                extractedFieldsInJson.put(fieldName, value);
+                generator.writeStringField(fieldName, value);
             }
 
-            return extractedFieldsInJson;
+            return;
         }
 
         // if the message is valid JSON, use the message as is for Elasticsearch fields
-        if (ElasticsearchTransformerUtils.extractJson(message) != null) {
-            return new JSONObject(message);
+        JsonSpan json = ElasticsearchTransformerUtils.findJson(message);
+        if (json == null || json.getFieldCount() == 0) {
+            return;
+        }
+
+        if (!json.hasAttributeFieldNames()) {
+            // splice the fields of the message right after the log event attributes, which always include
+            // @timestamp, so the separator is needed and nothing else is written before the closing brace
+            generator.writeRaw(',');
+            writeRaw(generator, message, json.getStart() + 1, json.getEnd() - 1);
+            return;
+        }
+
+        try (JsonParser parser = ElasticsearchTransformerUtils.createParser(message, json)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+
+                if (isReservedFieldName(fieldName)) {
+                    // the log event attributes take precedence over fields of the same name
+                    parser.skipChildren();
+                    continue;
+                }
+
+                generator.writeFieldName(fieldName);
+                generator.copyCurrentStructure(parser);
+            }
         }
 
         // if there are no extractedFields and the message is not valid JSON, don't emit any Elasticsearch fields
-        return new JSONObject();
+    }
+
+    /**
+     * Writes part of a string as raw text, in chunks that never end between the
+     * two chars of a surrogate pair, which some versions of the generator reject.
+     */
+    private static void writeRaw(JsonGenerator generator, String text, int start, int end) throws IOException {
+        int offset = start;
+        while (offset < end) {
+            int chunkEnd = Math.min(offset + RAW_CHUNK_SIZE, end);
+            if (chunkEnd < end && Character.isHighSurrogate(text.charAt(chunkEnd - 1))) {
+                chunkEnd--;
+            }
+            generator.writeRaw(text, offset, chunkEnd - offset);
+            offset = chunkEnd;
+        }
+    }
+
+    private static boolean isReservedFieldName(String fieldName) {
+        switch (fieldName) {
+            case ID_FIELD:
+            case TIMESTAMP_FIELD:
+            case MESSAGE_FIELD:
+            case OWNER_FIELD:
+            case LOG_GROUP_FIELD:
+            case LOG_STREAM_FIELD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void writeStringField(JsonGenerator generator, String fieldName, String value) throws IOException {
+        // fields without a value are left out of the document
+        if (value != null) {
+            generator.writeStringField(fieldName, value);
+        }
+    }
+
+    /**
+     * Writes numbers and booleans as JSON values of their type and returns true,
+     * or returns false if the value has to be written as a string.
+     */
+    private static boolean writeTypedField(JsonGenerator generator, String fieldName, String value, FieldType type)
+            throws IOException {
+        switch (type) {
+            case LONG:
+            case EPOCH:
+                generator.writeNumberField(fieldName, Long.parseLong(value));
+                return true;
+            case DOUBLE:
+                // the value has been checked against the JSON number syntax, so its text is kept as is
+                generator.writeFieldName(fieldName);
+                generator.writeNumber(value);
+                return true;
+            case BOOLEAN:
+                generator.writeBooleanField(fieldName, Boolean.parseBoolean(value));
+                return true;
+            default:
+                return false;
+        }
     }
 
     public String getId() {
@@ -130,6 +276,14 @@ public class CloudWatchLogsElasticsearchDocument {
     }
 
     public String getSource() {
+        return new String(source, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the UTF-8 encoded source. The array is not copied and must not be
+     * modified.
+     */
+    public byte[] getSourceBytes() {
         return source;
     }
 }
@@ -0,0 +1,515 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.client.transport.TransportClient;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.InetSocketTransportAddress;
+import org.elasticsearch.rest.RestStatus;
+
+import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
+import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.IAsyncEmitter;
+
+/**
+ * Sends documents to Elasticsearch with bulk requests, like the emitter of the
+ * Kinesis Connector Library, but hands the UTF-8 source of a
+ * {@link CloudWatchLogsElasticsearchObject} straight to the index request
+ * instead of going through a String.
+ *
+ * Large buffers are split into bulk requests of a set number of documents. As
+ * an {@link IAsyncEmitter}, it sends them without blocking the record
+ * processor, and a semaphore shared by the emitters of a worker bounds the
+ * number of bulk requests in flight.
+ *
+ * Documents rejected with a retryable status, such as 429 when the bulk thread
+ * pool of a node is full, are sent again on their own after a backoff chosen by
+ * the {@link ElasticsearchRetryPolicy}. The bulk request keeps its permit while
+ * it waits, so that fewer requests are in flight while the cluster pushes back.
+ * Bulk requests that fail as a whole, such as when no node can be reached, are
+ * retried in the same way and count against the same limits. Documents that
+ * cannot be retried are written to the
+ * {@link ElasticsearchSpillFile} instead of being returned as failed. Retries
+ * still waiting when the emitter is shut down are returned as failed.
+ */
+public class CloudWatchLogsElasticsearchEmitter implements IAsyncEmitter<ElasticsearchObject> {
+
+    private static final Log LOG = LogFactory.getLog(CloudWatchLogsElasticsearchEmitter.class);
+
+    private static final String ELASTICSEARCH_CLUSTER_NAME_KEY = "cluster.name";
+    private static final String ELASTICSEARCH_CLIENT_TRANSPORT_SNIFF_KEY = "client.transport.sniff";
+    private static final String ELASTICSEARCH_CLIENT_TRANSPORT_IGNORE_CLUSTER_NAME_KEY =
+            "client.transport.ignore_cluster_name";
+    private static final String ELASTICSEARCH_CLIENT_TRANSPORT_PING_TIMEOUT_KEY = "client.transport.ping_timeout";
+    private static final String ELASTICSEARCH_CLIENT_TRANSPORT_NODES_SAMPLER_INTERVAL_KEY =
+            "client.transport.nodes_sampler_interval";
+
+    private final TransportClient elasticsearchClient;
+    private final String elasticsearchEndpoint;
+    private final int elasticsearchPort;
+
+    private final int bulkRequestSize;
+    private final Semaphore inFlightRequests;
+    private final ElasticsearchRetryPolicy retryPolicy;
+    private final ElasticsearchSpillFile spillFile;
+
+    // resends the bulk requests that were rejected or could not reach the cluster
+    private final ScheduledExecutorService retryExecutor = Executors
+            .newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "cwl-elasticsearch-emitter-retry");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    // the retries waiting for their backoff, which are dropped on shutdown
+    private final Set<Retry> pendingRetries = Collections.newSetFromMap(new ConcurrentHashMap<Retry, Boolean>());
+
+    public CloudWatchLogsElasticsearchEmitter(CloudWatchLogsConnectorConfiguration configuration) {
+        this(configuration, new Semaphore(Math.max(configuration.ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS, 1)),
+                new ElasticsearchRetryPolicy(configuration), new ElasticsearchSpillFile(configuration));
+    }
+
+    /**
+     * @param inFlightRequests The permits for bulk requests, which may be shared
+     *        with other emitters, as may the retry policy and the spill file.
+     */
+    public CloudWatchLogsElasticsearchEmitter(CloudWatchLogsConnectorConfiguration configuration,
+            Semaphore inFlightRequests, ElasticsearchRetryPolicy retryPolicy, ElasticsearchSpillFile spillFile) {
+        Settings settings = ImmutableSettings.settingsBuilder()
+                .put(ELASTICSEARCH_CLUSTER_NAME_KEY, configuration.ELASTICSEARCH_CLUSTER_NAME)
+                .put(ELASTICSEARCH_CLIENT_TRANSPORT_SNIFF_KEY, configuration.ELASTICSEARCH_TRANSPORT_SNIFF)
+                .put(ELASTICSEARCH_CLIENT_TRANSPORT_IGNORE_CLUSTER_NAME_KEY,
+                        configuration.ELASTICSEARCH_IGNORE_CLUSTER_NAME)
+                .put(ELASTICSEARCH_CLIENT_TRANSPORT_PING_TIMEOUT_KEY, configuration.ELASTICSEARCH_PING_TIMEOUT)
+                .put(ELASTICSEARCH_CLIENT_TRANSPORT_NODES_SAMPLER_INTERVAL_KEY,
+                        configuration.ELASTICSEARCH_NODE_SAMPLER_INTERVAL)
+                .build();
+
+        this.elasticsearchEndpoint = configuration.ELASTICSEARCH_ENDPOINT;
+        this.elasticsearchPort = configuration.ELASTICSEARCH_PORT;
+        this.bulkRequestSize = Math.max(configuration.ELASTICSEARCH_BULK_REQUEST_SIZE, 1);
+        this.inFlightRequests = inFlightRequests;
+        this.retryPolicy = retryPolicy;
+        this.spillFile = spillFile;
+
+        LOG.info("CloudWatchLogsElasticsearchEmitter using elasticsearch endpoint " + elasticsearchEndpoint + ":"
+                + elasticsearchPort);
+
+        this.elasticsearchClient = new TransportClient(settings);
+        this.elasticsearchClient.addTransportAddress(new InetSocketTransportAddress(elasticsearchEndpoint,
+                elasticsearchPort));
+    }
+
+    @Override
+    public List<ElasticsearchObject> emit(UnmodifiableBuffer<ElasticsearchObject> buffer) throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<ElasticsearchObject> failures = new ArrayList<>();
+
+        emitAsync(buffer.getRecords(), new Callback<ElasticsearchObject>() {
+
+            @Override
+            public void onComplete(List<ElasticsearchObject> bulkFailures) {
+                synchronized (failures) {
+                    failures.addAll(bulkFailures);
+                }
+                latch.countDown();
+            }
+        });
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String message = "Interrupted while waiting for bulk requests";
+            LOG.error(message);
+            throw new IOException(message, e);
+        }
+
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    @Override
+    public void emitAsync(List<ElasticsearchObject> records, Callback<ElasticsearchObject> callback) {
+        if (records.isEmpty()) {
+            callback.onComplete(Collections.<ElasticsearchObject> emptyList());
+            return;
+        }
+
+        int numberOfBulkRequests = (records.size() + bulkRequestSize - 1) / bulkRequestSize;
+        BulkEmit bulkEmit = new BulkEmit(numberOfBulkRequests, callback);
+
+        for (int start = 0; start < records.size(); start += bulkRequestSize) {
+            List<ElasticsearchObject> bulk = records.subList(start, Math.min(start + bulkRequestSize, records.size()));
+
+            // the permit is held until every document of the bulk request has been handled
+            inFlightRequests.acquireUninterruptibly();
+            retryPolicy.recordSent(bulk.size());
+            executeAsync(bulk, bulkEmit, 0);
+        }
+    }
+
+    /**
+     * @param retries The number of times these documents have been rejected and
+     *        sent again.
+     */
+    private void executeAsync(final List<ElasticsearchObject> records, final BulkEmit bulkEmit, final int retries) {
+        ActionListener<BulkResponse> listener = new ActionListener<BulkResponse>() {
+
+            @Override
+            public void onResponse(BulkResponse bulkResponse) {
+                try {
+                    handleResponse(records, bulkResponse, bulkEmit, retries);
+                } catch (Exception e) {
+                    LOG.error("Could not handle the bulk response", e);
+                    complete(bulkEmit, records);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                if (e instanceof NoNodeAvailableException) {
+                    LOG.error("No nodes found at " + elasticsearchEndpoint + ":" + elasticsearchPort, e);
+                } else {
+                    LOG.error("CloudWatchLogsElasticsearchEmitter threw an unexpected exception ", e);
+                }
+
+                // nothing was indexed, so every document is sent again while it has retries left
+                retryOrSpill(records, Collections.<ElasticsearchObject> emptyList(), bulkEmit, retries);
+            }
+        };
+
+        try {
+            executeBulk(records, listener);
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    /**
+     * Sends the documents in one bulk request.
+     */
+    void executeBulk(List<ElasticsearchObject> records, ActionListener<BulkResponse> listener) {
+        // the listener runs on a thread of its own, as it may write to disk
+        prepareBulk(records).setListenerThreaded(true).execute(listener);
+    }
+
+    /**
+     * Sends the rejected documents that may be retried again, and spills the
+     * others. The cluster health is only logged once they have been handled.
+     */
+    private void handleResponse(List<ElasticsearchObject> records, BulkResponse bulkResponse, BulkEmit bulkEmit,
+            int retries) {
+        BulkItemResponse[] responses = bulkResponse.getItems();
+        List<ElasticsearchObject> retryable = new ArrayList<>();
+        List<ElasticsearchObject> rejected = new ArrayList<>();
+        int numberOfSkippedRecords = 0;
+        int numberOfThrottledRecords = 0;
+
+        for (int i = 0; i < responses.length; i++) {
+            if (responses[i].isFailed()) {
+                String failureMessage = responses[i].getFailureMessage();
+                BulkItemResponse.Failure failure = responses[i].getFailure();
+                RestStatus status = failure == null ? null : failure.getStatus();
+
+                if (failureMessage != null && (failureMessage.contains("DocumentAlreadyExistsException")
+                        || failureMessage.contains("VersionConflictEngineException"))) {
+                    // the document was indexed by an earlier attempt
+                    numberOfSkippedRecords++;
+                } else if (retryPolicy.isRetryable(status)) {
+                    if (status == RestStatus.TOO_MANY_REQUESTS) {
+                        numberOfThrottledRecords++;
+                    } else {
+                        LOG.warn("Record failed with message: " + failureMessage);
+                    }
+                    retryable.add(records.get(responses[i].getItemId()));
+                } else {
+                    LOG.error("Record failed with message: " + failureMessage);
+                    rejected.add(records.get(responses[i].getItemId()));
+                }
+            }
+        }
+
+        LOG.info("Emitted " + (records.size() - retryable.size() - rejected.size() - numberOfSkippedRecords)
+                + " records to Elasticsearch");
+
+        if (numberOfThrottledRecords > 0) {
+            LOG.warn(numberOfThrottledRecords + " records were rejected by a busy cluster");
+        }
+
+        if (retryOrSpill(retryable, rejected, bulkEmit, retries)) {
+            try {
+                printClusterStatus();
+            } catch (Exception e) {
+                LOG.warn("Could not query the cluster health", e);
+            }
+        }
+    }
+
+    /**
+     * Sends the retryable documents again after a backoff, as far as the retry
+     * policy allows, and spills the rejected documents along with the others.
+     * The bulk request is complete if nothing is sent again.
+     *
+     * @return Whether any document was spilled.
+     */
+    private boolean retryOrSpill(List<ElasticsearchObject> retryable, List<ElasticsearchObject> rejected,
+            BulkEmit bulkEmit, int retries) {
+        int numberOfRetries = retryPolicy.canRetry(retries) ? retryPolicy.acquireRetries(retryable.size()) : 0;
+        List<ElasticsearchObject> spilled = new ArrayList<>(rejected);
+        if (numberOfRetries < retryable.size()) {
+            LOG.warn("Out of retries for " + (retryable.size() - numberOfRetries) + " records");
+            spilled.addAll(retryable.subList(numberOfRetries, retryable.size()));
+        }
+
+        if (!spilled.isEmpty()) {
+            bulkEmit.addFailures(spill(spilled));
+        }
+
+        if (numberOfRetries > 0) {
+            long backoff = retryPolicy.getBackoff(retries);
+            LOG.info("Retrying " + numberOfRetries + " records in " + backoff + " milliseconds");
+            retryAsync(new Retry(new ArrayList<>(retryable.subList(0, numberOfRetries)), bulkEmit, retries + 1,
+                    numberOfRetries), backoff);
+        } else {
+            complete(bulkEmit, Collections.<ElasticsearchObject> emptyList());
+        }
+
+        return !spilled.isEmpty();
+    }
+
+    /**
+     * Writes the records to the spill file, and returns those that could not be
+     * written.
+     */
+    private List<ElasticsearchObject> spill(List<ElasticsearchObject> records) {
+        try {
+            spillFile.write(records);
+            return Collections.emptyList();
+        } catch (IOException e) {
+            LOG.error("Could not spill " + records.size() + " records. Returning them as failed", e);
+            return records;
+        }
+    }
+
+    /**
+     * Sends the bulk request again after a backoff, keeping its permit.
+     */
+    private void retryAsync(Retry retry, long backoff) {
+        pendingRetries.add(retry);
+        try {
+            retryExecutor.schedule(retry, backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the emitter has been shut down
+            drop(retry);
+        }
+    }
+
+    /**
+     * Returns the documents of a retry that will not run as failed, releasing
+     * the permit of its bulk request.
+     */
+    private void drop(Retry retry) {
+        if (pendingRetries.remove(retry)) {
+            retryPolicy.releaseRetries(retry.acquiredRetries);
+            complete(retry.bulkEmit, retry.records);
+        }
+    }
+
+    private void complete(BulkEmit bulkEmit, List<ElasticsearchObject> failures) {
+        inFlightRequests.release();
+        bulkEmit.addFailures(failures);
+        bulkEmit.complete();
+    }
+
+    private BulkRequestBuilder prepareBulk(List<ElasticsearchObject> records) {
+        BulkRequestBuilder bulkRequest = elasticsearchClient.prepareBulk();
+        for (ElasticsearchObject record : records) {
+            bulkRequest.add(prepareIndex(record));
+        }
+        return bulkRequest;
+    }
+
+    private IndexRequestBuilder prepareIndex(ElasticsearchObject record) {
+        IndexRequestBuilder indexRequestBuilder = elasticsearchClient.prepareIndex(record.getIndex(),
+                record.getType(), record.getId());
+
+        if (record instanceof CloudWatchLogsElasticsearchObject) {
+            indexRequestBuilder.setSource(((CloudWatchLogsElasticsearchObject) record).getSourceBytes());
+        } else {
+            indexRequestBuilder.setSource(record.getSource());
+        }
+
+        Long version = record.getVersion();
+        if (version != null) {
+            indexRequestBuilder.setVersion(version);
+        }
+
+        Long ttl = record.getTtl();
+        if (ttl != null) {
+            indexRequestBuilder.setTTL(ttl);
+        }
+
+        Boolean create = record.getCreate();
+        if (create != null) {
+            indexRequestBuilder.setCreate(create);
+        }
+
+        return indexRequestBuilder;
+    }
+
+    @Override
+    public void fail(List<ElasticsearchObject> records) {
+        for (ElasticsearchObject record : records) {
+            LOG.error("Record failed: " + record.getIndex() + "/" + record.getType() + "/" + record.getId());
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        List<Runnable> droppedTasks = retryExecutor.shutdownNow();
+        if (!pendingRetries.isEmpty()) {
+            LOG.warn("Dropping " + droppedTasks.size() + " scheduled retries on shutdown");
+        }
+
+        // whichever retries have not started are dropped, including those scheduled since
+        for (Retry retry : pendingRetries) {
+            drop(retry);
+        }
+        elasticsearchClient.close();
+    }
+
+    /**
+     * Logs the cluster health once it is known, without waiting for it.
+     */
+    void printClusterStatus() {
+        elasticsearchClient.admin().cluster().prepareHealth().execute(new ActionListener<ClusterHealthResponse>() {
+
+            @Override
+            public void onResponse(ClusterHealthResponse response) {
+                if (response.getStatus().equals(ClusterHealthStatus.RED)) {
+                    LOG.error("Cluster health is RED. Indexing ability will be limited");
+                } else if (response.getStatus().equals(ClusterHealthStatus.YELLOW)) {
+                    LOG.warn("Cluster health is YELLOW.");
+                } else if (response.getStatus().equals(ClusterHealthStatus.GREEN)) {
+                    LOG.info("Cluster health is GREEN.");
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                LOG.warn("Could not query the cluster health", e);
+            }
+        });
+    }
+
+    /**
+     * Sends the documents of a bulk request again, unless they have been
+     * dropped on shutdown.
+     */
+    private final class Retry implements Runnable {
+
+        private final List<ElasticsearchObject> records;
+        private final BulkEmit bulkEmit;
+        private final int retries;
+        private final int acquiredRetries;
+
+        /**
+         * @param acquiredRetries The retries taken from the budget, which are
+         *        released if the retry is dropped.
+         */
+        Retry(List<ElasticsearchObject> records, BulkEmit bulkEmit, int retries, int acquiredRetries) {
+            this.records = records;
+            this.bulkEmit = bulkEmit;
+            this.retries = retries;
+            this.acquiredRetries = acquiredRetries;
+        }
+
+        @Override
+        public void run() {
+            if (pendingRetries.remove(this)) {
+                executeAsync(records, bulkEmit, retries);
+            }
+        }
+    }
+
+    /**
+     * Collects the failures of the bulk requests of one emitAsync call.
+     */
+    private static final class BulkEmit {
+
+        private final AtomicInteger remainingBulkRequests;
+        private final Callback<ElasticsearchObject> callback;
+        private final List<ElasticsearchObject> failures = new ArrayList<>();
+
+        BulkEmit(int numberOfBulkRequests, Callback<ElasticsearchObject> callback) {
+            this.remainingBulkRequests = new AtomicInteger(numberOfBulkRequests);
+            this.callback = callback;
+        }
+
+        void addFailures(List<ElasticsearchObject> bulkFailures) {
+            if (!bulkFailures.isEmpty()) {
+                synchronized (failures) {
+                    failures.addAll(bulkFailures);
+                }
+            }
+        }
+
+        /**
+         * Called once for each bulk request, after its last attempt.
+         */
+        void complete() {
+            if (remainingBulkRequests.decrementAndGet() == 0) {
+                List<ElasticsearchObject> allFailures;
+                synchronized (failures) {
+                    allFailures = new ArrayList<>(failures);
+                }
+                callback.onComplete(allFailures);
+            }
+        }
+    }
+}
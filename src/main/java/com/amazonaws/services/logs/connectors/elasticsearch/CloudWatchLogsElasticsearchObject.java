@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import java.nio.charset.StandardCharsets;
+
+import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+
+/**
+ * An ElasticsearchObject whose source is kept as UTF-8 bytes, so that it can be
+ * added to a bulk request without being converted to a String first.
+ */
+public class CloudWatchLogsElasticsearchObject extends ElasticsearchObject {
+
+    private final byte[] sourceBytes;
+
+    /**
+     * @param sourceBytes The UTF-8 encoded source. The array is not copied and must
+     *        not be modified.
+     */
+    public CloudWatchLogsElasticsearchObject(String index, String type, String id, byte[] sourceBytes) {
+        super(index, type, id, null);
+        this.sourceBytes = sourceBytes;
+    }
+
+    public byte[] getSourceBytes() {
+        return sourceBytes;
+    }
+
+    /**
+     * Decodes the source on each call; prefer {@link #getSourceBytes()}.
+     */
+    @Override
+    public String getSource() {
+        return new String(sourceBytes, StandardCharsets.UTF_8);
+    }
+}
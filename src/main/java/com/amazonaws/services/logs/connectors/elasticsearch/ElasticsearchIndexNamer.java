@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Names the time-based indexes that log events are written to.
+ *
+ * The name of the current period is cached together with its boundaries, so
+ * that events falling in the same period as the previous one get the cached
+ * name without formatting a date or allocating. The prefix may contain a
+ * {logGroup} placeholder to give each log group its own indexes.
+ */
+public class ElasticsearchIndexNamer {
+
+    public static final String DEFAULT_PREFIX = "cwl-";
+
+    private static final String LOG_GROUP_PLACEHOLDER = "{logGroup}";
+
+    // bounds the number of cached periods when the prefix depends on the log group
+    private static final int MAX_CACHED_PREFIXES = 1024;
+
+    /**
+     * How often a new index is started. The suffixes of daily indexes are the
+     * ones Kibana expects by default.
+     */
+    public enum Rollover {
+
+        HOURLY("yyyy.MM.dd.HH") {
+
+            @Override
+            DateTime floor(DateTime time) {
+                return time.hourOfDay().roundFloorCopy();
+            }
+
+            @Override
+            DateTime next(DateTime start) {
+                return start.plusHours(1);
+            }
+        },
+
+        DAILY("yyyy.MM.dd") {
+
+            @Override
+            DateTime floor(DateTime time) {
+                return time.dayOfMonth().roundFloorCopy();
+            }
+
+            @Override
+            DateTime next(DateTime start) {
+                return start.plusDays(1);
+            }
+        },
+
+        WEEKLY("xxxx.'w'ww") {
+
+            @Override
+            DateTime floor(DateTime time) {
+                return time.weekOfWeekyear().roundFloorCopy();
+            }
+
+            @Override
+            DateTime next(DateTime start) {
+                return start.plusWeeks(1);
+            }
+        };
+
+        private final DateTimeFormatter formatter;
+
+        private Rollover(String pattern) {
+            this.formatter = DateTimeFormat.forPattern(pattern).withZone(DateTimeZone.UTC);
+        }
+
+        abstract DateTime floor(DateTime time);
+
+        abstract DateTime next(DateTime start);
+
+        /**
+         * Parses a rollover name, such as daily, ignoring case.
+         */
+        public static Rollover fromString(String rollover) {
+            try {
+                return valueOf(rollover.trim().toUpperCase(Locale.ENGLISH));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid index rollover " + rollover
+                        + ". Expected hourly, daily or weekly", e);
+            }
+        }
+    }
+
+    private final String prefix;
+    private final boolean prefixPerLogGroup;
+    private final Rollover rollover;
+
+    private final ConcurrentMap<String, Period> periods = new ConcurrentHashMap<>();
+
+    /**
+     * Creates daily indexes named cwl-yyyy.MM.dd.
+     */
+    public ElasticsearchIndexNamer() {
+        this(DEFAULT_PREFIX, Rollover.DAILY);
+    }
+
+    public ElasticsearchIndexNamer(String prefix, Rollover rollover) {
+        this.prefix = prefix;
+        this.prefixPerLogGroup = prefix.contains(LOG_GROUP_PLACEHOLDER);
+        this.rollover = rollover;
+    }
+
+    /**
+     * Returns the name of the index for a log event.
+     */
+    public String getIndexName(String logGroup, long timestamp) {
+        // the log group strings of a record are shared, so the lookup only compares references in most cases
+        String key = prefixPerLogGroup && logGroup != null ? logGroup : "";
+
+        Period period = periods.get(key);
+        if (period != null && period.contains(timestamp)) {
+            return period.name;
+        }
+
+        String eventPrefix = period != null ? period.prefix : (prefixPerLogGroup ? getPrefix(logGroup) : prefix);
+        period = createPeriod(eventPrefix, timestamp);
+
+        // late or early events replace the cached period, which is then restored by the next current event
+        if (periods.size() < MAX_CACHED_PREFIXES || periods.containsKey(key)) {
+            periods.put(key, period);
+        }
+
+        return period.name;
+    }
+
+    private Period createPeriod(String eventPrefix, long timestamp) {
+        DateTime start = rollover.floor(new DateTime(timestamp, DateTimeZone.UTC));
+        DateTime end = rollover.next(start);
+
+        return new Period(start.getMillis(), end.getMillis(), eventPrefix, eventPrefix
+                + rollover.formatter.print(start));
+    }
+
+    /**
+     * Returns the prefix with the log group in place of the placeholder, made of
+     * the characters allowed in index names.
+     */
+    private String getPrefix(String logGroup) {
+        StringBuilder name = new StringBuilder(logGroup == null ? 0 : logGroup.length());
+
+        if (logGroup != null) {
+            for (int i = 0; i < logGroup.length(); i++) {
+                char c = Character.toLowerCase(logGroup.charAt(i));
+
+                if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '_' || c == '-') {
+                    name.append(c);
+                } else if (name.length() > 0 && name.charAt(name.length() - 1) != '-') {
+                    // collapse separators such as the slashes of /aws/lambda/name
+                    name.append('-');
+                }
+            }
+
+            if (name.length() > 0 && name.charAt(name.length() - 1) == '-') {
+                name.setLength(name.length() - 1);
+            }
+        }
+
+        return prefix.replace(LOG_GROUP_PLACEHOLDER, name);
+    }
+
+    /**
+     * The time range covered by one index and its name.
+     */
+    private static final class Period {
+
+        private final long start;
+        private final long end;
+        private final String prefix;
+        private final String name;
+
+        Period(long start, long end, String prefix, String name) {
+            this.start = start;
+            this.end = end;
+            this.prefix = prefix;
+            this.name = name;
+        }
+
+        boolean contains(long timestamp) {
+            return timestamp >= start && timestamp < end;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.rest.RestStatus;
+
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+
+/**
+ * Decides which rejected documents are sent again, and when. Documents are
+ * retried with a jittered exponential backoff, so that shards rejected by the
+ * same busy node do not retry in lockstep. The retries of a worker are also
+ * bounded by a budget that grows with the documents sent for the first time,
+ * so that an overloaded cluster does not receive more retries than new
+ * documents.
+ */
+public class ElasticsearchRetryPolicy {
+
+    // the budget is kept in hundredths of a document
+    private static final long UNITS_PER_DOCUMENT = 100;
+
+    private final int maxRetries;
+    private final long initialBackoff;
+    private final long maxBackoff;
+    private final long budgetPercent;
+    private final long budgetCapacity;
+
+    private final AtomicLong budget;
+    private final Random random = new Random();
+
+    /**
+     * Saves up the retries of as many documents as can be in flight at once.
+     */
+    public ElasticsearchRetryPolicy(CloudWatchLogsConnectorConfiguration configuration) {
+        this(configuration.ELASTICSEARCH_MAX_RETRIES, configuration.ELASTICSEARCH_RETRY_INITIAL_BACKOFF,
+                configuration.ELASTICSEARCH_RETRY_MAX_BACKOFF, configuration.ELASTICSEARCH_RETRY_BUDGET_PERCENT,
+                configuration.ELASTICSEARCH_BULK_REQUEST_SIZE * configuration.ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS);
+    }
+
+    /**
+     * @param maxRetries The number of times a document may be sent again.
+     * @param initialBackoff The backoff before the first retry, in milliseconds.
+     * @param maxBackoff The longest backoff, in milliseconds.
+     * @param budgetPercent The retries allowed, as a percentage of the
+     *        documents sent for the first time.
+     * @param budgetCapacity The most retries that can be saved up, which are
+     *        also available on start.
+     */
+    public ElasticsearchRetryPolicy(int maxRetries, long initialBackoff, long maxBackoff, int budgetPercent,
+            int budgetCapacity) {
+        this.maxRetries = Math.max(maxRetries, 0);
+        this.initialBackoff = Math.max(initialBackoff, 1);
+        this.maxBackoff = Math.max(maxBackoff, this.initialBackoff);
+        this.budgetPercent = Math.max(budgetPercent, 0);
+        this.budgetCapacity = Math.max(budgetCapacity, 0) * UNITS_PER_DOCUMENT;
+        this.budget = new AtomicLong(this.budgetCapacity);
+    }
+
+    /**
+     * Whether a document rejected with this status may be indexed by a later
+     * attempt, such as when the bulk thread pool of a node is full.
+     */
+    public boolean isRetryable(RestStatus status) {
+        return status == null || status == RestStatus.TOO_MANY_REQUESTS || status.getStatus() >= 500;
+    }
+
+    /**
+     * Whether documents that have already been retried this many times may be
+     * retried again.
+     */
+    public boolean canRetry(int retries) {
+        return retries < maxRetries;
+    }
+
+    /**
+     * Returns the backoff before a retry, in milliseconds: a random value
+     * between half and all of the exponential backoff for this attempt.
+     *
+     * @param retries The number of times the documents have been retried.
+     */
+    public long getBackoff(int retries) {
+        long backoff = retries >= 62 ? maxBackoff : Math.min(initialBackoff << retries, maxBackoff);
+        if (backoff < 0) {
+            backoff = maxBackoff;
+        }
+
+        double jitter;
+        synchronized (random) {
+            jitter = random.nextDouble();
+        }
+        return backoff / 2 + (long) (jitter * (backoff - backoff / 2));
+    }
+
+    /**
+     * Adds to the budget for documents sent for the first time.
+     */
+    public void recordSent(int documents) {
+        long deposit = documents * budgetPercent;
+
+        while (true) {
+            long current = budget.get();
+            long updated = Math.min(current + deposit, budgetCapacity);
+            if (updated == current || budget.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Takes the retries of up to the given number of documents from the budget.
+     *
+     * @return The number of documents that may be retried.
+     */
+    public int acquireRetries(int documents) {
+        while (true) {
+            long current = budget.get();
+            long granted = Math.min(documents, current / UNITS_PER_DOCUMENT);
+            if (granted == 0 || budget.compareAndSet(current, current - granted * UNITS_PER_DOCUMENT)) {
+                return (int) granted;
+            }
+        }
+    }
+
+    /**
+     * Gives back retries that were acquired but will not be sent.
+     */
+    public void releaseRetries(int documents) {
+        long refund = documents * UNITS_PER_DOCUMENT;
+
+        while (true) {
+            long current = budget.get();
+            long updated = Math.min(current + refund, budgetCapacity);
+            if (updated == current || budget.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+}
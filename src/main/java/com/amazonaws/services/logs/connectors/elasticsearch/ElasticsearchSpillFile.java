@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Keeps the documents that could not be indexed in local files, in the format
+ * of the bulk API, so that they can be replayed once the cluster has recovered:
+ *
+ * <pre>
+ * curl -XPOST 'http://localhost:9200/_bulk' --data-binary @cwl-spill-1421116133213-42.json
+ * </pre>
+ *
+ * Files are rolled over once they reach a set size. Writes are synced to disk
+ * before returning, as the records they contain are checkpointed afterwards.
+ */
+public class ElasticsearchSpillFile {
+
+    private static final Log LOG = LogFactory.getLog(ElasticsearchSpillFile.class);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String FILE_NAME_PREFIX = "cwl-spill-";
+    private static final String FILE_NAME_SUFFIX = ".json";
+
+    private static final long DEFAULT_MAX_FILE_SIZE = 100 * 1024 * 1024;
+
+    private final File directory;
+    private final long maxFileSize;
+
+    private File file;
+
+    public ElasticsearchSpillFile(CloudWatchLogsConnectorConfiguration configuration) {
+        this(new File(configuration.ELASTICSEARCH_SPILL_DIRECTORY), DEFAULT_MAX_FILE_SIZE);
+    }
+
+    public ElasticsearchSpillFile(File directory, long maxFileSize) {
+        this.directory = directory;
+        this.maxFileSize = maxFileSize;
+    }
+
+    /**
+     * Appends index actions for the records to the current file.
+     */
+    public synchronized void write(List<ElasticsearchObject> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream bulk = new ByteArrayOutputStream();
+        for (ElasticsearchObject record : records) {
+            writeAction(bulk, record);
+            writeSource(bulk, record);
+        }
+
+        File spillFile = getFile();
+        FileOutputStream outputStream = new FileOutputStream(spillFile, true);
+        try {
+            bulk.writeTo(outputStream);
+            outputStream.getFD().sync();
+        } finally {
+            outputStream.close();
+        }
+
+        LOG.warn("Wrote " + records.size() + " records that could not be indexed to " + spillFile);
+    }
+
+    private File getFile() throws IOException {
+        if (file == null || file.length() >= maxFileSize) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                String message = "Could not create the spill directory " + directory;
+                LOG.error(message);
+                throw new IOException(message);
+            }
+            // the name is unique even if several workers share the directory
+            file = File.createTempFile(FILE_NAME_PREFIX + System.currentTimeMillis() + "-", FILE_NAME_SUFFIX,
+                    directory);
+        }
+        return file;
+    }
+
+    private static void writeAction(ByteArrayOutputStream bulk, ElasticsearchObject record) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(bulk, JsonEncoding.UTF8);
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(Boolean.TRUE.equals(record.getCreate()) ? "create" : "index");
+        generator.writeStringField("_index", record.getIndex());
+        generator.writeStringField("_type", record.getType());
+        if (record.getId() != null) {
+            generator.writeStringField("_id", record.getId());
+        }
+        if (record.getVersion() != null) {
+            generator.writeNumberField("_version", record.getVersion());
+        }
+        if (record.getTtl() != null) {
+            generator.writeNumberField("_ttl", record.getTtl());
+        }
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.close();
+        bulk.write('\n');
+    }
+
+    private static void writeSource(ByteArrayOutputStream bulk, ElasticsearchObject record) throws IOException {
+        byte[] source;
+        if (record instanceof CloudWatchLogsElasticsearchObject) {
+            source = ((CloudWatchLogsElasticsearchObject) record).getSourceBytes();
+        } else {
+            source = record.getSource().getBytes("UTF-8");
+        }
+
+        // line breaks can only be whitespace between the tokens of valid JSON, and each source takes one line
+        int start = 0;
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] == '\n' || source[i] == '\r') {
+                bulk.write(source, start, i - start);
+                bulk.write(' ');
+                start = i + 1;
+            }
+        }
+        bulk.write(source, start, source.length - start);
+        bulk.write('\n');
+    }
+}
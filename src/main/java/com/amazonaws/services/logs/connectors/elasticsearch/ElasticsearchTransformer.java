@@ -16,53 +16,50 @@ package com.amazonaws.services.logs.connectors.elasticsearch;
 
 import java.io.IOException;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.joda.time.DateTimeZone;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
-
 import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
-import com.amazonaws.util.json.JSONException;
+import com.amazonaws.services.logs.subscriptions.FieldTypeCache;
 
 /**
  * Transforms CloudWatchLogsEvent records to ElasticsearchObject records.
  */
 public class ElasticsearchTransformer extends CloudWatchLogsSubscriptionTransformer<ElasticsearchObject> {
 
-    private static final Log LOG = LogFactory.getLog(ElasticsearchTransformer.class);
+    // time-based indexes are used for bulk expiry
+    private final ElasticsearchIndexNamer indexNamer;
+
+    // keeps the type of each extracted field stable, and so the mappings of the indexes
+    private final FieldTypeCache fieldTypes = new FieldTypeCache();
 
-    private static final DateTimeFormatter DAY_SUFFIX_FORMATTER = DateTimeFormat.forPattern("yyyy.MM.dd").withZone(
-            DateTimeZone.UTC);
+    /**
+     * Writes log events to daily indexes named cwl-yyyy.MM.dd.
+     */
+    public ElasticsearchTransformer() {
+        this(new ElasticsearchIndexNamer());
+    }
 
-    private static final String INDEX_NAME_PREFIX = "cwl-";
+    public ElasticsearchTransformer(ElasticsearchIndexNamer indexNamer) {
+        this.indexNamer = indexNamer;
+    }
 
     @Override
     public ElasticsearchObject fromClass(CloudWatchLogsEvent record) throws IOException {
 
-        try {
-            // convert the log event to an Elasticsearch document
-            CloudWatchLogsElasticsearchDocument document = new CloudWatchLogsElasticsearchDocument(record);
+        // convert the log event to an Elasticsearch document
+        CloudWatchLogsElasticsearchDocument document = new CloudWatchLogsElasticsearchDocument(record, fieldTypes);
 
-            // daily indexes are used for bulk expiry
-            String index = INDEX_NAME_PREFIX + DAY_SUFFIX_FORMATTER.print(document.getTimestamp());
+        String index = indexNamer.getIndexName(document.getLogGroup(), document.getTimestamp());
 
-            String type = document.getLogGroup();
-            String id = document.getId();
+        String type = document.getLogGroup();
+        String id = document.getId();
 
-            // this is the structured log event in JSON format
-            String source = document.getSource();
+        // this is the structured log event in JSON format, kept as bytes up to the bulk request
+        byte[] source = document.getSourceBytes();
 
-            ElasticsearchObject elasticsearchObject = new ElasticsearchObject(index, type, id, source);
-            elasticsearchObject.setCreate(true); // creates the index if it doesn't exist
+        ElasticsearchObject elasticsearchObject = new CloudWatchLogsElasticsearchObject(index, type, id, source);
+        elasticsearchObject.setCreate(true); // creates the index if it doesn't exist
 
-            return elasticsearchObject;
-        } catch (JSONException e) {
-            String message = "Error serializing the Elasticsearch document to JSON: " + e.getMessage();
-            LOG.error(message);
-            throw new IOException(message, e);
-        }
+        return elasticsearchObject;
     }
 }
@@ -15,13 +15,15 @@
 package com.amazonaws.services.logs.connectors.elasticsearch;
 
 import java.io.IOException;
+import java.io.StringReader;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 public class ElasticsearchTransformerUtils {
 
-    private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private ElasticsearchTransformerUtils() {}
 
@@ -30,22 +32,79 @@ public class ElasticsearchTransformerUtils {
      * returns the substring. Otherwise returns null.
      */
     public static String extractJson(String message) {
-        int jsonStart = message.indexOf("{");
+        JsonSpan span = findJson(message);
+        return span == null ? null : message.substring(span.getStart());
+    }
+
+    /**
+     * Finds the JSON object that starts at the first occurrence of { and returns
+     * its position, or null if there is none or it is not valid JSON. The object
+     * is validated in a single streaming pass, without building a tree or copying
+     * the value, so that it can be spliced as is into another document. Any text
+     * following the object is ignored.
+     */
+    public static JsonSpan findJson(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        int jsonStart = value.indexOf('{');
 
         if (jsonStart < 0) {
             return null;
         }
 
-        String jsonSubString = message.substring(jsonStart);
+        try (JsonParser parser = createParser(value, jsonStart)) {
+            parser.nextToken();
+
+            int depth = 1;
+            int fieldCount = 0;
+            boolean attributeFieldNames = false;
+
+            while (depth > 0) {
+                JsonToken token = parser.nextToken();
 
-        try {
-            JsonNode rootNode = JSON_OBJECT_MAPPER.readTree(jsonSubString);
-            if (rootNode.isValueNode()) {
-                return null;
+                if (token == null) {
+                    return null;
+                }
+
+                switch (token) {
+                    case START_OBJECT:
+                    case START_ARRAY:
+                        depth++;
+                        break;
+                    case END_OBJECT:
+                    case END_ARRAY:
+                        depth--;
+                        break;
+                    case FIELD_NAME:
+                        if (depth == 1) {
+                            fieldCount++;
+                            attributeFieldNames |= parser.getCurrentName().startsWith("@");
+                        }
+                        break;
+                    default:
+                        break;
+                }
             }
+
+            int jsonEnd = jsonStart + (int) parser.getCurrentLocation().getCharOffset();
+            return new JsonSpan(jsonStart, jsonEnd, fieldCount, attributeFieldNames);
         } catch (IOException e) {
             return null;
         }
-        return jsonSubString;
+    }
+
+    /**
+     * Creates a parser positioned before the JSON object of the given span.
+     */
+    public static JsonParser createParser(String value, JsonSpan span) throws IOException {
+        return createParser(value, span.getStart());
+    }
+
+    private static JsonParser createParser(String value, int start) throws IOException {
+        StringReader reader = new StringReader(value);
+        reader.skip(start);
+        return JSON_FACTORY.createParser(reader);
     }
 }
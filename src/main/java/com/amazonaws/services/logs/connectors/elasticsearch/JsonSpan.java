@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+/**
+ * The position of a valid JSON object embedded in a string, as found by
+ * {@link ElasticsearchTransformerUtils#findJson(String)}.
+ */
+public final class JsonSpan {
+
+    private final int start;
+    private final int end;
+    private final int fieldCount;
+    private final boolean attributeFieldNames;
+
+    JsonSpan(int start, int end, int fieldCount, boolean attributeFieldNames) {
+        this.start = start;
+        this.end = end;
+        this.fieldCount = fieldCount;
+        this.attributeFieldNames = attributeFieldNames;
+    }
+
+    /**
+     * Returns the index of the opening brace.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the index following the closing brace.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public int getLength() {
+        return end - start;
+    }
+
+    /**
+     * Returns the number of top-level fields of the object.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns true if a top-level field name starts with @, the prefix of the log
+     * event attributes in Elasticsearch documents.
+     */
+    public boolean hasAttributeFieldNames() {
+        return attributeFieldNames;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Tells whether a text contains any of a set of substrings, reading each
+ * character of the text once whatever the number of substrings.
+ *
+ * The substrings are compiled into an Aho-Corasick automaton: a trie whose
+ * states also link to the state of their longest proper suffix, followed when
+ * the next character does not extend the current match. The transitions of
+ * each state are kept as a sorted array of characters.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final int ROOT = 0;
+
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] failures;
+    private final boolean[] terminal;
+
+    public AhoCorasickMatcher(Collection<String> substrings) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        trie.add(new TreeMap<Character, Integer>());
+        ends.add(Boolean.FALSE);
+
+        for (String substring : substrings) {
+            if (substring.isEmpty()) {
+                throw new IllegalArgumentException("Substrings must not be empty");
+            }
+
+            int state = ROOT;
+            for (int i = 0; i < substring.length(); i++) {
+                Integer next = trie.get(state).get(substring.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<Character, Integer>());
+                    ends.add(Boolean.FALSE);
+                    trie.get(state).put(substring.charAt(i), next);
+                }
+                state = next;
+            }
+            ends.set(state, Boolean.TRUE);
+        }
+
+        int size = trie.size();
+        this.labels = new char[size][];
+        this.targets = new int[size][];
+        this.failures = new int[size];
+        this.terminal = new boolean[size];
+
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            labels[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                labels[state][i] = transition.getKey();
+                targets[state][i] = transition.getValue();
+                i++;
+            }
+            terminal[state] = ends.get(state);
+        }
+
+        // breadth first, so that the failure links of shorter prefixes are known
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[ROOT]) {
+            failures[child] = ROOT;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (int i = 0; i < labels[state].length; i++) {
+                int child = targets[state][i];
+                int failure = failures[state];
+                int next;
+                while ((next = next(failure, labels[state][i])) < 0 && failure != ROOT) {
+                    failure = failures[failure];
+                }
+                failures[child] = next < 0 ? ROOT : next;
+
+                // a state also matches when one of its suffixes is a substring
+                terminal[child] |= terminal[failures[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public boolean containsAny(CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = next(state, c)) < 0 && state != ROOT) {
+                state = failures[state];
+            }
+            state = next < 0 ? ROOT : next;
+
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int next(int state, char c) {
+        int i = Arrays.binarySearch(labels[state], c);
+        return i < 0 ? -1 : targets[state][i];
+    }
+}
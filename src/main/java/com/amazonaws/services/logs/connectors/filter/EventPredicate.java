@@ -0,0 +1,26 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * A condition on a log event. Predicates are compiled once from the connector
+ * properties, and must be safe to call from several threads.
+ */
+public interface EventPredicate {
+
+    boolean test(CloudWatchLogsEvent event);
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches strings against a set of glob patterns, where * matches any number
+ * of characters and ? matches one. Patterns without wildcards are looked up
+ * in a hash set, and those ending with their only * are compared as prefixes.
+ */
+public final class GlobMatcher {
+
+    private final Set<String> exact = new HashSet<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private final List<String> patterns = new ArrayList<>();
+
+    public GlobMatcher(Collection<String> globs) {
+        for (String glob : globs) {
+            int star = glob.indexOf('*');
+            if (star < 0 && glob.indexOf('?') < 0) {
+                exact.add(glob);
+            } else if (star == glob.length() - 1 && glob.indexOf('?') < 0) {
+                prefixes.add(glob.substring(0, star));
+            } else {
+                patterns.add(glob);
+            }
+        }
+    }
+
+    public boolean matches(String value) {
+        if (value == null) {
+            return false;
+        }
+
+        if (exact.contains(value)) {
+            return true;
+        }
+
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (value.startsWith(prefixes.get(i))) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < patterns.size(); i++) {
+            if (matches(patterns.get(i), value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Matches one glob, going back to the last * on a mismatch, which takes
+     * linear time for patterns without more than one *.
+     */
+    static boolean matches(String glob, String value) {
+        int g = 0;
+        int v = 0;
+        int star = -1;
+        int starValue = 0;
+
+        while (v < value.length()) {
+            if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == value.charAt(v))) {
+                g++;
+                v++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                star = g++;
+                starValue = v;
+            } else if (star >= 0) {
+                g = star + 1;
+                v = ++starValue;
+            } else {
+                return false;
+            }
+        }
+
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+}
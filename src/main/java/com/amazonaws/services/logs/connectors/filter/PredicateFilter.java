@@ -0,0 +1,219 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.DeduplicationFilter;
+import com.amazonaws.services.logs.connectors.ICheckpointListener;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.HeaderPredicate;
+
+/**
+ * Keeps the log events that satisfy a predicate tree compiled from the filter
+ * rules of the connector properties:
+ *
+ * <ul>
+ * <li>filterStartTime and filterEndTime keep the events from and before the
+ * given times, and filterMaxAge those at most this many milliseconds old;</li>
+ * <li>filterMessages keeps the events whose message contains one of the
+ * substrings, and filterExcludeMessages drops them;</li>
+ * <li>filterFields keeps the events with an extracted field matching one of
+ * the name=glob rules, and filterExcludeFields drops them.</li>
+ * </ul>
+ *
+ * Values are separated by commas, and empty rules are ignored. The events must
+ * satisfy every rule, which are tested from the cheapest to the most costly,
+ * and only then are their ids checked for duplicates. The ids of the events
+ * are remembered once the record processor reports them as checkpointed.
+ *
+ * The rules on the owner, log group and log stream are compiled separately by
+ * {@link #compileHeader(CloudWatchLogsConnectorConfiguration)}, for the
+ * transformer to skip whole records before decoding their log events.
+ */
+public class PredicateFilter implements IFilter<CloudWatchLogsEvent>, ICheckpointListener {
+
+    private final EventPredicate predicate;
+    private final DeduplicationFilter deduplicationFilter;
+
+    public PredicateFilter(EventPredicate predicate) {
+        this(predicate, null);
+    }
+
+    /**
+     * @param predicate The rules to test, or null to keep every event.
+     * @param deduplicationFilter The filter of the events that satisfy the
+     *        rules, or null to keep duplicates.
+     */
+    public PredicateFilter(EventPredicate predicate, DeduplicationFilter deduplicationFilter) {
+        this.predicate = predicate;
+        this.deduplicationFilter = deduplicationFilter;
+    }
+
+    @Override
+    public boolean keepRecord(CloudWatchLogsEvent record) {
+        return (predicate == null || predicate.test(record))
+                && (deduplicationFilter == null || deduplicationFilter.keepRecord(record));
+    }
+
+    @Override
+    public void onCheckpoint(List<String> ids) {
+        if (deduplicationFilter != null) {
+            deduplicationFilter.onCheckpoint(ids);
+        }
+    }
+
+    /**
+     * Returns the filter of the given configuration, which is safe to share
+     * between the shards of a worker.
+     *
+     * @throws IllegalArgumentException if a rule is invalid.
+     */
+    public static IFilter<CloudWatchLogsEvent> create(CloudWatchLogsConnectorConfiguration configuration) {
+        EventPredicate predicate = compile(configuration);
+        if (!configuration.DEDUPLICATE) {
+            return predicate == null ? new AllPassFilter<CloudWatchLogsEvent>() : new PredicateFilter(predicate);
+        }
+        // only the events that are kept take room in the deduplication filter
+        return new PredicateFilter(predicate, new DeduplicationFilter(configuration));
+    }
+
+    /**
+     * Returns the predicate of the rules of the given configuration, or null
+     * if no event would be dropped by them. Deduplication is not part of it, as
+     * it needs to be told of the checkpointed events.
+     */
+    public static EventPredicate compile(CloudWatchLogsConnectorConfiguration configuration) {
+        List<EventPredicate> predicates = new ArrayList<>();
+
+        if (configuration.FILTER_START_TIME > 0 || configuration.FILTER_END_TIME > 0) {
+            long end = configuration.FILTER_END_TIME > 0 ? configuration.FILTER_END_TIME : Long.MAX_VALUE;
+            if (end <= configuration.FILTER_START_TIME) {
+                throw new IllegalArgumentException(CloudWatchLogsConnectorConfiguration.PROP_FILTER_END_TIME
+                        + " must be after " + CloudWatchLogsConnectorConfiguration.PROP_FILTER_START_TIME);
+            }
+            predicates.add(Predicates.timestamp(configuration.FILTER_START_TIME, end));
+        }
+        if (configuration.FILTER_MAX_AGE > 0) {
+            predicates.add(Predicates.maxAge(configuration.FILTER_MAX_AGE));
+        }
+
+        Map<String, GlobMatcher> fields = parseFields(CloudWatchLogsConnectorConfiguration.PROP_FILTER_FIELDS,
+                configuration.FILTER_FIELDS);
+        if (!fields.isEmpty()) {
+            predicates.add(Predicates.extractedField(fields));
+        }
+        Map<String, GlobMatcher> excludedFields = parseFields(
+                CloudWatchLogsConnectorConfiguration.PROP_FILTER_EXCLUDE_FIELDS, configuration.FILTER_EXCLUDE_FIELDS);
+        if (!excludedFields.isEmpty()) {
+            predicates.add(Predicates.not(Predicates.extractedField(excludedFields)));
+        }
+
+        // messages are the longest strings of the events, so they are scanned last
+        List<String> messages = split(configuration.FILTER_MESSAGES);
+        if (!messages.isEmpty()) {
+            predicates.add(Predicates.message(new AhoCorasickMatcher(messages)));
+        }
+        List<String> excludedMessages = split(configuration.FILTER_EXCLUDE_MESSAGES);
+        if (!excludedMessages.isEmpty()) {
+            predicates.add(Predicates.not(Predicates.message(new AhoCorasickMatcher(excludedMessages))));
+        }
+
+        return predicates.isEmpty() ? null : Predicates.and(predicates);
+    }
+
+    /**
+     * Returns the predicate of the filterOwners, filterLogGroups and
+     * filterLogStreams rules of the given configuration, which keep the
+     * records whose attribute matches one of the globs, and of their
+     * filterExclude counterparts, which drop them. Returns null if no record
+     * would be dropped.
+     */
+    public static HeaderPredicate compileHeader(CloudWatchLogsConnectorConfiguration configuration) {
+        final GlobMatcher owners = globs(configuration.FILTER_OWNERS);
+        final GlobMatcher excludedOwners = globs(configuration.FILTER_EXCLUDE_OWNERS);
+        final GlobMatcher logGroups = globs(configuration.FILTER_LOG_GROUPS);
+        final GlobMatcher excludedLogGroups = globs(configuration.FILTER_EXCLUDE_LOG_GROUPS);
+        final GlobMatcher logStreams = globs(configuration.FILTER_LOG_STREAMS);
+        final GlobMatcher excludedLogStreams = globs(configuration.FILTER_EXCLUDE_LOG_STREAMS);
+
+        if (owners == null && excludedOwners == null && logGroups == null && excludedLogGroups == null
+                && logStreams == null && excludedLogStreams == null) {
+            return null;
+        }
+
+        return new HeaderPredicate() {
+
+            @Override
+            public boolean test(String messageType, String owner, String logGroup, String logStream) {
+                return matches(owners, excludedOwners, owner) && matches(logGroups, excludedLogGroups, logGroup)
+                        && matches(logStreams, excludedLogStreams, logStream);
+            }
+        };
+    }
+
+    private static boolean matches(GlobMatcher included, GlobMatcher excluded, String value) {
+        return (included == null || included.matches(value)) && (excluded == null || !excluded.matches(value));
+    }
+
+    private static GlobMatcher globs(String value) {
+        List<String> globs = split(value);
+        return globs.isEmpty() ? null : new GlobMatcher(globs);
+    }
+
+    static List<String> split(String value) {
+        List<String> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                result.add(item.trim());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Groups name=glob rules by field name.
+     */
+    static Map<String, GlobMatcher> parseFields(String property, String value) {
+        Map<String, List<String>> globs = new LinkedHashMap<>();
+        for (String rule : split(value)) {
+            int equals = rule.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Invalid rule in " + property + ": " + rule
+                        + ". Rules must be of the form name=glob");
+            }
+
+            String name = rule.substring(0, equals).trim();
+            List<String> fieldGlobs = globs.get(name);
+            if (fieldGlobs == null) {
+                fieldGlobs = new ArrayList<>();
+                globs.put(name, fieldGlobs);
+            }
+            fieldGlobs.add(rule.substring(equals + 1).trim());
+        }
+
+        Map<String, GlobMatcher> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : globs.entrySet()) {
+            result.put(entry.getKey(), new GlobMatcher(entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Builds the nodes of a predicate tree.
+ */
+public final class Predicates {
+
+    private Predicates() {
+    }
+
+    /**
+     * Returns a predicate that holds when all the given ones do, which are
+     * tested in order until one fails.
+     */
+    public static EventPredicate and(List<EventPredicate> predicates) {
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+
+        final EventPredicate[] children = predicates.toArray(new EventPredicate[predicates.size()]);
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                for (EventPredicate child : children) {
+                    if (!child.test(event)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    public static EventPredicate not(final EventPredicate predicate) {
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                return !predicate.test(event);
+            }
+        };
+    }
+
+    /**
+     * Returns a predicate on the timestamp of events, from start included to
+     * end excluded.
+     */
+    public static EventPredicate timestamp(final long start, final long end) {
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                return event.getTimestamp() >= start && event.getTimestamp() < end;
+            }
+        };
+    }
+
+    /**
+     * Returns a predicate that holds for events at most maxAge milliseconds
+     * old when they are tested.
+     */
+    public static EventPredicate maxAge(final long maxAge) {
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                return event.getTimestamp() >= System.currentTimeMillis() - maxAge;
+            }
+        };
+    }
+
+    public static EventPredicate message(final AhoCorasickMatcher matcher) {
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                return matcher.containsAny(event.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Returns a predicate that holds when one of the extracted fields has a
+     * value matched by the matcher of its name.
+     */
+    public static EventPredicate extractedField(Map<String, GlobMatcher> matchers) {
+        final String[] names = new String[matchers.size()];
+        final GlobMatcher[] values = new GlobMatcher[matchers.size()];
+
+        int i = 0;
+        for (Map.Entry<String, GlobMatcher> entry : matchers.entrySet()) {
+            names[i] = entry.getKey();
+            values[i] = entry.getValue();
+            i++;
+        }
+
+        return new EventPredicate() {
+
+            @Override
+            public boolean test(CloudWatchLogsEvent event) {
+                // events usually have a handful of fields, so this avoids building their map
+                for (int field = 0; field < event.getExtractedFieldCount(); field++) {
+                    String name = event.getExtractedFieldName(field);
+                    for (int rule = 0; rule < names.length; rule++) {
+                        if (names[rule].equals(name) && values[rule].matches(event.getExtractedFieldValue(field))) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Publishes the metrics of a registry as the read-only attributes of the MBean
+ * com.amazonaws.services.logs.connectors:type=Metrics. Counters and gauges are
+ * an attribute each; meters add .count and .rate (per second) to their name,
+ * and histograms add .count, .mean, .p50, .p99 and .max.
+ *
+ * Attributes are listed again each time the MBean info is read, so metrics
+ * created later, such as those of a new log group, show up in JMX clients.
+ */
+public final class JmxMetricsReporter implements DynamicMBean {
+
+    private static final Log LOG = LogFactory.getLog(JmxMetricsReporter.class);
+
+    private static final String OBJECT_NAME = "com.amazonaws.services.logs.connectors:type=Metrics";
+
+    private final MetricsRegistry registry;
+
+    JmxMetricsReporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Registers the metrics of the given registry with the platform MBean
+     * server. Failures are logged, as the connector can run without them.
+     */
+    public static void register(MetricsRegistry registry) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new JmxMetricsReporter(registry),
+                    new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOG.warn("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Returns the value of every attribute, by name.
+     */
+    Map<String, Object> readAttributes() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (Map.Entry<MetricName, Object> entry : registry.getMetrics().entrySet()) {
+            String name = entry.getKey().toString();
+            Object metric = entry.getValue();
+
+            if (metric instanceof StripedCounter) {
+                attributes.put(name, ((StripedCounter) metric).get());
+            } else if (metric instanceof Meter) {
+                Meter meter = (Meter) metric;
+                attributes.put(name + ".count", meter.getCount());
+                attributes.put(name + ".rate", meter.getRate());
+            } else if (metric instanceof StripedHistogram) {
+                StripedHistogram.Snapshot snapshot = ((StripedHistogram) metric).getSnapshot();
+                attributes.put(name + ".count", snapshot.getCount());
+                attributes.put(name + ".mean", snapshot.getMean());
+                attributes.put(name + ".p50", snapshot.getQuantile(0.5));
+                attributes.put(name + ".p99", snapshot.getQuantile(0.99));
+                attributes.put(name + ".max", snapshot.getMax());
+            } else if (metric instanceof Gauge) {
+                attributes.put(name, ((Gauge) metric).getValue());
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = readAttributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = readAttributes();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Object value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        // metrics are read-only, so no attribute is set
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("The metrics MBean has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (Map.Entry<String, Object> attribute : readAttributes().entrySet()) {
+            infos.add(new MBeanAttributeInfo(attribute.getKey(), attribute.getValue().getClass().getName(),
+                    attribute.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "CloudWatch Logs connector metrics",
+                infos.toArray(new MBeanAttributeInfo[infos.size()]), null, null, null);
+    }
+}
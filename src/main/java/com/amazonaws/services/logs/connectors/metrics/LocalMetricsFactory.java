@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.kinesis.metrics.interfaces.IMetricsFactory;
+import com.amazonaws.services.kinesis.metrics.interfaces.IMetricsScope;
+import com.amazonaws.services.kinesis.metrics.interfaces.MetricsLevel;
+
+/**
+ * Keeps the metrics of the Kinesis Client Library in a {@link MetricsRegistry}
+ * rather than sending them to CloudWatch, so they are reported along with
+ * those of the connector. Each metric becomes a histogram named kcl_ followed
+ * by its name, such as kcl_MillisBehindLatest, with its dimensions as labels.
+ */
+public class LocalMetricsFactory implements IMetricsFactory {
+
+    private static final String PREFIX = "kcl_";
+
+    private final MetricsRegistry registry;
+    private final MetricsLevel level;
+
+    /**
+     * @param level The least detailed level of the data to keep.
+     */
+    public LocalMetricsFactory(MetricsRegistry registry, MetricsLevel level) {
+        this.registry = registry;
+        this.level = level;
+    }
+
+    @Override
+    public IMetricsScope createMetrics() {
+        return new LocalMetricsScope();
+    }
+
+    /**
+     * Collects the data of one operation, and records it once the scope ends
+     * so that every datum gets all the dimensions.
+     */
+    private final class LocalMetricsScope implements IMetricsScope {
+
+        private final List<String> dimensions = new ArrayList<>(4);
+        private final List<String> names = new ArrayList<>();
+        private final List<Double> values = new ArrayList<>();
+
+        @Override
+        public void addData(String name, double value, StandardUnit unit) {
+            names.add(name);
+            values.add(value);
+        }
+
+        @Override
+        public void addData(String name, double value, StandardUnit unit, MetricsLevel level) {
+            if (level.getValue() >= LocalMetricsFactory.this.level.getValue()) {
+                addData(name, value, unit);
+            }
+        }
+
+        @Override
+        public void addDimension(String name, String value) {
+            dimensions.add(name);
+            dimensions.add(value);
+        }
+
+        @Override
+        public void end() {
+            String[] labels = dimensions.toArray(new String[dimensions.size()]);
+            for (int i = 0; i < names.size(); i++) {
+                registry.histogram(PREFIX + names.get(i), labels).record(Math.round(values.get(i)));
+            }
+            names.clear();
+            values.clear();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events, such as log events or bytes read, and their rate per second
+ * as a moving average over about one minute. The average is updated every
+ * five seconds by whichever thread marks or reads the meter first.
+ */
+public final class Meter {
+
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    // weight of the last interval in an exponentially weighted average over one minute
+    private static final double ALPHA = 1 - Math.exp(-5 / 60.0);
+
+    private final StripedCounter count = new StripedCounter();
+    private final AtomicLong lastTick;
+
+    // guarded by this
+    private long tickedCount;
+    private volatile double rate;
+
+    public Meter() {
+        this(System.nanoTime());
+    }
+
+    Meter(long startTime) {
+        lastTick = new AtomicLong(startTime);
+    }
+
+    public void mark(long events) {
+        tick(System.nanoTime());
+        count.add(events);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the average number of events per second over about the last
+     * minute.
+     */
+    public double getRate() {
+        tick(System.nanoTime());
+        return rate;
+    }
+
+    /**
+     * Folds the events counted since the last tick into the average, once
+     * every interval. Intervals without any mark or read count as idle.
+     */
+    void tick(long now) {
+        long last = lastTick.get();
+        long age = now - last;
+        if (age < TICK_INTERVAL || !lastTick.compareAndSet(last, now - age % TICK_INTERVAL)) {
+            return;
+        }
+
+        synchronized (this) {
+            long total = count.get();
+            double intervalRate = (double) (total - tickedCount) / TimeUnit.NANOSECONDS.toSeconds(TICK_INTERVAL);
+            tickedCount = total;
+
+            double average = rate + ALPHA * (intervalRate - rate);
+            // the intervals after the first of them had no events
+            rate = average * Math.pow(1 - ALPHA, age / TICK_INTERVAL - 1);
+        }
+    }
+}
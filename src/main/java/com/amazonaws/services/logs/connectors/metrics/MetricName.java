@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.util.Arrays;
+
+/**
+ * The name of a metric and its labels, such as stage_duration_microseconds
+ * with stage=parse.
+ */
+public final class MetricName implements Comparable<MetricName> {
+
+    private final String name;
+    private final String[] labels;
+
+    /**
+     * @param labels Pairs of label names and values.
+     */
+    public MetricName(String name, String... labels) {
+        if (name == null || labels.length % 2 != 0) {
+            throw new IllegalArgumentException("A metric needs a name, and a value for each of its labels");
+        }
+        this.name = name;
+        this.labels = labels.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLabelCount() {
+        return labels.length / 2;
+    }
+
+    public String getLabelName(int index) {
+        return labels[index * 2];
+    }
+
+    public String getLabelValue(int index) {
+        return labels[index * 2 + 1];
+    }
+
+    @Override
+    public int compareTo(MetricName other) {
+        int result = name.compareTo(other.name);
+        for (int i = 0; result == 0 && i < Math.min(labels.length, other.labels.length); i++) {
+            result = String.valueOf(labels[i]).compareTo(String.valueOf(other.labels[i]));
+        }
+        return result != 0 ? result : labels.length - other.labels.length;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof MetricName)) {
+            return false;
+        }
+        MetricName that = (MetricName) other;
+        return name.equals(that.name) && Arrays.equals(labels, that.labels);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode() * 31 + Arrays.hashCode(labels);
+    }
+
+    /**
+     * Returns the name followed by the labels, such as
+     * stage_duration_microseconds{stage=parse}.
+     */
+    @Override
+    public String toString() {
+        if (labels.length == 0) {
+            return name;
+        }
+
+        StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(labels[i]).append('=').append(labels[i + 1]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The metrics of a worker, by name. Metrics are created on first use and kept
+ * until removed, and are read by the reporters from {@link #getMetrics()}.
+ *
+ * Looking a metric up allocates its name, so code on the path of each log
+ * event keeps the metrics it records to rather than looking them up again.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final ConcurrentMap<MetricName, Object> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the registry shared by the record processors of the JVM.
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public StripedCounter counter(String name, String... labels) {
+        return getOrAdd(new MetricName(name, labels), StripedCounter.class);
+    }
+
+    public Meter meter(String name, String... labels) {
+        return getOrAdd(new MetricName(name, labels), Meter.class);
+    }
+
+    public StripedHistogram histogram(String name, String... labels) {
+        return getOrAdd(new MetricName(name, labels), StripedHistogram.class);
+    }
+
+    /**
+     * Adds the given gauge, or returns the one already registered under the
+     * same name.
+     */
+    @SuppressWarnings("unchecked")
+    public <G extends Gauge> G gauge(G gauge, String name, String... labels) {
+        return add(new MetricName(name, labels), gauge, (Class<G>) gauge.getClass());
+    }
+
+    public void remove(String name, String... labels) {
+        metrics.remove(new MetricName(name, labels));
+    }
+
+    /**
+     * Returns the metrics registered so far, sorted by name. The values are
+     * {@link StripedCounter}, {@link Meter}, {@link StripedHistogram} or
+     * {@link Gauge} instances.
+     */
+    public SortedMap<MetricName, Object> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    private <M> M getOrAdd(MetricName name, Class<M> type) {
+        Object metric = metrics.get(name);
+        if (metric == null) {
+            try {
+                return add(name, type.getDeclaredConstructor().newInstance(), type);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create metric " + name, e);
+            }
+        }
+        return cast(name, metric, type);
+    }
+
+    private <M> M add(MetricName name, M metric, Class<M> type) {
+        Object existing = metrics.putIfAbsent(name, metric);
+        return existing == null ? metric : cast(name, existing, type);
+    }
+
+    private static <M> M cast(MetricName name, Object metric, Class<M> type) {
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName()
+                    + ", not a " + type.getSimpleName());
+        }
+        return type.cast(metric);
+    }
+}
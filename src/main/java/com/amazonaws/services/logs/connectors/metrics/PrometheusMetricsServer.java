@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the metrics of a registry at /metrics in the Prometheus text format,
+ * with names prefixed by cwl_consumer_. Counters and meters are counters,
+ * gauges are gauges, and histograms are summaries with the 0.5, 0.9 and 0.99
+ * quantiles of every value recorded since the start.
+ */
+public final class PrometheusMetricsServer {
+
+    private static final Log LOG = LogFactory.getLog(PrometheusMetricsServer.class);
+
+    private static final String PATH = "/metrics";
+    private static final String PREFIX = "cwl_consumer_";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99 };
+
+    private final HttpServer server;
+
+    private PrometheusMetricsServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts serving the metrics on the given port of every interface.
+     */
+    public static PrometheusMetricsServer start(final MetricsRegistry registry, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    StringWriter text = new StringWriter();
+                    write(registry, text);
+                    byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+
+                    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+
+        LOG.info("Serving metrics at http://localhost:" + server.getAddress().getPort() + PATH);
+        return new PrometheusMetricsServer(server);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Writes the metrics of the registry in the Prometheus text format.
+     */
+    static void write(MetricsRegistry registry, Writer writer) throws IOException {
+        String lastName = null;
+        for (Map.Entry<MetricName, Object> entry : registry.getMetrics().entrySet()) {
+            MetricName metricName = entry.getKey();
+            Object metric = entry.getValue();
+            String name = PREFIX + sanitize(metricName.getName());
+
+            // metrics are sorted by name, so those sharing a name are described once
+            if (!name.equals(lastName)) {
+                writer.write("# TYPE " + name + " " + type(metric) + "\n");
+                lastName = name;
+            }
+
+            if (metric instanceof StripedCounter) {
+                writeSample(writer, name, metricName, null, ((StripedCounter) metric).get());
+            } else if (metric instanceof Meter) {
+                writeSample(writer, name, metricName, null, ((Meter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                writeSample(writer, name, metricName, null, ((Gauge) metric).getValue());
+            } else if (metric instanceof StripedHistogram) {
+                StripedHistogram.Snapshot snapshot = ((StripedHistogram) metric).getSnapshot();
+                for (double quantile : QUANTILES) {
+                    writeSample(writer, name, metricName, String.valueOf(quantile), snapshot.getQuantile(quantile));
+                }
+                writeSample(writer, name + "_sum", metricName, null, snapshot.getSum());
+                writeSample(writer, name + "_count", metricName, null, snapshot.getCount());
+            }
+        }
+        writer.flush();
+    }
+
+    private static String type(Object metric) {
+        if (metric instanceof StripedHistogram) {
+            return "summary";
+        }
+        return metric instanceof Gauge ? "gauge" : "counter";
+    }
+
+    private static void writeSample(Writer writer, String name, MetricName metricName, String quantile,
+            double value) throws IOException {
+        writer.write(name);
+        if (metricName.getLabelCount() > 0 || quantile != null) {
+            writer.write('{');
+            for (int i = 0; i < metricName.getLabelCount(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeLabel(writer, sanitize(metricName.getLabelName(i)), metricName.getLabelValue(i));
+            }
+            if (quantile != null) {
+                if (metricName.getLabelCount() > 0) {
+                    writer.write(',');
+                }
+                writeLabel(writer, "quantile", quantile);
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long) value)
+                : Double.toString(value));
+        writer.write('\n');
+    }
+
+    private static void writeLabel(Writer writer, String name, String value) throws IOException {
+        writer.write(name);
+        writer.write("=\"");
+        String text = String.valueOf(value);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '"') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Replaces the characters that Prometheus does not allow in names.
+     */
+    static String sanitize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_'
+                    || (i > 0 && c >= '0' && c <= '9');
+            builder.append(valid ? c : '_');
+        }
+        return builder.toString();
+    }
+}
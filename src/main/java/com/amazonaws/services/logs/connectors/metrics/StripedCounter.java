@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can add to without contending on a single
+ * atomic. Each thread adds to one of several cells picked from its id, and
+ * the cells are summed when the counter is read.
+ */
+public final class StripedCounter {
+
+    // keeps each cell on its own cache line
+    private static final int PADDING = 16;
+
+    static final int STRIPES = stripes();
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long value) {
+        cells.getAndAdd(stripe() * PADDING, value);
+    }
+
+    /**
+     * Returns the sum of the cells. Values added while the cells are read may
+     * or may not be counted.
+     */
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the cell of the calling thread, in [0, STRIPES).
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        // threads are mostly created in sequence, so ids are already spread
+        return (int) (id ^ (id >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Returns the power of two at least the number of processors, up to 64.
+     */
+    private static int stripes() {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        return Integer.highestOneBit(Math.max(processors - 1, 1)) << 1;
+    }
+}
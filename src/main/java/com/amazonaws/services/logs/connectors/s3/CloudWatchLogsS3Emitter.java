@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
+import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
+import com.amazonaws.services.kinesis.connectors.s3.S3Emitter;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.IPartitionedEmitter;
+import com.amazonaws.services.logs.connectors.ISerializedEmitter;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+
+/**
+ * Uploads buffers to S3 as newline-delimited JSON, optionally compressed, or
+ * the Parquet files of an {@link S3ParquetBuffer}. The partitions of an
+ * {@link S3PartitionedBuffer} are written under their own prefix.
+ *
+ * Records are compressed as they are written, and objects larger than one part
+ * are sent as multipart uploads, so that a batch is never copied whole in
+ * memory. The serialized records of an {@link S3SegmentBuffer} are streamed
+ * straight from the segment.
+ */
+public class CloudWatchLogsS3Emitter extends S3Emitter implements ISerializedEmitter, IPartitionedEmitter<byte[]> {
+
+    private static final Log LOG = LogFactory.getLog(CloudWatchLogsS3Emitter.class);
+
+    // the size of the chunks copied from a segment to the compressor
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final S3OutputFormat format;
+    private final S3Compression compression;
+    private final int partSize;
+
+    public CloudWatchLogsS3Emitter(KinesisConnectorConfiguration configuration) {
+        super(configuration);
+
+        CloudWatchLogsConnectorConfiguration config = (CloudWatchLogsConnectorConfiguration) configuration;
+        this.format = S3OutputFormat.fromString(config.S3_OUTPUT_FORMAT);
+
+        // Parquet files compress their pages themselves
+        this.compression = format == S3OutputFormat.PARQUET ? S3Compression.NONE : S3Compression
+                .fromString(config.S3_COMPRESSION);
+        this.partSize = config.S3_MULTIPART_PART_SIZE;
+    }
+
+    @Override
+    protected String getS3FileName(String firstSequenceNumber, String lastSequenceNumber) {
+        return super.getS3FileName(firstSequenceNumber, lastSequenceNumber) + format.getExtension()
+                + compression.getExtension();
+    }
+
+    @Override
+    public List<byte[]> emit(UnmodifiableBuffer<byte[]> buffer) throws IOException {
+        return emit("", buffer);
+    }
+
+    @Override
+    public List<byte[]> emit(String partition, UnmodifiableBuffer<byte[]> buffer) throws IOException {
+        List<byte[]> records = buffer.getRecords();
+        String s3FileName = partition
+                + getS3FileName(buffer.getFirstSequenceNumber(), buffer.getLastSequenceNumber());
+
+        S3ObjectOutputStream object = new S3ObjectOutputStream(s3client, s3Bucket, s3FileName, partSize);
+        try {
+            OutputStream out = compression.wrap(object);
+            // each record is a line of JSON
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            out.close();
+        } catch (IOException | AmazonClientException e) {
+            LOG.error(e);
+            object.abort();
+            return buffer.getRecords();
+        }
+
+        LOG.info("Successfully emitted " + records.size() + " records (" + object.getSize() + " bytes) to S3 in "
+                + getS3URI(s3FileName));
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean emit(ByteBuffer records, int numberOfRecords, String firstSequenceNumber,
+            String lastSequenceNumber) {
+        String s3FileName = getS3FileName(firstSequenceNumber, lastSequenceNumber);
+
+        try {
+            if (compression == S3Compression.NONE && records.remaining() <= partSize) {
+                // a single request reading the segment itself
+                ObjectMetadata metadata = new ObjectMetadata();
+                metadata.setContentLength(records.remaining());
+                s3client.putObject(s3Bucket, s3FileName, new ByteBufferInputStream(records), metadata);
+            } else {
+                write(records, s3FileName);
+            }
+        } catch (IOException | AmazonClientException e) {
+            LOG.error(e);
+            return false;
+        }
+
+        LOG.info("Successfully emitted " + numberOfRecords + " records to S3 in " + getS3URI(s3FileName));
+        return true;
+    }
+
+    private void write(ByteBuffer records, String s3FileName) throws IOException {
+        ByteBuffer remaining = records.duplicate();
+        byte[] chunk = new byte[Math.min(CHUNK_SIZE, remaining.remaining())];
+
+        S3ObjectOutputStream object = new S3ObjectOutputStream(s3client, s3Bucket, s3FileName, partSize);
+        try {
+            OutputStream out = compression.wrap(object);
+            while (remaining.hasRemaining()) {
+                int length = Math.min(chunk.length, remaining.remaining());
+                remaining.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+            out.close();
+        } catch (IOException | AmazonClientException e) {
+            object.abort();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the values of one column of a Parquet file as they are added, and
+ * writes them as a column chunk made of a single data page.
+ *
+ * Values are written with the plain encoding, and the definition levels of
+ * optional columns with the run length encoding, so that columns which are
+ * mostly null or mostly set take little space.
+ */
+final class ParquetColumn {
+
+    // physical types
+    static final int INT64 = 2;
+    static final int BYTE_ARRAY = 6;
+
+    // logical types of the values
+    static final int UTF8 = 0;
+    static final int TIMESTAMP_MILLIS = 9;
+
+    static final int REQUIRED = 0;
+    static final int OPTIONAL = 1;
+
+    private static final int PLAIN = 0;
+    private static final int RLE = 3;
+
+    private static final int UNCOMPRESSED = 0;
+    private static final int GZIP = 2;
+
+    private static final int DATA_PAGE = 0;
+
+    private final int type;
+    private final int convertedType;
+    private final int maxDefinitionLevel;
+    private final String[] path;
+
+    private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream levels = new ByteArrayOutputStream();
+    private int runLevel;
+    private int runLength;
+    private int numValues;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    // where the column chunk was last written
+    private long offset;
+    private long uncompressedSize;
+    private long compressedSize;
+
+    /**
+     * @param maxDefinitionLevel 0 for a required column, or the number of optional
+     *            fields in its path.
+     */
+    ParquetColumn(int type, int convertedType, int maxDefinitionLevel, String... path) {
+        this.type = type;
+        this.convertedType = convertedType;
+        this.maxDefinitionLevel = maxDefinitionLevel;
+        this.path = path;
+    }
+
+    int getNumValues() {
+        return numValues;
+    }
+
+    /**
+     * Returns the number of bytes encoded so far.
+     */
+    long getSize() {
+        return values.size() + levels.size();
+    }
+
+    void addString(String value) {
+        if (value == null) {
+            addNull(maxDefinitionLevel - 1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        addLevel(maxDefinitionLevel);
+        writeIntLittleEndian(values, bytes.length);
+        values.write(bytes, 0, bytes.length);
+    }
+
+    void addLong(long value) {
+        addLevel(maxDefinitionLevel);
+        for (int i = 0; i < 8; i++) {
+            values.write((int) (value >>> (i * 8)));
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds a missing value. The definition level tells how much of the path is
+     * defined: 0 when the outermost optional field is null.
+     */
+    void addNull(int definitionLevel) {
+        addLevel(definitionLevel);
+    }
+
+    void clear() {
+        values.reset();
+        levels.reset();
+        runLength = 0;
+        numValues = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    private void addLevel(int level) {
+        numValues++;
+        if (maxDefinitionLevel == 0) {
+            return;
+        }
+
+        if (runLength > 0 && level != runLevel) {
+            writeRun(levels, runLevel, runLength);
+            runLength = 0;
+        }
+        runLevel = level;
+        runLength++;
+    }
+
+    /**
+     * Writes the page header and the page of this column at the end of the file.
+     */
+    void writeChunk(ByteArrayOutputStream file, S3Compression compression) throws IOException {
+        // the current run of levels is written without ending it, in case more values are added
+        ByteArrayOutputStream run = new ByteArrayOutputStream(8);
+        if (maxDefinitionLevel > 0 && runLength > 0) {
+            writeRun(run, runLevel, runLength);
+        }
+
+        int levelsSize = maxDefinitionLevel > 0 ? 4 + levels.size() + run.size() : 0;
+        int pageSize = levelsSize + values.size();
+
+        ByteArrayOutputStream compressed = null;
+        if (compression == S3Compression.GZIP) {
+            compressed = new ByteArrayOutputStream(pageSize / 4 + 64);
+            OutputStream out = new GZIPOutputStream(compressed);
+            writePage(out, run);
+            out.close();
+        }
+
+        offset = file.size();
+
+        ThriftCompactOutput header = new ThriftCompactOutput(file);
+        header.structBegin();
+        header.fieldI32(1, DATA_PAGE);
+        header.fieldI32(2, pageSize);
+        header.fieldI32(3, compressed != null ? compressed.size() : pageSize);
+        header.fieldStructBegin(5);
+        header.fieldI32(1, numValues);
+        header.fieldI32(2, PLAIN);
+        header.fieldI32(3, RLE);
+        header.fieldI32(4, RLE);
+        header.structEnd();
+        header.structEnd();
+
+        long headerSize = file.size() - offset;
+        uncompressedSize = headerSize + pageSize;
+        compressedSize = headerSize + (compressed != null ? compressed.size() : pageSize);
+
+        if (compressed != null) {
+            compressed.writeTo(file);
+        } else {
+            writePage(file, run);
+        }
+    }
+
+    private void writePage(OutputStream out, ByteArrayOutputStream run) throws IOException {
+        if (maxDefinitionLevel > 0) {
+            int levelsLength = levels.size() + run.size();
+            out.write(new byte[] { (byte) levelsLength, (byte) (levelsLength >>> 8), (byte) (levelsLength >>> 16),
+                    (byte) (levelsLength >>> 24) });
+            levels.writeTo(out);
+            run.writeTo(out);
+        }
+        values.writeTo(out);
+    }
+
+    /**
+     * Writes the element of the file schema that describes this column.
+     */
+    void writeSchemaElement(ThriftCompactOutput thrift) {
+        thrift.structBegin();
+        thrift.fieldI32(1, type);
+        thrift.fieldI32(3, maxDefinitionLevel == 0 ? REQUIRED : OPTIONAL);
+        thrift.fieldString(4, path[path.length - 1]);
+        thrift.fieldI32(6, convertedType);
+        thrift.structEnd();
+    }
+
+    /**
+     * Writes the metadata of the chunk written last, as an element of the
+     * columns of a row group.
+     */
+    void writeColumnChunk(ThriftCompactOutput thrift, S3Compression compression) {
+        thrift.structBegin();
+        thrift.fieldI64(2, offset);
+        thrift.fieldStructBegin(3);
+        thrift.fieldI32(1, type);
+        thrift.fieldListBegin(2, ThriftCompactOutput.I32, 2);
+        thrift.writeI32(PLAIN);
+        thrift.writeI32(RLE);
+        thrift.fieldListBegin(3, ThriftCompactOutput.BINARY, path.length);
+        for (String name : path) {
+            thrift.writeString(name);
+        }
+        thrift.fieldI32(4, compression == S3Compression.GZIP ? GZIP : UNCOMPRESSED);
+        thrift.fieldI64(5, numValues);
+        thrift.fieldI64(6, uncompressedSize);
+        thrift.fieldI64(7, compressedSize);
+        thrift.fieldI64(9, offset);
+
+        // the range of timestamps lets readers skip files outside of the queried time
+        if (type == INT64 && min <= max) {
+            thrift.fieldStructBegin(12);
+            thrift.fieldBinary(5, toLittleEndian(max));
+            thrift.fieldBinary(6, toLittleEndian(min));
+            thrift.structEnd();
+        }
+
+        thrift.structEnd();
+        thrift.structEnd();
+    }
+
+    long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    private static void writeRun(ByteArrayOutputStream out, int level, int length) {
+        // the header of a run is its length shifted left by one, and levels take a single byte
+        for (long header = (long) length << 1; ; header >>>= 7) {
+            if ((header & ~0x7FL) == 0) {
+                out.write((int) header);
+                break;
+            }
+            out.write((int) (header & 0x7F) | 0x80);
+        }
+        out.write(level);
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    private static byte[] toLittleEndian(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (value >>> (i * 8));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How the objects written to S3 are compressed. The extension is appended to
+ * the key, so that readers such as Athena and Spark recognize the format.
+ */
+public enum S3Compression {
+
+    NONE("") {
+
+        @Override
+        OutputStream wrap(OutputStream out) {
+            return out;
+        }
+    },
+
+    GZIP(".gz") {
+
+        @Override
+        OutputStream wrap(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String extension;
+
+    private S3Compression(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Returns a stream that compresses what is written to it into the given stream.
+     * Closing it closes the given stream.
+     */
+    abstract OutputStream wrap(OutputStream out) throws IOException;
+
+    /**
+     * Parses a compression name, such as gzip, ignoring case.
+     */
+    public static S3Compression fromString(String compression) {
+        try {
+            return valueOf(compression.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid S3 compression " + compression + ". Expected none or gzip", e);
+        }
+    }
+}
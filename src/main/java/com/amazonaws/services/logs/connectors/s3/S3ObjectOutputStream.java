@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * Writes an S3 object as it is produced. Objects that fit in one part are
+ * uploaded with a single request when the stream is closed; larger ones are
+ * uploaded as a multipart upload, one part at a time, so that at most one part
+ * is held in memory.
+ *
+ * Closing the stream completes the object. After a failure, {@link #abort()}
+ * discards the parts uploaded so far instead.
+ */
+final class S3ObjectOutputStream extends OutputStream {
+
+    private static final Log LOG = LogFactory.getLog(S3ObjectOutputStream.class);
+
+    // the smallest part accepted by S3, other than the last one
+    static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final int INITIAL_PART_CAPACITY = 64 * 1024;
+
+    private final AmazonS3 s3client;
+    private final String bucket;
+    private final String key;
+    private final int partSize;
+
+    private final ByteArrayBuffer part;
+    private final List<PartETag> partETags = new ArrayList<>();
+    private String uploadId;
+    private long size;
+    private boolean closed;
+
+    S3ObjectOutputStream(AmazonS3 s3client, String bucket, String key, int partSize) {
+        this.s3client = s3client;
+        this.bucket = bucket;
+        this.key = key;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.part = new ByteArrayBuffer(Math.min(this.partSize, INITIAL_PART_CAPACITY));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        part.write(b);
+        if (part.size() >= partSize) {
+            uploadPart();
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        part.write(bytes, offset, length);
+        if (part.size() >= partSize) {
+            uploadPart();
+        }
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     */
+    long getSize() {
+        return size + part.size();
+    }
+
+    /**
+     * Uploads the remaining bytes and completes the object.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (uploadId == null) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(part.size());
+            s3client.putObject(bucket, key, new ByteBufferInputStream(part.toByteBuffer()), metadata);
+        } else {
+            if (part.size() > 0) {
+                uploadPart();
+            }
+            s3client.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, uploadId, partETags));
+        }
+        size += part.size();
+        part.reset();
+    }
+
+    /**
+     * Discards the object. The parts uploaded so far are deleted, as S3 would
+     * otherwise keep and bill them.
+     */
+    void abort() {
+        closed = true;
+        part.reset();
+
+        if (uploadId != null) {
+            try {
+                s3client.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, key, uploadId));
+            } catch (AmazonClientException e) {
+                LOG.warn("Could not abort the multipart upload " + uploadId + " of " + key, e);
+            }
+        }
+    }
+
+    private void uploadPart() {
+        if (uploadId == null) {
+            uploadId = s3client.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, key))
+                    .getUploadId();
+        }
+
+        // the stream supports marks, so the client can retry the part without copying it
+        UploadPartRequest request = new UploadPartRequest().withBucketName(bucket).withKey(key)
+                .withUploadId(uploadId).withPartNumber(partETags.size() + 1)
+                .withInputStream(new ByteBufferInputStream(part.toByteBuffer())).withPartSize(part.size());
+        partETags.add(s3client.uploadPart(request).getPartETag());
+
+        size += part.size();
+        part.reset();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The S3 object " + key + " is already closed");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.util.Locale;
+
+/**
+ * The format of the objects written to S3: newline-delimited JSON, or a
+ * columnar Parquet file per flush. The extension is appended to the key.
+ */
+public enum S3OutputFormat {
+
+    JSON(""),
+
+    PARQUET(".parquet");
+
+    private final String extension;
+
+    private S3OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Parses a format name, such as parquet, ignoring case.
+     */
+    public static S3OutputFormat fromString(String format) {
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid S3 output format " + format + ". Expected json or parquet", e);
+        }
+    }
+}
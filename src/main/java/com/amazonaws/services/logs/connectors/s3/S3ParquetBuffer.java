@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import static com.amazonaws.services.logs.connectors.s3.ParquetColumn.BYTE_ARRAY;
+import static com.amazonaws.services.logs.connectors.s3.ParquetColumn.INT64;
+import static com.amazonaws.services.logs.connectors.s3.ParquetColumn.TIMESTAMP_MILLIS;
+import static com.amazonaws.services.logs.connectors.s3.ParquetColumn.UTF8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.ISerializedBuffer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * A buffer that encodes log events into the columns of a Parquet file as they
+ * are consumed, so that each flush is written to S3 as one self-describing
+ * file with a single row group.
+ *
+ * The columns are id, timestamp, owner, logGroup, logStream and message, plus
+ * an extractedFields group with a column for each extracted field found in
+ * the buffered events. Pages are compressed with gzip if the S3 compression
+ * is gzip. The byte size limit applies to the encoded columns.
+ */
+public class S3ParquetBuffer implements ISerializedBuffer<CloudWatchLogsEvent> {
+
+    private static final byte[] MAGIC = { 'P', 'A', 'R', '1' };
+
+    private static final String CREATED_BY = "cloudwatch-logs-subscription-consumer";
+    private static final String EXTRACTED_FIELDS = "extractedFields";
+
+    private final S3Compression compression;
+
+    private final long bytesPerFlush;
+    private final long numMessagesToBuffer;
+    private final long millisecondsToBuffer;
+
+    private final ParquetColumn id = new ParquetColumn(BYTE_ARRAY, UTF8, 1, "id");
+    private final ParquetColumn timestamp = new ParquetColumn(INT64, TIMESTAMP_MILLIS, 0, "timestamp");
+    private final ParquetColumn owner = new ParquetColumn(BYTE_ARRAY, UTF8, 1, "owner");
+    private final ParquetColumn logGroup = new ParquetColumn(BYTE_ARRAY, UTF8, 1, "logGroup");
+    private final ParquetColumn logStream = new ParquetColumn(BYTE_ARRAY, UTF8, 1, "logStream");
+    private final ParquetColumn message = new ParquetColumn(BYTE_ARRAY, UTF8, 1, "message");
+    private final List<ParquetColumn> columns = Arrays.asList(id, timestamp, owner, logGroup, logStream, message);
+
+    // the union of the extracted fields of the buffered events, in the order they were first seen
+    private final Map<String, ParquetColumn> extractedFields = new LinkedHashMap<>();
+
+    // the events that have extracted fields, as the fields seen later must be defined for them
+    private final BitSet rowsWithExtractedFields = new BitSet();
+
+    private final ByteArrayBuffer file = new ByteArrayBuffer(64 * 1024);
+
+    private int numberOfRecords;
+    private String firstSequenceNumber;
+    private String lastSequenceNumber;
+    private long previousFlushTimeMillisecond;
+
+    public S3ParquetBuffer(CloudWatchLogsConnectorConfiguration configuration) {
+        this.compression = S3Compression.fromString(configuration.S3_COMPRESSION);
+        this.bytesPerFlush = configuration.BUFFER_BYTE_SIZE_LIMIT;
+        this.numMessagesToBuffer = configuration.BUFFER_RECORD_COUNT_LIMIT;
+        this.millisecondsToBuffer = configuration.BUFFER_MILLISECONDS_LIMIT;
+        this.previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getBytesToBuffer() {
+        return bytesPerFlush;
+    }
+
+    @Override
+    public long getNumRecordsToBuffer() {
+        return numMessagesToBuffer;
+    }
+
+    public long getMillisecondsToBuffer() {
+        return millisecondsToBuffer;
+    }
+
+    /**
+     * Adds the log event to the columns. The size of the record is not used, as
+     * the size of the encoded columns is known.
+     */
+    @Override
+    public void consumeRecord(CloudWatchLogsEvent record, int recordBytes, String sequenceNumber) {
+        int row = numberOfRecords;
+
+        id.addString(record.getId());
+        timestamp.addLong(record.getTimestamp());
+        owner.addString(record.getOwner());
+        logGroup.addString(record.getLogGroup());
+        logStream.addString(record.getLogStream());
+        message.addString(record.getMessage());
+
+        int count = record.getExtractedFieldCount();
+        if (count >= 0) {
+            rowsWithExtractedFields.set(row);
+        }
+        for (int i = 0; i < count; i++) {
+            ParquetColumn column = getExtractedField(record.getExtractedFieldName(i), row);
+
+            // a name repeated in the same event keeps its first value
+            if (column.getNumValues() == row) {
+                column.addString(record.getExtractedFieldValue(i));
+            }
+        }
+
+        // the extracted fields of other events that this one does not have
+        for (ParquetColumn column : extractedFields.values()) {
+            if (column.getNumValues() == row) {
+                column.addNull(count >= 0 ? 1 : 0);
+            }
+        }
+
+        if (numberOfRecords == 0) {
+            firstSequenceNumber = sequenceNumber;
+        }
+        lastSequenceNumber = sequenceNumber;
+        numberOfRecords++;
+    }
+
+    private ParquetColumn getExtractedField(String name, int row) {
+        ParquetColumn column = extractedFields.get(name);
+        if (column == null) {
+            column = new ParquetColumn(BYTE_ARRAY, UTF8, 2, EXTRACTED_FIELDS, name);
+            for (int i = 0; i < row; i++) {
+                column.addNull(rowsWithExtractedFields.get(i) ? 1 : 0);
+            }
+            extractedFields.put(name, column);
+        }
+        return column;
+    }
+
+    /**
+     * Returns the number of bytes encoded since the last clear.
+     */
+    long getSize() {
+        long size = 0;
+        for (ParquetColumn column : columns) {
+            size += column.getSize();
+        }
+        for (ParquetColumn column : extractedFields.values()) {
+            size += column.getSize();
+        }
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (ParquetColumn column : columns) {
+            column.clear();
+        }
+
+        // each file has the extracted fields of its own events
+        extractedFields.clear();
+        rowsWithExtractedFields.clear();
+        file.reset();
+
+        numberOfRecords = 0;
+        previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getFirstSequenceNumber() {
+        return firstSequenceNumber;
+    }
+
+    @Override
+    public String getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+
+    @Override
+    public boolean shouldFlush() {
+        long timelapseMillisecond = System.currentTimeMillis() - previousFlushTimeMillisecond;
+        return numberOfRecords > 0
+                && (numberOfRecords >= getNumRecordsToBuffer() || getSize() >= getBytesToBuffer()
+                        || timelapseMillisecond >= getMillisecondsToBuffer());
+    }
+
+    /**
+     * The log events are only kept encoded; see {@link #getSerializedRecords()}.
+     */
+    @Override
+    public List<CloudWatchLogsEvent> getRecords() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the Parquet file of the events consumed since the last clear.
+     */
+    @Override
+    public ByteBuffer getSerializedRecords() {
+        List<ParquetColumn> fileColumns = new ArrayList<>(columns);
+        fileColumns.addAll(extractedFields.values());
+
+        file.reset();
+        file.write(MAGIC, 0, MAGIC.length);
+
+        try {
+            for (ParquetColumn column : fileColumns) {
+                column.writeChunk(file, compression);
+            }
+        } catch (IOException e) {
+            // the pages are written in memory
+            throw new IllegalStateException("Could not write the Parquet file", e);
+        }
+
+        int footerOffset = file.size();
+        writeFileMetaData(new ThriftCompactOutput(file), fileColumns);
+
+        int footerLength = file.size() - footerOffset;
+        file.write(footerLength);
+        file.write(footerLength >>> 8);
+        file.write(footerLength >>> 16);
+        file.write(footerLength >>> 24);
+        file.write(MAGIC, 0, MAGIC.length);
+
+        return file.toByteBuffer().asReadOnlyBuffer();
+    }
+
+    private void writeFileMetaData(ThriftCompactOutput thrift, List<ParquetColumn> fileColumns) {
+        boolean hasExtractedFields = !extractedFields.isEmpty();
+
+        thrift.structBegin();
+        thrift.fieldI32(1, 1);
+
+        // the schema is flattened depth first, with the number of children of each group
+        thrift.fieldListBegin(2, ThriftCompactOutput.STRUCT, fileColumns.size() + (hasExtractedFields ? 2 : 1));
+        thrift.structBegin();
+        thrift.fieldString(4, "schema");
+        thrift.fieldI32(5, columns.size() + (hasExtractedFields ? 1 : 0));
+        thrift.structEnd();
+        for (ParquetColumn column : columns) {
+            column.writeSchemaElement(thrift);
+        }
+        if (hasExtractedFields) {
+            thrift.structBegin();
+            thrift.fieldI32(3, ParquetColumn.OPTIONAL);
+            thrift.fieldString(4, EXTRACTED_FIELDS);
+            thrift.fieldI32(5, extractedFields.size());
+            thrift.structEnd();
+            for (ParquetColumn column : extractedFields.values()) {
+                column.writeSchemaElement(thrift);
+            }
+        }
+
+        thrift.fieldI64(3, numberOfRecords);
+
+        // a single row group
+        long totalByteSize = 0;
+        for (ParquetColumn column : fileColumns) {
+            totalByteSize += column.getUncompressedSize();
+        }
+        thrift.fieldListBegin(4, ThriftCompactOutput.STRUCT, 1);
+        thrift.structBegin();
+        thrift.fieldListBegin(1, ThriftCompactOutput.STRUCT, fileColumns.size());
+        for (ParquetColumn column : fileColumns) {
+            column.writeColumnChunk(thrift, compression);
+        }
+        thrift.fieldI64(2, totalByteSize);
+        thrift.fieldI64(3, numberOfRecords);
+        thrift.structEnd();
+
+        thrift.fieldString(6, CREATED_BY);
+        thrift.structEnd();
+    }
+
+    @Override
+    public int getNumberOfRecords() {
+        return numberOfRecords;
+    }
+}
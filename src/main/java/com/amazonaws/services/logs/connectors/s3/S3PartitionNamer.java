@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Names the S3 key prefixes that log events are partitioned into, by log group
+ * and hour, such as logGroup=%2Faws%2Flambda%2Fname/dt=2015-01-13/hour=02/.
+ *
+ * The names follow the layout of Hive partitions, so that query engines can
+ * skip the partitions a query does not need. Characters that Hive escapes in
+ * partition values, such as the slashes of log group names, are escaped the
+ * same way. The name of the current hour of each log group is cached.
+ */
+public class S3PartitionNamer {
+
+    // the value Hive gives to partitions without a value
+    private static final String DEFAULT_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormat.forPattern("'dt='yyyy-MM-dd'/hour='HH'/'")
+            .withZone(DateTimeZone.UTC);
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    // bounds the number of cached hours when events come from many log groups
+    private static final int MAX_CACHED_LOG_GROUPS = 1024;
+
+    private final Map<String, Period> periods = new HashMap<>();
+
+    /**
+     * Returns the partition of a log event.
+     */
+    public String getPartition(String logGroup, long timestamp) {
+        String key = logGroup != null ? logGroup : "";
+
+        Period period = periods.get(key);
+        if (period != null && period.contains(timestamp)) {
+            return period.name;
+        }
+
+        String prefix = period != null ? period.prefix : "logGroup=" + escape(logGroup) + "/";
+        long start = timestamp - ((timestamp % HOUR) + HOUR) % HOUR;
+        period = new Period(start, prefix, prefix + HOUR_FORMATTER.print(start));
+
+        if (periods.size() < MAX_CACHED_LOG_GROUPS || periods.containsKey(key)) {
+            periods.put(key, period);
+        }
+
+        return period.name;
+    }
+
+    /**
+     * Escapes a partition value like Hive, which percent-encodes the characters
+     * that would change the meaning of a path.
+     */
+    static String escape(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_PARTITION;
+        }
+
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || c == '\u007F' || "\"#%'*/:=?\\{[]^".indexOf(c) >= 0) {
+                escaped.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4 & 0xF, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * The hour covered by one partition and its name.
+     */
+    private static final class Period {
+
+        private final long start;
+        private final String prefix;
+        private final String name;
+
+        Period(long start, String prefix, String name) {
+            this.start = start;
+            this.prefix = prefix;
+            this.name = name;
+        }
+
+        boolean contains(long timestamp) {
+            return timestamp >= start && timestamp < start + HOUR;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.IPartitionedBuffer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * A buffer that keeps log events in a separate buffer for each partition named
+ * by {@link S3PartitionNamer}, so that each flush writes one object per log
+ * group and hour.
+ *
+ * Besides the limits of the whole buffer, it is flushed when a partition holds
+ * more than its byte size limit, or when too many partitions are open. All of
+ * the partitions are flushed together, as a shard can only be checkpointed
+ * once every earlier log event has been emitted.
+ */
+public class S3PartitionedBuffer implements IPartitionedBuffer<CloudWatchLogsEvent> {
+
+    private final S3PartitionNamer namer = new S3PartitionNamer();
+
+    private final long bytesPerFlush;
+    private final long numMessagesToBuffer;
+    private final long millisecondsToBuffer;
+    private final long bytesPerPartition;
+    private final int maxOpenPartitions;
+
+    private final Map<String, Partition> partitions = new LinkedHashMap<>();
+
+    private long byteCount;
+    private int numberOfRecords;
+    private boolean partitionFull;
+    private String firstSequenceNumber;
+    private String lastSequenceNumber;
+    private long previousFlushTimeMillisecond;
+
+    public S3PartitionedBuffer(CloudWatchLogsConnectorConfiguration configuration) {
+        this.bytesPerFlush = configuration.BUFFER_BYTE_SIZE_LIMIT;
+        this.numMessagesToBuffer = configuration.BUFFER_RECORD_COUNT_LIMIT;
+        this.millisecondsToBuffer = configuration.BUFFER_MILLISECONDS_LIMIT;
+        this.bytesPerPartition = configuration.S3_PARTITION_BYTE_SIZE_LIMIT;
+        this.maxOpenPartitions = Math.max(configuration.S3_MAX_OPEN_PARTITIONS, 1);
+        this.previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getBytesToBuffer() {
+        return bytesPerFlush;
+    }
+
+    @Override
+    public long getNumRecordsToBuffer() {
+        return numMessagesToBuffer;
+    }
+
+    public long getMillisecondsToBuffer() {
+        return millisecondsToBuffer;
+    }
+
+    @Override
+    public void consumeRecord(CloudWatchLogsEvent record, int recordBytes, String sequenceNumber) {
+        String name = namer.getPartition(record.getLogGroup(), record.getTimestamp());
+
+        Partition partition = partitions.get(name);
+        if (partition == null) {
+            partition = new Partition();
+            partitions.put(name, partition);
+        }
+
+        partition.records.add(record);
+        partition.byteCount += recordBytes;
+        if (partition.byteCount >= bytesPerPartition) {
+            partitionFull = true;
+        }
+
+        if (numberOfRecords == 0) {
+            firstSequenceNumber = sequenceNumber;
+        }
+        lastSequenceNumber = sequenceNumber;
+        byteCount += recordBytes;
+        numberOfRecords++;
+    }
+
+    @Override
+    public void clear() {
+        partitions.clear();
+        byteCount = 0;
+        numberOfRecords = 0;
+        partitionFull = false;
+        previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getFirstSequenceNumber() {
+        return firstSequenceNumber;
+    }
+
+    @Override
+    public String getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+
+    @Override
+    public boolean shouldFlush() {
+        long timelapseMillisecond = System.currentTimeMillis() - previousFlushTimeMillisecond;
+        return numberOfRecords > 0
+                && (numberOfRecords >= getNumRecordsToBuffer() || byteCount >= getBytesToBuffer()
+                        || timelapseMillisecond >= getMillisecondsToBuffer() || partitionFull
+                        || partitions.size() >= maxOpenPartitions);
+    }
+
+    /**
+     * Returns the log events of every partition, one partition after another.
+     */
+    @Override
+    public List<CloudWatchLogsEvent> getRecords() {
+        List<CloudWatchLogsEvent> records = new ArrayList<>(numberOfRecords);
+        for (Partition partition : partitions.values()) {
+            records.addAll(partition.records);
+        }
+        return records;
+    }
+
+    @Override
+    public Map<String, List<CloudWatchLogsEvent>> getPartitions() {
+        Map<String, List<CloudWatchLogsEvent>> result = new LinkedHashMap<>(partitions.size() * 2);
+        for (Map.Entry<String, Partition> partition : partitions.entrySet()) {
+            result.put(partition.getKey(), Collections.unmodifiableList(partition.getValue().records));
+        }
+        return result;
+    }
+
+    private static final class Partition {
+
+        private final List<CloudWatchLogsEvent> records = new ArrayList<>();
+        private long byteCount;
+    }
+}
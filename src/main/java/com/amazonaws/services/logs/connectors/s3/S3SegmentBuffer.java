@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.ISerializedBuffer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A buffer that serializes log events as they are consumed, and appends them to
+ * a memory-mapped segment file instead of keeping them on the heap, one per line.
+ * Events are written to the segment without an intermediate array. Long flush
+ * windows then take almost no heap, and the buffered data is left alone by the
+ * garbage collector.
+ *
+ * The byte size limit applies to the serialized events. The mapping starts a
+ * little larger than that limit and grows if a single flush needs more. Pages
+ * are only written back to disk if the operating system runs short of memory,
+ * as the buffered events can be read again from the stream after a failure.
+ */
+public class S3SegmentBuffer implements ISerializedBuffer<CloudWatchLogsEvent>, Closeable {
+
+    private static final Log LOG = LogFactory.getLog(S3SegmentBuffer.class);
+
+    private static final String FILE_NAME_PREFIX = "cwl-s3-buffer-";
+    private static final String FILE_NAME_SUFFIX = ".segment";
+
+    private static final long MIN_CAPACITY = 64 * 1024;
+    private static final long CAPACITY_SLACK = 1024 * 1024;
+
+    private final S3Transformer transformer;
+
+    private final long bytesPerFlush;
+    private final long numMessagesToBuffer;
+    private final long millisecondsToBuffer;
+
+    private final File file;
+    private final FileChannel channel;
+    private MappedByteBuffer segment;
+
+    // writes the events straight into the segment
+    private final OutputStream segmentOutput = new SegmentOutputStream();
+    private JsonGenerator generator;
+
+    private int numberOfRecords;
+    private String firstSequenceNumber;
+    private String lastSequenceNumber;
+    private long previousFlushTimeMillisecond;
+
+    /**
+     * @param transformer Serializes the log events as they are consumed.
+     */
+    public S3SegmentBuffer(CloudWatchLogsConnectorConfiguration configuration,
+            S3Transformer transformer) throws IOException {
+        this(configuration, transformer, new File(configuration.S3_BUFFER_DIRECTORY));
+    }
+
+    S3SegmentBuffer(CloudWatchLogsConnectorConfiguration configuration,
+            S3Transformer transformer, File directory) throws IOException {
+        this.transformer = transformer;
+        this.bytesPerFlush = configuration.BUFFER_BYTE_SIZE_LIMIT;
+        this.numMessagesToBuffer = configuration.BUFFER_RECORD_COUNT_LIMIT;
+        this.millisecondsToBuffer = configuration.BUFFER_MILLISECONDS_LIMIT;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            String message = "Could not create the buffer directory " + directory;
+            LOG.error(message);
+            throw new IOException(message);
+        }
+
+        this.file = File.createTempFile(FILE_NAME_PREFIX, FILE_NAME_SUFFIX, directory);
+        this.file.deleteOnExit();
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+
+        long capacity = Math.min(Math.max(bytesPerFlush + CAPACITY_SLACK, MIN_CAPACITY), Integer.MAX_VALUE);
+        this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        this.generator = transformer.createGenerator(segmentOutput);
+        this.previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public long getBytesToBuffer() {
+        return bytesPerFlush;
+    }
+
+    @Override
+    public long getNumRecordsToBuffer() {
+        return numMessagesToBuffer;
+    }
+
+    public long getMillisecondsToBuffer() {
+        return millisecondsToBuffer;
+    }
+
+    /**
+     * Serializes the log event into the segment. The size of the record is not
+     * used, as the size of the serialized event is known.
+     */
+    @Override
+    public void consumeRecord(CloudWatchLogsEvent record, int recordBytes, String sequenceNumber) {
+        int position = segment.position();
+        try {
+            transformer.write(record, generator);
+        } catch (IOException e) {
+            LOG.error("Failed to buffer record " + record.getId(), e);
+
+            // drop the part of the event that was written, and the state of the generator
+            segment.position(position);
+            try {
+                generator = transformer.createGenerator(segmentOutput);
+            } catch (IOException createException) {
+                throw new IllegalStateException(createException);
+            }
+            return;
+        }
+
+        if (numberOfRecords == 0) {
+            firstSequenceNumber = sequenceNumber;
+        }
+        lastSequenceNumber = sequenceNumber;
+        numberOfRecords++;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (segment.remaining() >= length) {
+            return;
+        }
+
+        long capacity = Math.max((long) segment.capacity() * 2, (long) segment.position() + length);
+        if ((long) segment.position() + length > Integer.MAX_VALUE) {
+            String message = "The buffer segment cannot grow beyond " + Integer.MAX_VALUE + " bytes";
+            LOG.error(message);
+            throw new IOException(message);
+        }
+
+        // the file keeps the bytes written so far, so a larger mapping starts with them
+        int position = segment.position();
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(capacity, Integer.MAX_VALUE));
+        segment.position(position);
+    }
+
+    @Override
+    public void clear() {
+        segment.clear();
+        numberOfRecords = 0;
+        previousFlushTimeMillisecond = System.currentTimeMillis();
+    }
+
+    @Override
+    public String getFirstSequenceNumber() {
+        return firstSequenceNumber;
+    }
+
+    @Override
+    public String getLastSequenceNumber() {
+        return lastSequenceNumber;
+    }
+
+    @Override
+    public boolean shouldFlush() {
+        long timelapseMillisecond = System.currentTimeMillis() - previousFlushTimeMillisecond;
+        return numberOfRecords > 0
+                && (numberOfRecords >= getNumRecordsToBuffer() || segment.position() >= getBytesToBuffer()
+                        || timelapseMillisecond >= getMillisecondsToBuffer());
+    }
+
+    /**
+     * The log events are only kept serialized; see {@link #getSerializedRecords()}.
+     */
+    @Override
+    public List<CloudWatchLogsEvent> getRecords() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public ByteBuffer getSerializedRecords() {
+        ByteBuffer records = segment.duplicate();
+        records.flip();
+        return records.asReadOnlyBuffer();
+    }
+
+    @Override
+    public int getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    /**
+     * Appends to the segment, which grows as needed.
+     */
+    private final class SegmentOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            segment.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ensureCapacity(length);
+            segment.put(bytes, offset, length);
+        }
+    }
+
+    /**
+     * Releases the segment file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (!file.delete()) {
+            LOG.warn("Could not delete the buffer segment " + file);
+        }
+    }
+}
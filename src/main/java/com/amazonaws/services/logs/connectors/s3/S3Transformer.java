@@ -14,38 +14,135 @@
  */
 package com.amazonaws.services.logs.connectors.s3;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-
+import com.amazonaws.services.kinesis.model.Record;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEventBatch;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
- * Transforms CloudWatchLogsEvent objects to JSON.
+ * Transforms CloudWatchLogsEvent objects to lines of UTF-8 encoded JSON.
+ *
+ * Events are written field by field with a generator that is kept for the
+ * next event, rather than through an intermediate String. Null attributes and
+ * extracted fields without a value are left out.
  */
 public class S3Transformer extends CloudWatchLogsSubscriptionTransformer<byte[]> {
 
-    private static final Log LOG = LogFactory.getLog(S3Transformer.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final char RECORD_DELIMITER = '\n';
+
+    // buffers that grew past this size are not kept for the next event
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
 
-    private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
+    // events may be transformed on the threads of the transform pool, which each keep their own output
+    private final ThreadLocal<Output> outputs = new ThreadLocal<Output>() {
 
-    static {
-        JSON_OBJECT_MAPPER.setSerializationInclusion(Include.NON_NULL);
+        @Override
+        protected Output initialValue() {
+            try {
+                return new Output();
+            } catch (IOException e) {
+                // the generator writes to memory
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * Events wait in the buffer until the next S3 upload, so they are kept in the
+     * compact form of a {@link CloudWatchLogsEventBatch} rather than as one set of
+     * objects per event.
+     */
+    @Override
+    public Collection<CloudWatchLogsEvent> toClass(Record record) throws IOException {
+        return toBatch(record).asList();
     }
 
     @Override
     public byte[] fromClass(CloudWatchLogsEvent record) throws IOException {
+        Output output = outputs.get();
+        output.buffer.reset();
+
         try {
-            return JSON_OBJECT_MAPPER.writeValueAsString(record).getBytes();
-        } catch (JsonProcessingException e) {
-            String message = "Error serializing the record to JSON: " + e.getMessage();
-            LOG.error(message);
-            throw new IOException(message, e);
+            write(record, output.generator);
+        } catch (IOException e) {
+            // the generator may be left in the middle of the event
+            outputs.remove();
+            throw e;
+        }
+
+        byte[] result = output.buffer.toByteArray();
+        if (output.buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+            outputs.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Creates a generator for {@link #write(CloudWatchLogsEvent, JsonGenerator)}
+     * that writes UTF-8 to the stream. It can be kept for any number of events.
+     */
+    public JsonGenerator createGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+
+        // each event ends with its own delimiter
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    /**
+     * Writes the event as a line of JSON, and flushes the generator. After a
+     * failure, the generator must not be used again.
+     */
+    public void write(CloudWatchLogsEvent record, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        writeStringField(generator, "id", record.getId());
+        generator.writeNumberField("timestamp", record.getTimestamp());
+        writeStringField(generator, "message", record.getMessage());
+
+        int extractedFieldCount = record.getExtractedFieldCount();
+        if (extractedFieldCount >= 0) {
+            generator.writeObjectFieldStart("extractedFields");
+            for (int i = 0; i < extractedFieldCount; i++) {
+                writeStringField(generator, record.getExtractedFieldName(i), record.getExtractedFieldValue(i));
+            }
+            generator.writeEndObject();
+        }
+
+        writeStringField(generator, "owner", record.getOwner());
+        writeStringField(generator, "logGroup", record.getLogGroup());
+        writeStringField(generator, "logStream", record.getLogStream());
+        generator.writeEndObject();
+
+        generator.writeRaw(RECORD_DELIMITER);
+        generator.flush();
+    }
+
+    private static void writeStringField(JsonGenerator generator, String name, String value) throws IOException {
+        if (value != null) {
+            generator.writeStringField(name, value);
+        }
+    }
+
+    /**
+     * A buffer and the generator writing to it.
+     */
+    private final class Output {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private final JsonGenerator generator;
+
+        Output() throws IOException {
+            this.generator = createGenerator(buffer);
         }
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes structures with the Thrift compact protocol, which Parquet uses for
+ * its page headers and file footer. Only the types those need are supported.
+ */
+final class ThriftCompactOutput {
+
+    static final byte I32 = 5;
+    static final byte I64 = 6;
+    static final byte BINARY = 8;
+    static final byte LIST = 9;
+    static final byte STRUCT = 12;
+
+    private static final int MAX_DEPTH = 8;
+
+    private final ByteArrayOutputStream out;
+
+    // the id of the last field written in each open structure, as field ids are written as deltas
+    private final short[] lastFieldIds = new short[MAX_DEPTH];
+    private int depth = -1;
+
+    ThriftCompactOutput(ByteArrayOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a structure, either at the top level or as an element of a list.
+     */
+    void structBegin() {
+        lastFieldIds[++depth] = 0;
+    }
+
+    void structEnd() {
+        out.write(0);
+        depth--;
+    }
+
+    void fieldStructBegin(int id) {
+        fieldHeader(id, STRUCT);
+        structBegin();
+    }
+
+    void fieldI32(int id, int value) {
+        fieldHeader(id, I32);
+        writeI32(value);
+    }
+
+    void fieldI64(int id, long value) {
+        fieldHeader(id, I64);
+        writeI64(value);
+    }
+
+    void fieldString(int id, String value) {
+        fieldHeader(id, BINARY);
+        writeString(value);
+    }
+
+    void fieldBinary(int id, byte[] value) {
+        fieldHeader(id, BINARY);
+        writeVarint(value.length);
+        out.write(value, 0, value.length);
+    }
+
+    /**
+     * Starts a list field, whose elements are then written one after another.
+     */
+    void fieldListBegin(int id, byte elementType, int size) {
+        fieldHeader(id, LIST);
+        if (size < 15) {
+            out.write(size << 4 | elementType);
+        } else {
+            out.write(0xF0 | elementType);
+            writeVarint(size);
+        }
+    }
+
+    void writeI32(int value) {
+        writeVarint(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    void writeI64(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private void fieldHeader(int id, byte type) {
+        int delta = id - lastFieldIds[depth];
+        if (delta > 0 && delta <= 15) {
+            out.write(delta << 4 | type);
+        } else {
+            out.write(type);
+            writeI32(id);
+        }
+        lastFieldIds[depth] = (short) id;
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
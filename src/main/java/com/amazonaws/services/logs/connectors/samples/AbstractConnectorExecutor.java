@@ -14,17 +14,26 @@
  */
 package com.amazonaws.services.logs.connectors.samples;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
 import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorExecutorBase;
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
 import com.amazonaws.services.kinesis.metrics.impl.NullMetricsFactory;
+import com.amazonaws.services.kinesis.metrics.interfaces.IMetricsFactory;
+import com.amazonaws.services.kinesis.metrics.interfaces.MetricsLevel;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.metrics.JmxMetricsReporter;
+import com.amazonaws.services.logs.connectors.metrics.LocalMetricsFactory;
+import com.amazonaws.services.logs.connectors.metrics.MetricsRegistry;
+import com.amazonaws.services.logs.connectors.metrics.PrometheusMetricsServer;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 
 /**
@@ -35,7 +44,8 @@ public abstract class AbstractConnectorExecutor<T> extends KinesisConnectorExecu
 
     private static final Log LOG = LogFactory.getLog(AbstractConnectorExecutor.class);
 
-    private final KinesisConnectorConfiguration config;
+    private final CloudWatchLogsConnectorConfiguration config;
+    private KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, T> recordProcessorFactory;
 
     /**
      * Creates a new CloudWatchLogsSubscriptionsExecutor.
@@ -63,17 +73,92 @@ public abstract class AbstractConnectorExecutor<T> extends KinesisConnectorExecu
 
             configFileInputStream.close();
 
-            this.config = new KinesisConnectorConfiguration(mergedProperties, new DefaultAWSCredentialsProviderChain());
+            this.config = new CloudWatchLogsConnectorConfiguration(mergedProperties,
+                    new DefaultAWSCredentialsProviderChain());
         } catch (IOException e) {
             String msg = "Could not load properties file " + configFile + " from classpath";
             LOG.error(msg, e);
             throw new IllegalStateException(msg, e);
         }
 
-        super.initialize(config, new NullMetricsFactory());
+        super.initialize(config, createMetricsFactory(config));
+        startMetricsReporters(config);
     }
 
-    protected KinesisConnectorConfiguration getConfig() {
+    /**
+     * Returns where the metrics of the Kinesis Client Library go: nowhere
+     * (none), to the registry of the connector metrics (local), or to an
+     * IMetricsFactory class with a public no-argument constructor.
+     */
+    private static IMetricsFactory createMetricsFactory(CloudWatchLogsConnectorConfiguration config) {
+        switch (config.METRICS_FACTORY) {
+            case "none":
+                return new NullMetricsFactory();
+            case "local":
+                MetricsLevel level;
+                try {
+                    level = MetricsLevel.valueOf(config.METRICS_LEVEL.toUpperCase(Locale.ENGLISH));
+                } catch (IllegalArgumentException e) {
+                    LOG.error("Invalid value for metricsLevel: " + config.METRICS_LEVEL + ". Using DETAILED");
+                    level = MetricsLevel.DETAILED;
+                }
+                return new LocalMetricsFactory(MetricsRegistry.getDefault(), level);
+            default:
+                try {
+                    return Class.forName(config.METRICS_FACTORY).asSubclass(IMetricsFactory.class)
+                            .getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    String msg = "Could not create the metrics factory " + config.METRICS_FACTORY;
+                    LOG.error(msg, e);
+                    throw new IllegalStateException(msg, e);
+                }
+        }
+    }
+
+    private static void startMetricsReporters(CloudWatchLogsConnectorConfiguration config) {
+        if (config.METRICS_JMX) {
+            JmxMetricsReporter.register(MetricsRegistry.getDefault());
+        }
+        if (config.METRICS_PROMETHEUS_PORT > 0) {
+            try {
+                PrometheusMetricsServer.start(MetricsRegistry.getDefault(), config.METRICS_PROMETHEUS_PORT);
+            } catch (IOException e) {
+                // the connector still runs, and the metrics can be read through JMX
+                LOG.error("Could not serve metrics on port " + config.METRICS_PROMETHEUS_PORT, e);
+            }
+        }
+    }
+
+    @Override
+    public final KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, T>
+            getKinesisConnectorRecordProcessorFactory() {
+        recordProcessorFactory = createRecordProcessorFactory();
+        return recordProcessorFactory;
+    }
+
+    /**
+     * Creates the factory of the record processors of the worker. Factories that
+     * are {@link Closeable} are closed once the worker has shut down.
+     */
+    protected abstract KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, T> createRecordProcessorFactory();
+
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            // the worker has shut down every record processor, so the resources they share can go
+            if (recordProcessorFactory instanceof Closeable) {
+                try {
+                    ((Closeable) recordProcessorFactory).close();
+                } catch (IOException e) {
+                    LOG.warn("Could not close the record processor factory", e);
+                }
+            }
+        }
+    }
+
+    protected CloudWatchLogsConnectorConfiguration getConfig() {
         return config;
     }
 }
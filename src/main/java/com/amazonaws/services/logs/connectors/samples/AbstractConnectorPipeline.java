@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.samples;
+
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
+import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.filter.PredicateFilter;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
+
+/**
+ * Sets up the filter rules of the configuration for the pipelines of the
+ * sample applications.
+ *
+ * The rules on owners, log groups and log streams are given to the transformer,
+ * which skips the records they filter out before decoding their log events. The
+ * other rules are compiled once into a filter shared by all the shards of the
+ * worker, as the deduplication filter must see the events of every shard.
+ */
+public abstract class AbstractConnectorPipeline<T> implements IKinesisConnectorPipeline<CloudWatchLogsEvent, T> {
+
+    private IFilter<CloudWatchLogsEvent> filter;
+
+    /**
+     * Creates the transformer of the pipeline, before the header rules are set
+     * on it.
+     */
+    protected abstract CloudWatchLogsSubscriptionTransformer<T> createTransformer(
+            CloudWatchLogsConnectorConfiguration configuration);
+
+    @Override
+    public ITransformerBase<CloudWatchLogsEvent, T> getTransformer(KinesisConnectorConfiguration configuration) {
+        CloudWatchLogsConnectorConfiguration config = (CloudWatchLogsConnectorConfiguration) configuration;
+
+        CloudWatchLogsSubscriptionTransformer<T> transformer = createTransformer(config);
+        transformer.setHeaderPredicate(PredicateFilter.compileHeader(config));
+        return transformer;
+    }
+
+    @Override
+    public synchronized IFilter<CloudWatchLogsEvent> getFilter(KinesisConnectorConfiguration configuration) {
+        if (filter == null) {
+            filter = PredicateFilter.create((CloudWatchLogsConnectorConfiguration) configuration);
+        }
+        return filter;
+    }
+}
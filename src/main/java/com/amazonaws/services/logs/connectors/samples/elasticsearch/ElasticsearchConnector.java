@@ -16,6 +16,7 @@ package com.amazonaws.services.logs.connectors.samples.elasticsearch;
 
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
 import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsRecordProcessorFactory;
 import com.amazonaws.services.logs.connectors.samples.AbstractConnectorExecutor;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 
@@ -28,9 +29,8 @@ public class ElasticsearchConnector extends AbstractConnectorExecutor<Elasticsea
     }
 
     @Override
-    public KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, ElasticsearchObject> getKinesisConnectorRecordProcessorFactory() {
-        return new KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, ElasticsearchObject>(
-                new ElasticsearchPipeline(), getConfig());
+    protected KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, ElasticsearchObject> createRecordProcessorFactory() {
+        return new CloudWatchLogsRecordProcessorFactory<ElasticsearchObject>(new ElasticsearchPipeline(), getConfig());
     }
 
     public static void main(String[] args) {
@@ -14,48 +14,65 @@
  */
 package com.amazonaws.services.logs.connectors.samples.elasticsearch;
 
+import java.util.concurrent.Semaphore;
+
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
-import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchEmitter;
 import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
-import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
 import com.amazonaws.services.kinesis.connectors.impl.BasicMemoryBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
-import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
+import com.amazonaws.services.logs.connectors.AdaptiveMemoryBuffer;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.elasticsearch.CloudWatchLogsElasticsearchEmitter;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchIndexNamer;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchRetryPolicy;
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchSpillFile;
 import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchTransformer;
+import com.amazonaws.services.logs.connectors.samples.AbstractConnectorPipeline;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
 
 /**
  * This sets up the processing pipeline for the KCL application.
  */
-public class ElasticsearchPipeline implements IKinesisConnectorPipeline<CloudWatchLogsEvent, ElasticsearchObject> {
+public class ElasticsearchPipeline extends AbstractConnectorPipeline<ElasticsearchObject> {
+
+    // the bulk requests in flight, the retry budget and the spill file are shared by all the shards of the worker
+    private Semaphore inFlightRequests;
+    private ElasticsearchRetryPolicy retryPolicy;
+    private ElasticsearchSpillFile spillFile;
 
     @Override
-    public IEmitter<ElasticsearchObject> getEmitter(KinesisConnectorConfiguration configuration) {
+    public synchronized IEmitter<ElasticsearchObject> getEmitter(KinesisConnectorConfiguration configuration) {
 
-        return new ElasticsearchEmitter(configuration);
+        CloudWatchLogsConnectorConfiguration config = (CloudWatchLogsConnectorConfiguration) configuration;
+        if (inFlightRequests == null) {
+            inFlightRequests = new Semaphore(Math.max(config.ELASTICSEARCH_MAX_IN_FLIGHT_REQUESTS, 1));
+            retryPolicy = new ElasticsearchRetryPolicy(config);
+            spillFile = new ElasticsearchSpillFile(config);
+        }
+
+        // sends the UTF-8 source of the documents without waiting for earlier bulk requests
+        return new CloudWatchLogsElasticsearchEmitter(config, inFlightRequests, retryPolicy, spillFile);
     }
 
     @Override
     public IBuffer<CloudWatchLogsEvent> getBuffer(KinesisConnectorConfiguration configuration) {
 
-        // a very basic in-heap buffer
+        // an in-heap buffer, whose limits optionally follow the latency of the emitter
+        if (((CloudWatchLogsConnectorConfiguration) configuration).ADAPTIVE_BUFFER) {
+            return new AdaptiveMemoryBuffer<CloudWatchLogsEvent>((CloudWatchLogsConnectorConfiguration) configuration);
+        }
         return new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration);
     }
 
     @Override
-    public ITransformerBase<CloudWatchLogsEvent, ElasticsearchObject> getTransformer(
-            KinesisConnectorConfiguration configuration) {
-
-        return new ElasticsearchTransformer();
-    }
-
-    @Override
-    public IFilter<CloudWatchLogsEvent> getFilter(KinesisConnectorConfiguration configuration) {
+    protected CloudWatchLogsSubscriptionTransformer<ElasticsearchObject> createTransformer(
+            CloudWatchLogsConnectorConfiguration configuration) {
 
-        // no filtering
-        return new AllPassFilter<CloudWatchLogsEvent>();
+        // names the indexes after the configured prefix and rollover period
+        ElasticsearchIndexNamer indexNamer = new ElasticsearchIndexNamer(configuration.ELASTICSEARCH_INDEX_PREFIX,
+                ElasticsearchIndexNamer.Rollover.fromString(configuration.ELASTICSEARCH_INDEX_ROLLOVER));
+        return new ElasticsearchTransformer(indexNamer);
     }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.samples.fanout;
+
+import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.FanOutRecordProcessorFactory;
+import com.amazonaws.services.logs.connectors.samples.AbstractConnectorExecutor;
+import com.amazonaws.services.logs.connectors.samples.elasticsearch.ElasticsearchPipeline;
+import com.amazonaws.services.logs.connectors.samples.s3.S3Pipeline;
+import com.amazonaws.services.logs.connectors.samples.stdout.StdoutPipeline;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+/**
+ * Delivers the log events of the stream to each of the sinks listed in
+ * fanOutSinks, reading and decoding the records once. The properties of a sink
+ * can be overridden by prefixing them with its name, such as
+ * s3.bufferMillisecondsLimit.
+ */
+public class FanOutConnector extends AbstractConnectorExecutor<Object> {
+
+    private static String CONFIG_FILE = FanOutConnector.class.getSimpleName() + ".properties";
+
+    public FanOutConnector(String configFile) {
+        super(configFile);
+    }
+
+    @Override
+    protected KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, Object> createRecordProcessorFactory() {
+        CloudWatchLogsConnectorConfiguration config = getConfig();
+        FanOutRecordProcessorFactory factory = new FanOutRecordProcessorFactory(config);
+
+        for (String name : config.FAN_OUT_SINKS.split(",")) {
+            String sink = name.trim();
+            CloudWatchLogsConnectorConfiguration sinkConfig = config.withOverrides(sink + ".");
+            switch (sink) {
+                case "elasticsearch":
+                    factory.addSink(new ElasticsearchPipeline(), sinkConfig);
+                    break;
+                case "s3":
+                    factory.addSink(new S3Pipeline(), sinkConfig);
+                    break;
+                case "stdout":
+                    factory.addSink(new StdoutPipeline(), sinkConfig);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown sink in "
+                            + CloudWatchLogsConnectorConfiguration.PROP_FAN_OUT_SINKS + ": " + sink
+                            + ". Sinks are elasticsearch, s3 and stdout");
+            }
+        }
+
+        return factory;
+    }
+
+    public static void main(String[] args) {
+        FanOutConnector executor = new FanOutConnector(CONFIG_FILE);
+        executor.run();
+    }
+}
@@ -15,6 +15,7 @@
 package com.amazonaws.services.logs.connectors.samples.s3;
 
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsRecordProcessorFactory;
 import com.amazonaws.services.logs.connectors.samples.AbstractConnectorExecutor;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 
@@ -27,8 +28,8 @@ public class S3Connector extends AbstractConnectorExecutor<byte[]> {
     }
 
     @Override
-    public KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, byte[]> getKinesisConnectorRecordProcessorFactory() {
-        return new KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, byte[]>(new S3Pipeline(), getConfig());
+    protected KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, byte[]> createRecordProcessorFactory() {
+        return new CloudWatchLogsRecordProcessorFactory<byte[]>(new S3Pipeline(), getConfig());
     }
 
     public static void main(String[] args) {
@@ -14,46 +14,77 @@
  */
 package com.amazonaws.services.logs.connectors.samples.s3;
 
+import java.io.IOException;
+
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
-import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
 import com.amazonaws.services.kinesis.connectors.impl.BasicMemoryBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
-import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
-import com.amazonaws.services.kinesis.connectors.s3.S3Emitter;
+import com.amazonaws.services.logs.connectors.AdaptiveMemoryBuffer;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.s3.CloudWatchLogsS3Emitter;
+import com.amazonaws.services.logs.connectors.s3.S3OutputFormat;
+import com.amazonaws.services.logs.connectors.s3.S3ParquetBuffer;
+import com.amazonaws.services.logs.connectors.s3.S3PartitionedBuffer;
+import com.amazonaws.services.logs.connectors.s3.S3SegmentBuffer;
 import com.amazonaws.services.logs.connectors.s3.S3Transformer;
+import com.amazonaws.services.logs.connectors.samples.AbstractConnectorPipeline;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
 
 /**
  * This sets up the processing pipeline for the KCL application.
  */
-public class S3Pipeline implements IKinesisConnectorPipeline<CloudWatchLogsEvent, byte[]> {
+public class S3Pipeline extends AbstractConnectorPipeline<byte[]> {
 
     @Override
     public IEmitter<byte[]> getEmitter(KinesisConnectorConfiguration configuration) {
 
-        return new S3Emitter(configuration);
+        // also uploads the serialized log events of an off-heap buffer
+        return new CloudWatchLogsS3Emitter(configuration);
     }
 
     @Override
     public IBuffer<CloudWatchLogsEvent> getBuffer(KinesisConnectorConfiguration configuration) {
 
-        // a very basic in-heap buffer
-        return new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration);
-    }
+        CloudWatchLogsConnectorConfiguration config = (CloudWatchLogsConnectorConfiguration) configuration;
 
-    @Override
-    public ITransformerBase<CloudWatchLogsEvent, byte[]> getTransformer(KinesisConnectorConfiguration configuration) {
+        S3OutputFormat format = S3OutputFormat.fromString(config.S3_OUTPUT_FORMAT);
 
-        return new S3Transformer();
+        // one buffer per log group and hour, written under their own prefixes
+        if (config.S3_PARTITIONED) {
+            if (format != S3OutputFormat.JSON) {
+                throw new IllegalArgumentException("Partitioned S3 output is only available in the JSON format");
+            }
+            return new S3PartitionedBuffer(config);
+        }
+
+        // log events encoded into the columns of a Parquet file
+        if (format == S3OutputFormat.PARQUET) {
+            return new S3ParquetBuffer(config);
+        }
+
+        // serialized log events in a memory-mapped file
+        if (config.S3_OFF_HEAP_BUFFER) {
+            try {
+                return new S3SegmentBuffer(config, new S3Transformer());
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not create the off-heap buffer", e);
+            }
+        }
+
+        // an in-heap buffer, whose limits optionally follow the latency of the emitter
+        if (config.ADAPTIVE_BUFFER) {
+            return new AdaptiveMemoryBuffer<CloudWatchLogsEvent>(config);
+        }
+        return new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration);
     }
 
     @Override
-    public IFilter<CloudWatchLogsEvent> getFilter(KinesisConnectorConfiguration configuration) {
+    protected CloudWatchLogsSubscriptionTransformer<byte[]> createTransformer(
+            CloudWatchLogsConnectorConfiguration configuration) {
 
-        // no filtering
-        return new AllPassFilter<CloudWatchLogsEvent>();
+        // writes log events as lines of JSON
+        return new S3Transformer();
     }
 }
@@ -15,6 +15,7 @@
 package com.amazonaws.services.logs.connectors.samples.stdout;
 
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorRecordProcessorFactory;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsRecordProcessorFactory;
 import com.amazonaws.services.logs.connectors.samples.AbstractConnectorExecutor;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 
@@ -27,9 +28,8 @@ public class StdoutConnector extends AbstractConnectorExecutor<String> {
     }
 
     @Override
-    public KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, String> getKinesisConnectorRecordProcessorFactory() {
-        return new KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, String>(new StdoutPipeline(),
-                getConfig());
+    protected KinesisConnectorRecordProcessorFactory<CloudWatchLogsEvent, String> createRecordProcessorFactory() {
+        return new CloudWatchLogsRecordProcessorFactory<String>(new StdoutPipeline(), getConfig());
     }
 
     public static void main(String[] args) {
@@ -21,20 +21,18 @@ import java.util.List;
 
 import com.amazonaws.services.kinesis.connectors.KinesisConnectorConfiguration;
 import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
-import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
 import com.amazonaws.services.kinesis.connectors.impl.BasicMemoryBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IBuffer;
 import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
-import com.amazonaws.services.kinesis.connectors.interfaces.IKinesisConnectorPipeline;
-import com.amazonaws.services.kinesis.connectors.interfaces.ITransformerBase;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.samples.AbstractConnectorPipeline;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
 
 /**
  * This sets up the processing pipeline for the KCL application.
  */
-public class StdoutPipeline implements IKinesisConnectorPipeline<CloudWatchLogsEvent, String> {
+public class StdoutPipeline extends AbstractConnectorPipeline<String> {
 
     @Override
     public IEmitter<String> getEmitter(KinesisConnectorConfiguration configuration) {
@@ -67,7 +65,8 @@ public class StdoutPipeline implements IKinesisConnectorPipeline<CloudWatchLogsE
     }
 
     @Override
-    public ITransformerBase<CloudWatchLogsEvent, String> getTransformer(KinesisConnectorConfiguration configuration) {
+    protected CloudWatchLogsSubscriptionTransformer<String> createTransformer(
+            CloudWatchLogsConnectorConfiguration configuration) {
 
         // transforms records of CloudWatchLogsEvent type to strings
         return new CloudWatchLogsSubscriptionTransformer<String>() {
@@ -79,11 +78,4 @@ public class StdoutPipeline implements IKinesisConnectorPipeline<CloudWatchLogsE
 
         };
     }
-
-    @Override
-    public IFilter<CloudWatchLogsEvent> getFilter(KinesisConnectorConfiguration configuration) {
-
-        // no filtering
-        return new AllPassFilter<CloudWatchLogsEvent>();
-    }
 }
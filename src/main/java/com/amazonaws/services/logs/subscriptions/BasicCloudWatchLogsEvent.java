@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A log event that holds its own attributes.
+ *
+ * Extracted fields are kept as parallel arrays of names and values; a map view
+ * is only built when {@link #getExtractedFields()} is called.
+ */
+public class BasicCloudWatchLogsEvent extends CloudWatchLogsEvent {
+
+    private static final long SHALLOW_SIZE = HeapSize.shallowSizeOf(BasicCloudWatchLogsEvent.class);
+
+    private final String id;
+    private final long timestamp;
+    private final String message;
+
+    private final String[] extractedFieldNames;
+    private final String[] extractedFieldValues;
+    private volatile Map<String, String> extractedFields;
+
+    private final String owner;
+    private final String logGroup;
+    private final String logStream;
+
+    public BasicCloudWatchLogsEvent(String id, long timestamp, String message, Map<String, String> extractedFields,
+            String owner, String logGroup, String logStream) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.message = message;
+        this.owner = owner;
+        this.logGroup = logGroup;
+        this.logStream = logStream;
+
+        if (extractedFields == null) {
+            this.extractedFieldNames = null;
+            this.extractedFieldValues = null;
+        } else {
+            this.extractedFieldNames = new String[extractedFields.size()];
+            this.extractedFieldValues = new String[extractedFields.size()];
+
+            int i = 0;
+            for (Map.Entry<String, String> entry : extractedFields.entrySet()) {
+                this.extractedFieldNames[i] = entry.getKey();
+                this.extractedFieldValues[i] = entry.getValue();
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Creates a log event whose extracted fields are given as parallel arrays of
+     * names and values. The arrays are not copied and must not be modified
+     * afterwards. Both are null if the event has no extracted fields.
+     */
+    public BasicCloudWatchLogsEvent(String id, long timestamp, String message, String[] extractedFieldNames,
+            String[] extractedFieldValues, String owner, String logGroup, String logStream) {
+        if ((extractedFieldNames == null) != (extractedFieldValues == null)
+                || (extractedFieldNames != null && extractedFieldNames.length != extractedFieldValues.length)) {
+            throw new IllegalArgumentException("Extracted field names and values must have the same length");
+        }
+
+        this.id = id;
+        this.timestamp = timestamp;
+        this.message = message;
+        this.extractedFieldNames = extractedFieldNames;
+        this.extractedFieldValues = extractedFieldValues;
+        this.owner = owner;
+        this.logGroup = logGroup;
+        this.logStream = logStream;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * The map is built on the first call.
+     */
+    @Override
+    public Map<String, String> getExtractedFields() {
+        if (extractedFieldNames == null) {
+            return null;
+        }
+
+        Map<String, String> result = extractedFields;
+        if (result == null) {
+            Map<String, String> map = new HashMap<>(extractedFieldNames.length * 2);
+            for (int i = 0; i < extractedFieldNames.length; i++) {
+                map.put(extractedFieldNames[i], extractedFieldValues[i]);
+            }
+            result = Collections.unmodifiableMap(map);
+            extractedFields = result;
+        }
+        return result;
+    }
+
+    @Override
+    public int getExtractedFieldCount() {
+        return extractedFieldNames == null ? -1 : extractedFieldNames.length;
+    }
+
+    @Override
+    public String getExtractedFieldName(int index) {
+        return extractedFieldNames[index];
+    }
+
+    @Override
+    public String getExtractedFieldValue(int index) {
+        return extractedFieldValues[index];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return SHALLOW_SIZE + HeapSize.of(id) + HeapSize.of(message) + HeapSize.of(extractedFieldNames)
+                + HeapSize.of(extractedFieldValues) + HeapSize.ofElements(extractedFieldValues);
+    }
+
+    @Override
+    CloudWatchLogsEvent withHeader(String owner, String logGroup, String logStream) {
+        return new BasicCloudWatchLogsEvent(id, timestamp, message, extractedFieldNames, extractedFieldValues, owner,
+                logGroup, logStream);
+    }
+
+    @Override
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public String getLogGroup() {
+        return logGroup;
+    }
+
+    @Override
+    public String getLogStream() {
+        return logStream;
+    }
+}
@@ -16,56 +16,56 @@ package com.amazonaws.services.logs.subscriptions;
 
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Defines the record that CloudWatch Logs uses for subscriptions.
+ *
+ * This class has no fields of its own, so that views such as the events of a
+ * {@link CloudWatchLogsEventBatch} stay small. Log events that hold their own
+ * attributes are created as {@link BasicCloudWatchLogsEvent}, which takes the
+ * same constructor arguments as this class did when it was concrete.
  */
-public class CloudWatchLogsEvent {
+public abstract class CloudWatchLogsEvent {
+
+    public abstract String getId();
+
+    public abstract long getTimestamp();
 
-    private final String id;
-    private final long timestamp;
-    private final String message;
-    private final Map<String, String> extractedFields;
+    public abstract String getMessage();
 
-    private final String owner;
-    private final String logGroup;
-    private final String logStream;
+    /**
+     * Returns an unmodifiable map of the extracted fields, or null if the event
+     * has none.
+     */
+    public abstract Map<String, String> getExtractedFields();
 
-    public CloudWatchLogsEvent(String id, long timestamp, String message, Map<String, String> extractedFields,
-            String owner, String logGroup, String logStream) {
-        this.id = id;
-        this.timestamp = timestamp;
-        this.message = message;
-        this.extractedFields = extractedFields;
-        this.owner = owner;
-        this.logGroup = logGroup;
-        this.logStream = logStream;
-    }
+    /**
+     * Returns the number of extracted fields, or -1 if the event has none.
+     */
+    @JsonIgnore
+    public abstract int getExtractedFieldCount();
 
-    public String getId() {
-        return id;
-    }
+    public abstract String getExtractedFieldName(int index);
 
-    public long getTimestamp() {
-        return timestamp;
-    }
+    public abstract String getExtractedFieldValue(int index);
 
-    public String getMessage() {
-        return message;
-    }
+    /**
+     * Returns an estimate of the heap taken by this event. Field names and the
+     * owner, log group and log stream are shared with other events, and are not
+     * counted.
+     */
+    @JsonIgnore
+    public abstract long getEstimatedSize();
 
-    public Map<String, String> getExtractedFields() {
-        return extractedFields;
-    }
+    /**
+     * Returns a copy of this event with the given common attributes.
+     */
+    abstract CloudWatchLogsEvent withHeader(String owner, String logGroup, String logStream);
 
-    public String getOwner() {
-        return owner;
-    }
+    public abstract String getOwner();
 
-    public String getLogGroup() {
-        return logGroup;
-    }
+    public abstract String getLogGroup();
 
-    public String getLogStream() {
-        return logStream;
-    }
+    public abstract String getLogStream();
 }
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A compact, columnar representation of the log events of one subscription
+ * record.
+ *
+ * The common attributes are stored once, timestamps are kept in a long[], and
+ * ids and messages are kept as UTF-8 ranges of a single shared byte[] that is
+ * only decoded when a getter is called. Events that report the same extracted
+ * field names share a single names array.
+ *
+ * {@link #get(int)} and {@link #asList()} expose the events as lightweight
+ * CloudWatchLogsEvent views, so existing transformers can consume a batch
+ * without changes. A view decodes its id and message at most once.
+ */
+public final class CloudWatchLogsEventBatch implements Iterable<CloudWatchLogsEvent> {
+
+    // the timestamp, the four ranges and the two extracted field references of each event
+    private static final long COLUMNS_SIZE = 8 + 4 * 4 + 2 * HeapSize.REFERENCE;
+
+    private static final CloudWatchLogsEventBatch EMPTY = new CloudWatchLogsEventBatch(null, null, null, 0,
+            new long[0], new int[0], new int[0], new int[0], new int[0], new String[0][], new String[0][], new byte[0],
+            0);
+
+    private final String owner;
+    private final String logGroup;
+    private final String logStream;
+
+    private final int size;
+    private final long[] timestamps;
+
+    // ranges of the shared buffer; a length of -1 stands for a null value
+    private final int[] idOffsets;
+    private final int[] idLengths;
+    private final int[] messageOffsets;
+    private final int[] messageLengths;
+
+    private final String[][] extractedFieldNames;
+    private final String[][] extractedFieldValues;
+
+    private final byte[] data;
+
+    // the bytes of the shared buffer past the last range, counted evenly against the events
+    private final int unusedDataPerEvent;
+
+    private CloudWatchLogsEventBatch(String owner, String logGroup, String logStream, int size, long[] timestamps,
+            int[] idOffsets, int[] idLengths, int[] messageOffsets, int[] messageLengths,
+            String[][] extractedFieldNames, String[][] extractedFieldValues, byte[] data, int dataLength) {
+        this.owner = owner;
+        this.logGroup = logGroup;
+        this.logStream = logStream;
+        this.size = size;
+        this.timestamps = timestamps;
+        this.idOffsets = idOffsets;
+        this.idLengths = idLengths;
+        this.messageOffsets = messageOffsets;
+        this.messageLengths = messageLengths;
+        this.extractedFieldNames = extractedFieldNames;
+        this.extractedFieldValues = extractedFieldValues;
+        this.data = data;
+        this.unusedDataPerEvent = size == 0 ? 0 : (data.length - dataLength + size - 1) / size;
+    }
+
+    /**
+     * Returns a batch without any log events.
+     */
+    public static CloudWatchLogsEventBatch empty() {
+        return EMPTY;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getLogGroup() {
+        return logGroup;
+    }
+
+    public String getLogStream() {
+        return logStream;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    public String getId(int index) {
+        checkIndex(index);
+        return decode(idOffsets[index], idLengths[index]);
+    }
+
+    public String getMessage(int index) {
+        checkIndex(index);
+        return decode(messageOffsets[index], messageLengths[index]);
+    }
+
+    /**
+     * Returns the number of extracted fields of an event, or -1 if it has none.
+     */
+    public int getExtractedFieldCount(int index) {
+        checkIndex(index);
+        return extractedFieldNames[index] == null ? -1 : extractedFieldNames[index].length;
+    }
+
+    public String getExtractedFieldName(int index, int field) {
+        checkIndex(index);
+        return extractedFieldNames[index][field];
+    }
+
+    public String getExtractedFieldValue(int index, int field) {
+        checkIndex(index);
+        return extractedFieldValues[index][field];
+    }
+
+    /**
+     * Returns an unmodifiable map of the extracted fields of an event, or null if
+     * it has none. A new map is built on each call.
+     */
+    public Map<String, String> getExtractedFields(int index) {
+        checkIndex(index);
+
+        String[] names = extractedFieldNames[index];
+        if (names == null) {
+            return null;
+        }
+
+        String[] values = extractedFieldValues[index];
+        Map<String, String> map = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            map.put(names[i], values[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns an estimate of the heap taken by an event in this batch: its share
+     * of the columns and of the shared buffer, and its extracted field values.
+     */
+    public long getEstimatedSize(int index) {
+        checkIndex(index);
+
+        long size = COLUMNS_SIZE + Math.max(idLengths[index], 0) + Math.max(messageLengths[index], 0)
+                + unusedDataPerEvent + HeapSize.of(extractedFieldValues[index])
+                + HeapSize.ofElements(extractedFieldValues[index]);
+
+        // names arrays are shared with the previous event when they are equal
+        if (index == 0 || extractedFieldNames[index] != extractedFieldNames[index - 1]) {
+            size += HeapSize.of(extractedFieldNames[index]);
+        }
+        return size;
+    }
+
+    /**
+     * Returns a view of the event at the given position.
+     */
+    public CloudWatchLogsEvent get(int index) {
+        checkIndex(index);
+        return new BatchedEvent(this, index);
+    }
+
+    /**
+     * Returns an unmodifiable list of views of the events in this batch. Views are
+     * created as elements are accessed.
+     */
+    public List<CloudWatchLogsEvent> asList() {
+        return new AbstractList<CloudWatchLogsEvent>() {
+
+            @Override
+            public CloudWatchLogsEvent get(int index) {
+                return CloudWatchLogsEventBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Iterator<CloudWatchLogsEvent> iterator() {
+        return asList().iterator();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private String decode(int offset, int length) {
+        return length < 0 ? null : new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A CloudWatchLogsEvent that reads its attributes from a batch. The id and
+     * message are kept once decoded, as the filters and the transformer of an
+     * event each read them.
+     */
+    private static final class BatchedEvent extends CloudWatchLogsEvent {
+
+        // counted from the declared fields, including any inherited ones
+        private static final long SHALLOW_SIZE = HeapSize.shallowSizeOf(BatchedEvent.class);
+
+        private final CloudWatchLogsEventBatch batch;
+        private final int index;
+
+        // decoded on first use; a race only decodes them twice
+        private String id;
+        private String message;
+
+        BatchedEvent(CloudWatchLogsEventBatch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+
+        @Override
+        public String getId() {
+            String result = id;
+            if (result == null) {
+                result = batch.getId(index);
+                id = result;
+            }
+            return result;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return batch.getTimestamp(index);
+        }
+
+        @Override
+        public String getMessage() {
+            String result = message;
+            if (result == null) {
+                result = batch.getMessage(index);
+                message = result;
+            }
+            return result;
+        }
+
+        @Override
+        public Map<String, String> getExtractedFields() {
+            return batch.getExtractedFields(index);
+        }
+
+        @Override
+        public int getExtractedFieldCount() {
+            return batch.getExtractedFieldCount(index);
+        }
+
+        @Override
+        public String getExtractedFieldName(int field) {
+            return batch.getExtractedFieldName(index, field);
+        }
+
+        @Override
+        public String getExtractedFieldValue(int field) {
+            return batch.getExtractedFieldValue(index, field);
+        }
+
+        /**
+         * Includes the id and message if they have already been decoded.
+         */
+        @Override
+        public long getEstimatedSize() {
+            return SHALLOW_SIZE + batch.getEstimatedSize(index) + HeapSize.of(id) + HeapSize.of(message);
+        }
+
+        @Override
+        CloudWatchLogsEvent withHeader(String owner, String logGroup, String logStream) {
+            return new BasicCloudWatchLogsEvent(getId(), getTimestamp(), getMessage(),
+                    batch.extractedFieldNames[index], batch.extractedFieldValues[index], owner, logGroup, logStream);
+        }
+
+        @Override
+        public String getOwner() {
+            return batch.owner;
+        }
+
+        @Override
+        public String getLogGroup() {
+            return batch.logGroup;
+        }
+
+        @Override
+        public String getLogStream() {
+            return batch.logStream;
+        }
+    }
+
+    /**
+     * Builds a batch while the subscription payload is parsed, encoding ids and
+     * messages straight from the parser's character buffer. The buffer is sized
+     * for the payload and handed over to the batch as is, so a builder builds a
+     * single batch.
+     */
+    static final class Builder extends LogEventHandler {
+
+        private int size;
+        private long[] timestamps;
+        private int[] idOffsets;
+        private int[] idLengths;
+        private int[] messageOffsets;
+        private int[] messageLengths;
+        private String[][] extractedFieldNames;
+        private String[][] extractedFieldValues;
+
+        private byte[] data;
+        private int dataLength;
+
+        private String owner;
+        private String logGroup;
+        private String logStream;
+
+        Builder() {
+            int capacity = 16;
+            timestamps = new long[capacity];
+            idOffsets = new int[capacity];
+            idLengths = new int[capacity];
+            messageOffsets = new int[capacity];
+            messageLengths = new int[capacity];
+            extractedFieldNames = new String[capacity][];
+            extractedFieldValues = new String[capacity][];
+            data = new byte[64];
+        }
+
+        @Override
+        void start(int payloadLength) {
+            // ids and messages make up most of the payload
+            if (data.length < payloadLength) {
+                data = new byte[payloadLength];
+            }
+        }
+
+        @Override
+        void startLogEvent() {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                idOffsets = Arrays.copyOf(idOffsets, capacity);
+                idLengths = Arrays.copyOf(idLengths, capacity);
+                messageOffsets = Arrays.copyOf(messageOffsets, capacity);
+                messageLengths = Arrays.copyOf(messageLengths, capacity);
+                extractedFieldNames = Arrays.copyOf(extractedFieldNames, capacity);
+                extractedFieldValues = Arrays.copyOf(extractedFieldValues, capacity);
+            }
+
+            timestamps[size] = 0;
+            idLengths[size] = -1;
+            messageLengths[size] = -1;
+            extractedFieldNames[size] = null;
+            extractedFieldValues[size] = null;
+        }
+
+        @Override
+        void id(JsonParser parser) throws IOException {
+            idOffsets[size] = dataLength;
+            idLengths[size] = appendText(parser);
+        }
+
+        @Override
+        void timestamp(long timestamp) {
+            timestamps[size] = timestamp;
+        }
+
+        @Override
+        void message(JsonParser parser) throws IOException {
+            messageOffsets[size] = dataLength;
+            messageLengths[size] = appendText(parser);
+        }
+
+        @Override
+        void extractedFields(String[] names, String[] values) {
+            // share the names with the previous event when the same filter pattern produced them
+            if (size > 0 && Arrays.equals(names, extractedFieldNames[size - 1])) {
+                names = extractedFieldNames[size - 1];
+            }
+            extractedFieldNames[size] = names;
+            extractedFieldValues[size] = values;
+        }
+
+        @Override
+        void endLogEvent(String owner, String logGroup, String logStream) {
+            size++;
+        }
+
+        @Override
+        void end(String owner, String logGroup, String logStream) {
+            this.owner = owner;
+            this.logGroup = logGroup;
+            this.logStream = logStream;
+        }
+
+        CloudWatchLogsEventBatch build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+
+            return new CloudWatchLogsEventBatch(owner, logGroup, logStream, size, Arrays.copyOf(timestamps, size),
+                    Arrays.copyOf(idOffsets, size), Arrays.copyOf(idLengths, size),
+                    Arrays.copyOf(messageOffsets, size), Arrays.copyOf(messageLengths, size),
+                    Arrays.copyOf(extractedFieldNames, size), Arrays.copyOf(extractedFieldValues, size), data,
+                    dataLength);
+        }
+
+        /**
+         * Appends the current scalar value as UTF-8 and returns its length in bytes,
+         * or -1 for a JSON null.
+         */
+        private int appendText(JsonParser parser) throws IOException {
+            if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+                return -1;
+            }
+
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+
+            // a char never takes more than three bytes in UTF-8, and the exact length is
+            // only counted when that bound does not fit, so the buffer is not grown needlessly
+            if (data.length - dataLength < length * 3) {
+                ensureCapacity(utf8Length(chars, offset, length));
+            }
+
+            int start = dataLength;
+            int position = dataLength;
+            byte[] bytes = data;
+
+            for (int i = offset; i < offset + length; i++) {
+                char c = chars[i];
+
+                if (c < 0x80) {
+                    bytes[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[position++] = (byte) (0xc0 | (c >> 6));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < offset + length
+                        && Character.isLowSurrogate(chars[i + 1])) {
+                    int codePoint = Character.toCodePoint(c, chars[++i]);
+                    bytes[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogates are replaced like String.getBytes does
+                    bytes[position++] = '?';
+                } else {
+                    bytes[position++] = (byte) (0xe0 | (c >> 12));
+                    bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[position++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+
+            dataLength = position;
+            return position - start;
+        }
+
+        private static int utf8Length(char[] chars, int offset, int length) {
+            int utf8Length = length;
+            for (int i = offset; i < offset + length; i++) {
+                char c = chars[i];
+                if (c >= 0x800 && !Character.isSurrogate(c)) {
+                    utf8Length += 2;
+                } else if (c >= 0x80 && !Character.isSurrogate(c)) {
+                    utf8Length++;
+                } else if (Character.isHighSurrogate(c) && i + 1 < offset + length
+                        && Character.isLowSurrogate(chars[i + 1])) {
+                    // four bytes for the two chars of the pair
+                    utf8Length += 2;
+                    i++;
+                }
+            }
+            return utf8Length;
+        }
+
+        private void ensureCapacity(int additional) {
+            if (data.length - dataLength < additional) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + additional));
+            }
+        }
+    }
+}
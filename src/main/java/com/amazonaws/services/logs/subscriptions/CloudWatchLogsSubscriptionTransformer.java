@@ -14,104 +14,558 @@
  */
 package com.amazonaws.services.logs.subscriptions;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.services.kinesis.connectors.interfaces.ICollectionTransformer;
 import com.amazonaws.services.kinesis.model.Record;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 /**
  * Converts a Kinesis record to a collection of CloudWatchLogsEvent records.
+ *
+ * The payload is uncompressed into a buffer that is reused by the calling thread
+ * and decoded with a streaming JSON parser, so log events are created as soon as
+ * each element of the logEvents array has been read, without building an
+ * intermediate String or JSON tree.
+ *
+ * Records are first read up to their log events, so that those that are not
+ * data messages, or whose header fails a {@link HeaderPredicate}, are skipped
+ * after uncompressing only the start of the payload, without parsing logEvents.
+ *
+ * The time taken to uncompress and to parse each record can be reported to a
+ * {@link DecodeMetrics}.
  */
 public abstract class CloudWatchLogsSubscriptionTransformer<T> implements
         ICollectionTransformer<CloudWatchLogsEvent, T> {
 
     private static final Log LOG = LogFactory.getLog(CloudWatchLogsSubscriptionTransformer.class);
 
-    private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
-    private static final TypeReference<HashMap<String, String>> MAP_TYPE = new TypeReference<HashMap<String, String>>() {};
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String DATA_MESSAGE = "DATA_MESSAGE";
+
+    // converting a single log event is cheap, so hand them to the pool in groups
+    private static final int FROM_CLASS_BATCH_SIZE = 256;
+
+    // owner, logGroup and logStream come from a small set of values repeated across millions of events
+    private static final StringInterner HEADER_INTERNER = new StringInterner(1024);
+
+    // enough for the attributes that precede logEvents in the payloads of CloudWatch Logs
+    private static final int HEADER_PREFIX_SIZE = 2048;
+
+    private HeaderPredicate headerPredicate;
+    private DecodeMetrics decodeMetrics;
+
+    /**
+     * Skips the records whose header does not satisfy the given predicate, or
+     * none if it is null.
+     */
+    public void setHeaderPredicate(HeaderPredicate headerPredicate) {
+        this.headerPredicate = headerPredicate;
+    }
+
+    /**
+     * Reports the time taken to decode records to the given metrics, or to
+     * none if it is null.
+     */
+    public void setDecodeMetrics(DecodeMetrics decodeMetrics) {
+        this.decodeMetrics = decodeMetrics;
+    }
 
     @Override
     public Collection<CloudWatchLogsEvent> toClass(Record record) throws IOException {
-        List<CloudWatchLogsEvent> result = new ArrayList<>();
+        EventListHandler handler = new EventListHandler();
+        return decode(record, handler) ? handler.result : new ArrayList<CloudWatchLogsEvent>();
+    }
+
+    /**
+     * Converts the records of one GetRecords batch on the given pool. The log
+     * events of each record are returned at the position of that record, so the
+     * order needed for checkpointing is kept. Records that fail to convert give an
+     * empty collection.
+     */
+    public List<Collection<CloudWatchLogsEvent>> toClass(final List<Record> records, ForkJoinPool pool) {
+        final Object[] result = new Object[records.size()];
+
+        pool.invoke(new RangeAction(0, records.size(), 1) {
+
+            private static final long serialVersionUID = 1L;
 
-        // uncompress the payload
-        byte[] uncompressedPayload;
+            @Override
+            void compute(int index) {
+                try {
+                    result[index] = toClass(records.get(index));
+                } catch (IOException e) {
+                    LOG.error("Failed to transform record " + records.get(index).getSequenceNumber()
+                            + ". Skipping it.", e);
+                    result[index] = new ArrayList<CloudWatchLogsEvent>();
+                }
+            }
+        });
+
+        return asList(result);
+    }
+
+    /**
+     * Converts log events to the output type on the given pool, keeping their
+     * order. Log events that fail to convert are left out.
+     */
+    public List<T> fromClass(final List<CloudWatchLogsEvent> records, ForkJoinPool pool) {
+        final Object[] result = new Object[records.size()];
+
+        pool.invoke(new RangeAction(0, records.size(), FROM_CLASS_BATCH_SIZE) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            void compute(int index) {
+                CloudWatchLogsEvent record = records.get(index);
+                try {
+                    result[index] = fromClass(record);
+                } catch (IOException e) {
+                    LOG.error("Failed to transform record " + record + " to output type", e);
+                }
+            }
+        });
+
+        return asList(result);
+    }
+
+    /**
+     * Returns the non-null values in their original order.
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> List<E> asList(Object[] values) {
+        List<E> list = new ArrayList<>(values.length);
+        for (Object value : values) {
+            if (value != null) {
+                list.add((E) value);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Converts a Kinesis record to a compact batch of log events. The batch is
+     * empty if the record is skipped.
+     */
+    public CloudWatchLogsEventBatch toBatch(Record record) {
+        CloudWatchLogsEventBatch.Builder builder = new CloudWatchLogsEventBatch.Builder();
+        return decode(record, builder) ? builder.build() : CloudWatchLogsEventBatch.empty();
+    }
+
+    /**
+     * Uncompresses and parses the record, passing its log events to the handler.
+     * Returns false if the record has to be skipped.
+     */
+    private boolean decode(Record record, LogEventHandler handler) {
+        HeaderPredicate predicate = headerPredicate;
+        DecodeMetrics metrics = decodeMetrics;
+        long startTime = metrics == null ? 0 : System.nanoTime();
+
+        // uncompress the payload into the buffer owned by this thread
+        GzipDecompressor decompressor = GzipDecompressor.get();
         try {
-            uncompressedPayload = uncompress(record.getData().array());
+            // read the header from the start of the payload before uncompressing the log events
+            decompressor.decompressPrefix(record.getData(), HEADER_PREFIX_SIZE);
+            ParseResult headerResult = parseHeader(decompressor.getBuffer(), decompressor.getLength(), predicate);
+            if (headerResult != ParseResult.DATA_MESSAGE) {
+                if (metrics != null) {
+                    metrics.recordUncompress(System.nanoTime() - startTime);
+                }
+                if (headerResult == ParseResult.NOT_DATA_MESSAGE) {
+                    LOG.warn("This record is not a data message. Skipping it.");
+                }
+                return false;
+            }
+            decompressor.decompressRemaining();
         } catch (IOException e) {
             LOG.error("Unable to uncompress the record. Skipping it.", e);
-            return result;
+            return false;
         }
 
-        // get the JSON root node
-        String jsonPayload = new String(uncompressedPayload, Charset.forName("UTF-8"));
-        JsonNode rootNode;
-        try {
-            rootNode = JSON_OBJECT_MAPPER.readTree(new StringReader(jsonPayload));
-        } catch (JsonProcessingException e) {
+        if (metrics != null) {
+            long uncompressedTime = System.nanoTime();
+            metrics.recordUncompress(uncompressedTime - startTime);
+            startTime = uncompressedTime;
+        }
+
+        handler.start(decompressor.getLength());
+
+        try (JsonParser parser = JSON_FACTORY.createParser(decompressor.getBuffer(), 0, decompressor.getLength())) {
+            ParseResult result = parse(parser, handler, predicate);
+            if (metrics != null) {
+                metrics.recordParse(System.nanoTime() - startTime);
+            }
+
+            switch (result) {
+                case NOT_DATA_MESSAGE:
+                    LOG.warn("This record is not a data message. Skipping it.");
+                    return false;
+                case REJECTED:
+                    return false;
+                default:
+                    return true;
+            }
+        } catch (IOException e) {
             LOG.error("Unable to parse the record as JSON. Skipping it.", e);
-            return result;
+            return false;
+        }
+    }
+
+    /**
+     * Reads the header from the start of a payload. Returns NOT_DATA_MESSAGE as
+     * soon as another message type is read, and REJECTED if the header fails
+     * the predicate, which may be null. Returns DATA_MESSAGE if it passes, or if
+     * logEvents is not reached within the given bytes, in which case the whole
+     * payload has to be parsed.
+     */
+    private static ParseResult parseHeader(byte[] buffer, int length, HeaderPredicate predicate) {
+        String messageType = null;
+        String owner = null;
+        String logGroup = null;
+        String logStream = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(buffer, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return ParseResult.DATA_MESSAGE;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                if ("logEvents".equals(fieldName)) {
+                    return predicate != null && isComplete(messageType, owner, logGroup, logStream)
+                            && !predicate.test(messageType, owner, logGroup, logStream) ? ParseResult.REJECTED
+                            : ParseResult.DATA_MESSAGE;
+                }
+
+                parser.nextToken();
+                switch (fieldName) {
+                    case "messageType":
+                        messageType = parser.getValueAsString();
+                        if (!DATA_MESSAGE.equals(messageType)) {
+                            return ParseResult.NOT_DATA_MESSAGE;
+                        }
+                        break;
+                    case "owner":
+                        owner = internValue(parser);
+                        break;
+                    case "logGroup":
+                        logGroup = internValue(parser);
+                        break;
+                    case "logStream":
+                        logStream = internValue(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        } catch (IOException e) {
+            // the prefix ends in the middle of the header
+            return ParseResult.DATA_MESSAGE;
+        }
+
+        return ParseResult.DATA_MESSAGE;
+    }
+
+    private static boolean isComplete(String messageType, String owner, String logGroup, String logStream) {
+        return messageType != null && owner != null && logGroup != null && logStream != null;
+    }
+
+    private enum ParseResult {
+        DATA_MESSAGE,
+        NOT_DATA_MESSAGE,
+        REJECTED
+    }
+
+    /**
+     * Reads the subscription payload and passes its log events to the handler,
+     * unless the payload turns out not to be a data message or its header fails
+     * the predicate.
+     */
+    private static ParseResult parse(JsonParser parser, LogEventHandler handler, HeaderPredicate predicate)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected the record to be a JSON object", parser.getCurrentLocation());
+        }
+
+        String messageType = null;
+        String owner = null;
+        String logGroup = null;
+        String logStream = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            switch (fieldName) {
+                case "messageType":
+                    messageType = parser.getValueAsString();
+
+                    // only process records whose type is DATA_MESSAGE
+                    if (!DATA_MESSAGE.equals(messageType)) {
+                        return ParseResult.NOT_DATA_MESSAGE;
+                    }
+                    break;
+                case "owner":
+                    owner = internValue(parser);
+                    break;
+                case "logGroup":
+                    logGroup = internValue(parser);
+                    break;
+                case "logStream":
+                    logStream = internValue(parser);
+                    break;
+                case "logEvents":
+                    if (predicate != null && isComplete(messageType, owner, logGroup, logStream)) {
+                        if (!predicate.test(messageType, owner, logGroup, logStream)) {
+                            return ParseResult.REJECTED;
+                        }
+                        // the header is not tested again at the end
+                        predicate = null;
+                    }
+
+                    if (token != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        break;
+                    }
+
+                    // events of a batch usually share the same extracted field names
+                    int fieldCountHint = 0;
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        handler.startLogEvent();
+                        fieldCountHint = parseLogEvent(parser, handler, fieldCountHint);
+                        handler.endLogEvent(owner, logGroup, logStream);
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        if (messageType == null) {
+            return ParseResult.NOT_DATA_MESSAGE;
+        }
+
+        // the header came after the log events, or was incomplete
+        if (predicate != null && !predicate.test(messageType, owner, logGroup, logStream)) {
+            return ParseResult.REJECTED;
+        }
+
+        handler.end(owner, logGroup, logStream);
+        return ParseResult.DATA_MESSAGE;
+    }
+
+    /**
+     * Returns the canonical instance of the current string value, without creating
+     * a new String if the value has been seen before.
+     */
+    private static String internValue(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.VALUE_STRING) {
+            return parser.getValueAsString();
         }
+        return HEADER_INTERNER.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Reads one element of logEvents and returns its number of extracted fields.
+     */
+    private static int parseLogEvent(JsonParser parser, LogEventHandler handler, int fieldCountHint)
+            throws IOException {
+        int count = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if (token.isStructStart()) {
+                // none of the attributes of a log event are expected to be arrays or objects
+                if (token == JsonToken.START_OBJECT && "extractedFields".equals(fieldName)) {
+                    count = parseExtractedFields(parser, handler, fieldCountHint);
+                } else {
+                    parser.skipChildren();
+                }
+                continue;
+            }
 
-        // only process records whose type is DATA_MESSAGE
-        JsonNode messageTypeNode = rootNode.get("messageType");
-        if (messageTypeNode == null || !messageTypeNode.asText().equals("DATA_MESSAGE")) {
-            LOG.warn("This record is not a data message. Skipping it.");
-            return result;
+            switch (fieldName) {
+                case "id":
+                    handler.id(parser);
+                    break;
+                case "timestamp":
+                    handler.timestamp(parser.getValueAsLong());
+                    break;
+                case "message":
+                    handler.message(parser);
+                    break;
+                default:
+                    break;
+            }
         }
 
-        // extract the common attributes for all the log events in the batch
-        String owner = rootNode.get("owner").asText();
-        String logGroup = rootNode.get("logGroup").asText();
-        String logStream = rootNode.get("logStream").asText();
+        return count;
+    }
+
+    private static int parseExtractedFields(JsonParser parser, LogEventHandler handler, int fieldCountHint)
+            throws IOException {
+        // read the names and values straight into parallel arrays
+        String[] extractedFieldNames = new String[fieldCountHint];
+        String[] extractedFieldValues = new String[fieldCountHint];
+        int count = 0;
 
-        // construct the log events
-        for (JsonNode logEventNode : rootNode.get("logEvents")) {
-            String id = logEventNode.get("id").asText();
-            long timestamp = logEventNode.get("timestamp").asLong();
-            String message = logEventNode.get("message").asText();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String extractedFieldName = parser.getCurrentName();
 
-            Map<String, String> extractedFields = null;
+            if (parser.nextToken().isStructStart()) {
+                // extracted fields are always scalars
+                parser.skipChildren();
+                continue;
+            }
 
-            if (logEventNode.get("extractedFields") != null) {
-                extractedFields = JSON_OBJECT_MAPPER.readValue(logEventNode.get("extractedFields").toString(), MAP_TYPE);
+            if (count == extractedFieldNames.length) {
+                extractedFieldNames = Arrays.copyOf(extractedFieldNames, count * 2 + 4);
+                extractedFieldValues = Arrays.copyOf(extractedFieldValues, count * 2 + 4);
             }
+            extractedFieldNames[count] = extractedFieldName;
+            extractedFieldValues[count] = parser.getValueAsString();
+            count++;
+        }
 
-            result.add(new CloudWatchLogsEvent(id, timestamp, message, extractedFields, owner, logGroup, logStream));
+        if (count != extractedFieldNames.length) {
+            extractedFieldNames = Arrays.copyOf(extractedFieldNames, count);
+            extractedFieldValues = Arrays.copyOf(extractedFieldValues, count);
         }
 
-        return result;
+        handler.extractedFields(extractedFieldNames, extractedFieldValues);
+        return count;
     }
 
-    private static byte[] uncompress(byte[] compressedData) throws IOException {
-        byte[] buffer = new byte[1024];
+    /**
+     * Collects the log events as CloudWatchLogsEvent instances.
+     */
+    private static final class EventListHandler extends LogEventHandler {
+
+        private final List<CloudWatchLogsEvent> result = new ArrayList<>();
+
+        private String id;
+        private long timestamp;
+        private String message;
+        private String[] extractedFieldNames;
+        private String[] extractedFieldValues;
 
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            try (GZIPInputStream gzis = new GZIPInputStream(new ByteArrayInputStream(compressedData))) {
-                int len;
-                while ((len = gzis.read(buffer)) > 0) {
-                    out.write(buffer, 0, len);
+        // set when logEvents shows up before the common attributes it depends on
+        private boolean incompleteEvents;
+
+        @Override
+        void startLogEvent() {
+            id = null;
+            timestamp = 0;
+            message = null;
+            extractedFieldNames = null;
+            extractedFieldValues = null;
+        }
+
+        @Override
+        void id(JsonParser parser) throws IOException {
+            id = parser.getValueAsString();
+        }
+
+        @Override
+        void timestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        void message(JsonParser parser) throws IOException {
+            message = parser.getValueAsString();
+        }
+
+        @Override
+        void extractedFields(String[] names, String[] values) {
+            extractedFieldNames = names;
+            extractedFieldValues = values;
+        }
+
+        @Override
+        void endLogEvent(String owner, String logGroup, String logStream) {
+            incompleteEvents |= owner == null || logGroup == null || logStream == null;
+            result.add(new BasicCloudWatchLogsEvent(id, timestamp, message, extractedFieldNames, extractedFieldValues,
+                    owner, logGroup, logStream));
+        }
+
+        @Override
+        void end(String owner, String logGroup, String logStream) {
+            if (incompleteEvents) {
+                // the common attributes came after the log events, so attach them now
+                for (int i = 0; i < result.size(); i++) {
+                    result.set(i, result.get(i).withHeader(owner, logGroup, logStream));
                 }
             }
-            out.flush();
-            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Runs compute(index) for every index of a range, splitting the range in halves
+     * until it is no larger than the threshold.
+     */
+    private abstract static class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        RangeAction(int from, int to, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        abstract void compute(int index);
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (int i = from; i < to; i++) {
+                    compute(i);
+                }
+                return;
+            }
+
+            final RangeAction parent = this;
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(from, middle, threshold) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                void compute(int index) {
+                    parent.compute(index);
+                }
+            }, new RangeAction(middle, to, threshold) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                void compute(int index) {
+                    parent.compute(index);
+                }
+            });
         }
     }
 }
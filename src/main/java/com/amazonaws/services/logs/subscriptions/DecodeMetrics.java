@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+/**
+ * Receives the time taken to decode each record. Implementations must be safe
+ * to call from several threads.
+ */
+public interface DecodeMetrics {
+
+    /**
+     * Records the time taken to uncompress a record, including records that
+     * are then skipped by their header.
+     */
+    void recordUncompress(long nanos);
+
+    /**
+     * Records the time taken to parse the JSON payload of a record.
+     */
+    void recordParse(long nanos);
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+/**
+ * The type of an extracted field value, as recognized by
+ * {@link FieldTypeClassifier}.
+ */
+public enum FieldType {
+
+    /**
+     * Any value that is not recognized as one of the other types.
+     */
+    STRING,
+
+    /**
+     * An integer that fits in a long, written without leading zeros.
+     */
+    LONG,
+
+    /**
+     * A number with a fraction or an exponent, in JSON number syntax.
+     */
+    DOUBLE,
+
+    /**
+     * true or false, in any case.
+     */
+    BOOLEAN,
+
+    /**
+     * An ISO-8601 date, optionally followed by a time and a zone offset.
+     */
+    DATE,
+
+    /**
+     * A positive integer of 10 or 13 digits that reads as seconds or milliseconds
+     * since the epoch between the years 2000 and 2100.
+     */
+    EPOCH;
+
+    /**
+     * Returns the narrowest type that can represent values of both types, or null
+     * if there is none besides STRING.
+     */
+    FieldType widen(FieldType other) {
+        if (this == other) {
+            return this;
+        }
+        if (isNumber() && other.isNumber()) {
+            // an epoch timestamp among other integers is just an integer
+            return this == DOUBLE || other == DOUBLE ? DOUBLE : LONG;
+        }
+        return null;
+    }
+
+    boolean isNumber() {
+        return this == LONG || this == DOUBLE || this == EPOCH;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the type of each extracted field per log group. Once the values of
+ * a field have agreed on a type long enough, later values are only checked
+ * against that type instead of being classified from scratch, and fields that
+ * are consistently strings are not scanned at all.
+ *
+ * A value that does not fit the remembered type is classified as usual and
+ * starts a new run of observations. The number of log groups and fields is
+ * bounded; fields beyond the limits are classified on each call.
+ */
+public final class FieldTypeCache {
+
+    // a type is trusted once this many values in a row agreed on it
+    static final int CONFIRMATIONS = 16;
+
+    static final int MAX_LOG_GROUPS = 1024;
+    static final int MAX_FIELDS_PER_LOG_GROUP = 256;
+
+    private static final FieldType[] TYPES = FieldType.values();
+
+    private final ConcurrentMap<String, ConcurrentMap<String, FieldState>> logGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the type to write the value of the field with. This is the type of
+     * the field when the value fits it, so that a field keeps one type across
+     * events.
+     */
+    public FieldType classify(String logGroup, String fieldName, String value) {
+        FieldState state = getState(logGroup, fieldName);
+
+        if (state == null) {
+            return FieldTypeClassifier.classify(value);
+        }
+
+        FieldType fieldType = state.getFieldType();
+        if (fieldType != null && FieldTypeClassifier.isAssignable(value, fieldType)) {
+            return fieldType;
+        }
+
+        FieldType type = FieldTypeClassifier.classify(value);
+        return state.record(type);
+    }
+
+    private FieldState getState(String logGroup, String fieldName) {
+        if (logGroup == null || fieldName == null) {
+            return null;
+        }
+
+        ConcurrentMap<String, FieldState> fields = logGroups.get(logGroup);
+        if (fields == null) {
+            if (logGroups.size() >= MAX_LOG_GROUPS) {
+                return null;
+            }
+            ConcurrentMap<String, FieldState> created = new ConcurrentHashMap<>();
+            fields = logGroups.putIfAbsent(logGroup, created);
+            if (fields == null) {
+                fields = created;
+            }
+        }
+
+        FieldState state = fields.get(fieldName);
+        if (state == null) {
+            if (fields.size() >= MAX_FIELDS_PER_LOG_GROUP) {
+                return null;
+            }
+            FieldState created = new FieldState();
+            state = fields.putIfAbsent(fieldName, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * The type seen so far for one field and how many values in a row agreed on it.
+     * Concurrent updates may lose an observation, which only delays the decision.
+     */
+    private static final class FieldState {
+
+        // the type ordinal in the low byte, the number of agreeing values above it
+        private volatile int state;
+
+        /**
+         * Returns the trusted type of the field, or null if there is none yet.
+         */
+        FieldType getFieldType() {
+            int current = state;
+            return (current >>> 8) >= CONFIRMATIONS ? TYPES[current & 0xff] : null;
+        }
+
+        /**
+         * Records the type of a value and returns the type of the current run.
+         */
+        FieldType record(FieldType type) {
+            int current = state;
+            int count = current >>> 8;
+
+            FieldType runType = count == 0 ? type : TYPES[current & 0xff].widen(type);
+            if (runType == null) {
+                runType = type;
+                count = 0;
+            }
+
+            state = Math.min(count + 1, CONFIRMATIONS) << 8 | runType.ordinal();
+            return runType;
+        }
+    }
+}
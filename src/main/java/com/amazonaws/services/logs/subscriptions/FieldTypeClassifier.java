@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+/**
+ * Recognizes the type of an extracted field value in a single scan of its
+ * characters, without allocating.
+ */
+public final class FieldTypeClassifier {
+
+    private static final String MAX_LONG = String.valueOf(Long.MAX_VALUE);
+    private static final String MIN_LONG_DIGITS = String.valueOf(Long.MIN_VALUE).substring(1);
+
+    // 2000-01-01T00:00:00Z and 2100-01-01T00:00:00Z
+    private static final long MIN_EPOCH_SECONDS = 946684800L;
+    private static final long MAX_EPOCH_SECONDS = 4102444800L;
+
+    private FieldTypeClassifier() {}
+
+    /**
+     * Returns the type of the value. Null and empty values are strings.
+     */
+    public static FieldType classify(String value) {
+        if (value == null || value.isEmpty()) {
+            return FieldType.STRING;
+        }
+
+        char first = value.charAt(0);
+
+        if (first == '-' || isDigit(first)) {
+            FieldType type = classifyNumber(value);
+            if (type == FieldType.STRING && isDate(value)) {
+                return FieldType.DATE;
+            }
+            return type;
+        }
+
+        if (first == 't' || first == 'T' || first == 'f' || first == 'F') {
+            return isBoolean(value) ? FieldType.BOOLEAN : FieldType.STRING;
+        }
+
+        return FieldType.STRING;
+    }
+
+    /**
+     * Returns true if the value can be written as the given type: integers are
+     * accepted as doubles, and epoch timestamps as longs.
+     */
+    public static boolean isAssignable(String value, FieldType type) {
+        if (value == null) {
+            return false;
+        }
+
+        switch (type) {
+            case STRING:
+                return true;
+            case BOOLEAN:
+                return isBoolean(value);
+            case DATE:
+                return isDate(value);
+            default:
+                FieldType valueType = classifyNumber(value);
+                return valueType != FieldType.STRING && valueType.widen(type) == type;
+        }
+    }
+
+    private static boolean isBoolean(String value) {
+        return "true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Scans the value with the JSON number grammar, returning STRING if it is not
+     * a number.
+     */
+    private static FieldType classifyNumber(String value) {
+        int length = value.length();
+        int i = 0;
+
+        boolean negative = value.charAt(0) == '-';
+        if (negative) {
+            i++;
+        }
+
+        int integerStart = i;
+        while (i < length && isDigit(value.charAt(i))) {
+            i++;
+        }
+
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && value.charAt(integerStart) == '0')) {
+            // leading zeros are not valid in JSON, and usually mark identifiers such as zip codes
+            return FieldType.STRING;
+        }
+
+        if (i == length) {
+            return classifyInteger(value, integerStart, integerDigits, negative);
+        }
+
+        if (value.charAt(i) == '.') {
+            int fractionStart = ++i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == fractionStart) {
+                return FieldType.STRING;
+            }
+        }
+
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) {
+                i++;
+            }
+            int exponentStart = i;
+            while (i < length && isDigit(value.charAt(i))) {
+                i++;
+            }
+            if (i == exponentStart) {
+                return FieldType.STRING;
+            }
+        }
+
+        return i == length ? FieldType.DOUBLE : FieldType.STRING;
+    }
+
+    private static FieldType classifyInteger(String value, int start, int digits, boolean negative) {
+        if (digits > 19) {
+            // too large for a long, such as the ids of log events
+            return FieldType.STRING;
+        }
+
+        if (digits == 19) {
+            String limit = negative ? MIN_LONG_DIGITS : MAX_LONG;
+            for (int i = 0; i < digits; i++) {
+                char c = value.charAt(start + i);
+                if (c != limit.charAt(i)) {
+                    if (c > limit.charAt(i)) {
+                        return FieldType.STRING;
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (!negative && (digits == 10 || digits == 13)) {
+            long seconds = Long.parseLong(value);
+            if (digits == 13) {
+                seconds /= 1000;
+            }
+            if (seconds >= MIN_EPOCH_SECONDS && seconds < MAX_EPOCH_SECONDS) {
+                return FieldType.EPOCH;
+            }
+        }
+
+        return FieldType.LONG;
+    }
+
+    /**
+     * Checks for yyyy-MM-dd, optionally followed by T, HH:mm, optional seconds and
+     * fraction, and an optional Z or numeric zone offset.
+     */
+    private static boolean isDate(String value) {
+        int length = value.length();
+
+        if (length < 10 || !isDigits(value, 0, 4) || value.charAt(4) != '-' || !isNumber(value, 5, 1, 12)
+                || value.charAt(7) != '-' || !isNumber(value, 8, 1, 31)) {
+            return false;
+        }
+        if (length == 10) {
+            return true;
+        }
+
+        if (value.charAt(10) != 'T' || length < 16 || !isNumber(value, 11, 0, 23) || value.charAt(13) != ':'
+                || !isNumber(value, 14, 0, 59)) {
+            return false;
+        }
+
+        int i = 16;
+        if (i < length && value.charAt(i) == ':') {
+            if (i + 3 > length || !isNumber(value, i + 1, 0, 60)) {
+                return false;
+            }
+            i += 3;
+
+            if (i < length && (value.charAt(i) == '.' || value.charAt(i) == ',')) {
+                int fractionStart = ++i;
+                while (i < length && isDigit(value.charAt(i))) {
+                    i++;
+                }
+                if (i == fractionStart) {
+                    return false;
+                }
+            }
+        }
+
+        if (i == length) {
+            return true;
+        }
+
+        char zone = value.charAt(i);
+        if (zone == 'Z') {
+            return i + 1 == length;
+        }
+        if (zone != '+' && zone != '-') {
+            return false;
+        }
+
+        // +HH, +HHmm or +HH:mm
+        int offsetLength = length - i - 1;
+        if (!isNumber(value, i + 1, 0, 23)) {
+            return false;
+        }
+        switch (offsetLength) {
+            case 2:
+                return true;
+            case 4:
+                return isNumber(value, i + 3, 0, 59);
+            case 5:
+                return value.charAt(i + 3) == ':' && isNumber(value, i + 4, 0, 59);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks for a two digit number within the given bounds.
+     */
+    private static boolean isNumber(String value, int offset, int min, int max) {
+        if (offset + 2 > value.length() || !isDigits(value, offset, 2)) {
+            return false;
+        }
+        int number = (value.charAt(offset) - '0') * 10 + (value.charAt(offset + 1) - '0');
+        return number >= min && number <= max;
+    }
+
+    private static boolean isDigits(String value, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses gzip payloads into a buffer that is reused between calls.
+ *
+ * Instances keep a single native Inflater for their whole lifetime and are not
+ * thread-safe; use {@link #get()} to obtain the instance bound to the current
+ * thread.
+ */
+final class GzipDecompressor {
+
+    private static final ThreadLocal<GzipDecompressor> INSTANCES = new ThreadLocal<GzipDecompressor>() {
+        @Override
+        protected GzipDecompressor initialValue() {
+            return new GzipDecompressor();
+        }
+    };
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int MIN_OUTPUT_SIZE = 1024;
+
+    // buffers larger than this are not kept around after an unusually large payload
+    private static final int MAX_RETAINED_SIZE = 4 * 1024 * 1024;
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[MIN_OUTPUT_SIZE];
+    private int length;
+
+    // the gzip data being decompressed, and the position of the next byte to read
+    private byte[] source;
+    private int position;
+    private int end;
+    private int memberStart;
+
+    GzipDecompressor() {}
+
+    /**
+     * Returns the decompressor bound to the calling thread.
+     */
+    static GzipDecompressor get() {
+        return INSTANCES.get();
+    }
+
+    /**
+     * Decompresses the gzip data between the position and the limit of the given
+     * buffer, leaving its position untouched. Heap buffers are read in place;
+     * other buffers are copied once into a reusable input array.
+     *
+     * @return the number of uncompressed bytes available through {@link #getBuffer()}
+     */
+    int decompress(ByteBuffer data) throws IOException {
+        decompressPrefix(data, Integer.MAX_VALUE);
+        return decompressRemaining();
+    }
+
+    /**
+     * Decompresses the gzip data held in the given range of the array.
+     *
+     * @return the number of uncompressed bytes available through {@link #getBuffer()}
+     */
+    int decompress(byte[] in, int offset, int end) throws IOException {
+        decompressPrefix(in, offset, end, Integer.MAX_VALUE);
+        return decompressRemaining();
+    }
+
+    /**
+     * Decompresses the start of the gzip data of the given buffer, stopping
+     * once at least prefixLength bytes are available, so that the beginning of
+     * a payload can be read without inflating all of it. The rest is added to
+     * the same buffer by {@link #decompressRemaining()}, and the checksum is
+     * only verified then.
+     *
+     * @return the number of uncompressed bytes available through {@link #getBuffer()}
+     */
+    int decompressPrefix(ByteBuffer data, int prefixLength) throws IOException {
+        int offset = data.position();
+        int end = data.limit();
+
+        if (data.hasArray()) {
+            return decompressPrefix(data.array(), offset + data.arrayOffset(), end + data.arrayOffset(),
+                    prefixLength);
+        }
+
+        int size = end - offset;
+        if (input.length < size) {
+            input = new byte[size];
+        }
+        ByteBuffer source = data.duplicate();
+        source.get(input, 0, size);
+        return decompressPrefix(input, 0, size, prefixLength);
+    }
+
+    private int decompressPrefix(byte[] in, int offset, int end, int prefixLength) throws IOException {
+        // the ISIZE trailer gives the uncompressed size of the (last) member
+        int expectedSize = end - offset >= HEADER_SIZE + TRAILER_SIZE ? readInt(in, end - 4) : 0;
+        prepareOutput(expectedSize);
+
+        this.source = in;
+        this.position = offset;
+        this.end = end;
+
+        startMember();
+        inflate(prefixLength);
+        return length;
+    }
+
+    /**
+     * Decompresses what the last call to decompressPrefix left, including the
+     * following gzip members.
+     *
+     * @return the number of uncompressed bytes available through {@link #getBuffer()}
+     */
+    int decompressRemaining() throws IOException {
+        try {
+            inflate(Integer.MAX_VALUE);
+            finishMember();
+
+            while (end - position >= HEADER_SIZE + TRAILER_SIZE && readShort(source, position) == GZIP_MAGIC) {
+                startMember();
+                inflate(Integer.MAX_VALUE);
+                finishMember();
+            }
+        } finally {
+            // do not hold on to the payload of the record
+            source = null;
+        }
+
+        return length;
+    }
+
+    /**
+     * Returns the array holding the uncompressed data of the last call. Only the
+     * first {@link #getLength()} bytes are valid, and the contents are overwritten
+     * by the next call.
+     */
+    byte[] getBuffer() {
+        return output;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    private void prepareOutput(int expectedSize) {
+        length = 0;
+
+        if (expectedSize < 0 || expectedSize > MAX_RETAINED_SIZE) {
+            // ISIZE is only a hint (it wraps around at 4 GB), so let the buffer grow instead
+            expectedSize = MAX_RETAINED_SIZE;
+        }
+
+        if (output.length < expectedSize || output.length > MAX_RETAINED_SIZE) {
+            output = new byte[Math.max(expectedSize, MIN_OUTPUT_SIZE)];
+        }
+    }
+
+    /**
+     * Reads the header of the gzip member at the current position.
+     */
+    private void startMember() throws IOException {
+        position = readHeader(source, position, end);
+
+        inflater.reset();
+        inflater.setInput(source, position, end - position);
+        crc.reset();
+        memberStart = length;
+    }
+
+    /**
+     * Inflates the current member until it is finished or the output holds at
+     * least limit bytes.
+     */
+    private void inflate(int limit) throws IOException {
+        try {
+            while (!inflater.finished() && length < limit) {
+                if (length == output.length) {
+                    growOutput();
+                }
+
+                int inflated = inflater.inflate(output, length, Math.min(output.length, limit) - length);
+                if (inflated == 0) {
+                    if (inflater.finished()) {
+                        break;
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Unexpected preset dictionary in gzip data");
+                    }
+                    if (inflater.needsInput()) {
+                        throw new EOFException("Unexpected end of gzip data");
+                    }
+                }
+                crc.update(output, length, inflated);
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid gzip data");
+        }
+    }
+
+    /**
+     * Verifies the trailer of the finished member and moves the position right
+     * after it.
+     */
+    private void finishMember() throws IOException {
+        position = end - inflater.getRemaining();
+        if (end - position < TRAILER_SIZE) {
+            throw new EOFException("Unexpected end of gzip trailer");
+        }
+        if (readInt(source, position) != (int) crc.getValue()) {
+            throw new ZipException("Corrupt gzip trailer (CRC mismatch)");
+        }
+        if (readInt(source, position + 4) != length - memberStart) {
+            throw new ZipException("Corrupt gzip trailer (size mismatch)");
+        }
+
+        position += TRAILER_SIZE;
+    }
+
+    /**
+     * Validates the gzip member header, including its CRC16 when it has one, and
+     * returns the position of the deflate data.
+     */
+    private int readHeader(byte[] in, int position, int end) throws IOException {
+        int start = position;
+        if (end - position < HEADER_SIZE) {
+            throw new EOFException("Unexpected end of gzip header");
+        }
+        if (readShort(in, position) != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if ((in[position + 2] & 0xff) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+
+        int flags = in[position + 3] & 0xff;
+        position += HEADER_SIZE;
+
+        if ((flags & FEXTRA) != 0) {
+            checkAvailable(position, 2, end);
+            position += 2 + readShort(in, position);
+        }
+        if ((flags & FNAME) != 0) {
+            position = skipZeroTerminated(in, position, end);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            position = skipZeroTerminated(in, position, end);
+        }
+        if ((flags & FHCRC) != 0) {
+            checkAvailable(position, 2, end);
+            // the low 16 bits of the CRC32 of the header bytes before it
+            crc.reset();
+            crc.update(in, start, position - start);
+            if (readShort(in, position) != ((int) crc.getValue() & 0xffff)) {
+                throw new ZipException("Corrupt gzip header (CRC mismatch)");
+            }
+            position += 2;
+        }
+
+        checkAvailable(position, 0, end);
+        return position;
+    }
+
+    private static int skipZeroTerminated(byte[] in, int position, int end) throws IOException {
+        while (position < end) {
+            if (in[position++] == 0) {
+                return position;
+            }
+        }
+        throw new EOFException("Unexpected end of gzip header");
+    }
+
+    private static void checkAvailable(int position, int count, int end) throws IOException {
+        if (position + count > end) {
+            throw new EOFException("Unexpected end of gzip header");
+        }
+    }
+
+    private void growOutput() {
+        byte[] grown = new byte[output.length * 2];
+        System.arraycopy(output, 0, grown, 0, length);
+        output = grown;
+    }
+
+    private static int readShort(byte[] in, int position) {
+        return (in[position] & 0xff) | ((in[position + 1] & 0xff) << 8);
+    }
+
+    private static int readInt(byte[] in, int position) {
+        return readShort(in, position) | (readShort(in, position + 2) << 16);
+    }
+}
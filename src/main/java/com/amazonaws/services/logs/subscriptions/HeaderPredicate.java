@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+/**
+ * A condition on the attributes common to all the log events of a record,
+ * which is tested before the log events are decoded. Implementations must be
+ * safe to call from several threads.
+ */
+public interface HeaderPredicate {
+
+    /**
+     * Returns whether the log events of a record with the given header should
+     * be decoded.
+     */
+    boolean test(String messageType, String owner, String logGroup, String logStream);
+}
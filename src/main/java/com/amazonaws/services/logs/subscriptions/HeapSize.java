@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Rough sizes of objects on a 64-bit JVM with compressed references, used to
+ * estimate how much heap buffered log events take.
+ */
+final class HeapSize {
+
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+
+    // a String object with its hash and the header of its char[]
+    private static final int STRING = 24 + ARRAY_HEADER;
+
+    private HeapSize() {
+    }
+
+    /**
+     * Returns the size of a String and its characters, or 0 for null.
+     */
+    static long of(String value) {
+        return value == null ? 0 : align(STRING + 2L * value.length());
+    }
+
+    /**
+     * Returns the size of an array of references, without the referenced
+     * objects, or 0 for null.
+     */
+    static long of(Object[] array) {
+        return array == null ? 0 : align(ARRAY_HEADER + (long) REFERENCE * array.length);
+    }
+
+    /**
+     * Returns the size of the Strings of an array, without the array itself.
+     */
+    static long ofElements(String[] array) {
+        long size = 0;
+        if (array != null) {
+            for (String value : array) {
+                size += of(value);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the size of an instance of the class, without the objects it
+     * references, counting the fields declared by the class and by its
+     * superclasses.
+     */
+    static long shallowSizeOf(Class<?> type) {
+        long size = OBJECT_HEADER;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    size += sizeOf(field.getType());
+                }
+            }
+        }
+        return align(size);
+    }
+
+    private static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Receives the log events of a subscription payload while it is being parsed.
+ *
+ * The id and message callbacks are invoked with the parser positioned on the
+ * scalar value, which is only valid until the parser moves on.
+ */
+abstract class LogEventHandler {
+
+    /**
+     * Called before parsing starts with the size of the uncompressed payload.
+     */
+    void start(int payloadLength) {
+    }
+
+    abstract void startLogEvent();
+
+    abstract void id(JsonParser parser) throws IOException;
+
+    abstract void timestamp(long timestamp);
+
+    abstract void message(JsonParser parser) throws IOException;
+
+    abstract void extractedFields(String[] names, String[] values);
+
+    /**
+     * Called at the end of each element of logEvents. The common attributes are
+     * null if the payload has not provided them yet.
+     */
+    abstract void endLogEvent(String owner, String logGroup, String logStream);
+
+    /**
+     * Called once the whole payload has been read.
+     */
+    abstract void end(String owner, String logGroup, String logStream);
+}
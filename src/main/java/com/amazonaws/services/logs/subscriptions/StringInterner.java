@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free cache of canonical String instances, looked up directly
+ * from the parser's character buffer so that no String is created for values
+ * that have been seen before.
+ *
+ * The cache is two-way set associative: each hash maps to a pair of slots, hits
+ * are moved to the first slot of the pair and misses evict the least recently
+ * used one. Concurrent updates may occasionally lose an entry, which only costs
+ * a later cache miss.
+ */
+final class StringInterner {
+
+    // longer values are unlikely to repeat and are not worth keeping
+    static final int MAX_LENGTH = 512;
+
+    private final AtomicReferenceArray<String> entries;
+    private final int mask;
+
+    /**
+     * @param capacity The maximum number of cached strings, rounded up to a power of two.
+     */
+    StringInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 2;
+    }
+
+    /**
+     * Returns the canonical String made of the given characters.
+     */
+    String intern(char[] chars, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(chars, offset, length);
+        }
+
+        int hash = hash(chars, offset, length);
+        int first = (hash ^ (hash >>> 16)) & mask;
+
+        String candidate = entries.get(first);
+        if (matches(candidate, hash, chars, offset, length)) {
+            return candidate;
+        }
+
+        String other = entries.get(first + 1);
+        if (matches(other, hash, chars, offset, length)) {
+            // promote the hit so that the other entry is evicted first
+            entries.lazySet(first + 1, candidate);
+            entries.lazySet(first, other);
+            return other;
+        }
+
+        String value = new String(chars, offset, length);
+        entries.lazySet(first + 1, candidate);
+        entries.lazySet(first, value);
+        return value;
+    }
+
+    private static boolean matches(String candidate, int hash, char[] chars, int offset, int length) {
+        // String caches its hash code, so this rejects most mismatches without comparing characters
+        if (candidate == null || candidate.length() != length || candidate.hashCode() != hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same function as String.hashCode().
+     */
+    private static int hash(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+}
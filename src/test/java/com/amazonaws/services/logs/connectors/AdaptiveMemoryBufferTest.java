@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+
+public class AdaptiveMemoryBufferTest {
+
+    @Test
+    public void growWhileEmitsAreFast() {
+        AdaptiveMemoryBuffer<String> classUnderTest = createBuffer();
+        assertEquals(100, classUnderTest.getNumRecordsToBuffer());
+        assertEquals(10000, classUnderTest.getBytesToBuffer());
+
+        classUnderTest.recordEmit(100, 0, 0, 100);
+        assertEquals(130, classUnderTest.getNumRecordsToBuffer());
+        assertEquals(13000, classUnderTest.getBytesToBuffer());
+
+        // buffers flushed well before the limit do not grow it
+        classUnderTest.recordEmit(10, 0, 100, 200);
+        assertEquals(130, classUnderTest.getNumRecordsToBuffer());
+
+        for (int i = 0; i < 100; i++) {
+            classUnderTest.recordEmit(1000, 0, 0, 100);
+        }
+        assertEquals(1000, classUnderTest.getNumRecordsToBuffer());
+    }
+
+    @Test
+    public void shrinkOnSlowOrFailedEmits() {
+        AdaptiveMemoryBuffer<String> classUnderTest = createBuffer();
+
+        classUnderTest.recordEmit(100, 0, 0, 2000);
+        assertEquals(50, classUnderTest.getNumRecordsToBuffer());
+
+        // emits in flight with the earlier limit are not counted twice
+        classUnderTest.recordEmit(100, 0, 1000, 3000);
+        assertEquals(50, classUnderTest.getNumRecordsToBuffer());
+
+        classUnderTest.recordEmit(50, 1, 2500, 2600);
+        assertEquals(25, classUnderTest.getNumRecordsToBuffer());
+
+        // down to the lower bound
+        classUnderTest.recordEmit(25, 25, 3000, 3100);
+        classUnderTest.recordEmit(12, 12, 3200, 3300);
+        assertEquals(10, classUnderTest.getNumRecordsToBuffer());
+    }
+
+    @Test
+    public void flushOnAdaptedLimit() {
+        AdaptiveMemoryBuffer<String> classUnderTest = createBuffer();
+        classUnderTest.recordEmit(100, 0, 0, 2000);
+
+        for (int i = 0; i < 49; i++) {
+            classUnderTest.consumeRecord("record", 10, String.valueOf(i));
+        }
+        assertFalse(classUnderTest.shouldFlush());
+
+        classUnderTest.consumeRecord("record", 10, "49");
+        assertTrue(classUnderTest.shouldFlush());
+        assertEquals("0", classUnderTest.getFirstSequenceNumber());
+        assertEquals("49", classUnderTest.getLastSequenceNumber());
+
+        classUnderTest.clear();
+        assertFalse(classUnderTest.shouldFlush());
+    }
+
+    private static AdaptiveMemoryBuffer<String> createBuffer() {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "100");
+        properties.setProperty("bufferByteSizeLimit", "10000");
+        properties.setProperty("bufferMillisecondsLimit", "60000");
+        properties.setProperty("adaptiveBufferMinRecordCount", "10");
+        properties.setProperty("adaptiveBufferMaxRecordCount", "1000");
+        properties.setProperty("adaptiveBufferTargetLatency", "1000");
+
+        return new AdaptiveMemoryBuffer<>(new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain()));
+    }
+}
@@ -0,0 +1,448 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.kinesis.clientlibrary.interfaces.IRecordProcessorCheckpointer;
+import com.amazonaws.services.kinesis.clientlibrary.lib.worker.ShutdownReason;
+import com.amazonaws.services.kinesis.connectors.UnmodifiableBuffer;
+import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
+import com.amazonaws.services.kinesis.connectors.impl.BasicMemoryBuffer;
+import com.amazonaws.services.kinesis.connectors.interfaces.IEmitter;
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.connectors.filter.PredicateFilter;
+import com.amazonaws.services.logs.connectors.metrics.Gauge;
+import com.amazonaws.services.logs.connectors.metrics.MetricName;
+import com.amazonaws.services.logs.connectors.metrics.MetricsRegistry;
+import com.amazonaws.services.logs.connectors.s3.S3PartitionedBuffer;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsSubscriptionTransformer;
+import com.amazonaws.services.logs.subscriptions.util.TestUtils;
+
+public class CloudWatchLogsRecordProcessorTest {
+
+    private static final String[] FILES = { "/access-log-example.json", "/aws-cloudtrail-log-example.json",
+            "/control-message-example.json", "/aws-lambda-log-example.json", "/invalid-json-example.json",
+            "/access-log-example.json" };
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void parallelTransformKeepsOrder() throws IOException {
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < FILES.length; i++) {
+            records.add(new Record().withData(ByteBuffer.wrap(TestUtils.getCompressedTestFile(FILES[i])))
+                    .withSequenceNumber(String.valueOf(i)));
+        }
+
+        RecordingCheckpointer sequentialCheckpointer = new RecordingCheckpointer();
+        List<String> sequential = process(records, null, sequentialCheckpointer);
+
+        RecordingCheckpointer parallelCheckpointer = new RecordingCheckpointer();
+        List<String> parallel = process(records, pool, parallelCheckpointer);
+
+        assertEquals("49545295115971876468408574808414755329919666212443258898 Apache/access.log", parallel.get(0));
+        assertEquals(sequential.get(0), parallel.get(parallel.size() - 2));
+        assertEquals(sequential, parallel);
+        assertEquals(Collections.singletonList("5"), sequentialCheckpointer.checkpoints);
+        assertEquals(sequentialCheckpointer.checkpoints, parallelCheckpointer.checkpoints);
+
+        // every buffered log event has been emitted
+        assertEquals(0, BufferMetrics.getInstance().getBufferedRecords());
+        assertEquals(0, BufferMetrics.getInstance().getEstimatedHeapSize());
+    }
+
+    @Test
+    public void recordMetrics() throws IOException {
+        long arrivalTime = System.currentTimeMillis() - 60000;
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < FILES.length; i++) {
+            records.add(new Record().withData(ByteBuffer.wrap(TestUtils.getCompressedTestFile(FILES[i])))
+                    .withSequenceNumber(String.valueOf(i)).withApproximateArrivalTimestamp(new Date(arrivalTime)));
+        }
+
+        MetricsRegistry registry = MetricsRegistry.getDefault();
+        long logEvents = registry.meter("log_events_total").getCount();
+        long accessLogEvents = registry.counter("log_group_events_total", "logGroup", "Apache/access.log").get();
+        long parses = registry.histogram("stage_duration_microseconds", "stage", "parse").getSnapshot().getCount();
+        long emits = registry.histogram("stage_duration_microseconds", "stage", "emit").getSnapshot().getCount();
+
+        List<String> emitted = process(records, null, new RecordingCheckpointer());
+
+        assertEquals(logEvents + emitted.size(), registry.meter("log_events_total").getCount());
+        assertEquals(accessLogEvents + 4,
+                registry.counter("log_group_events_total", "logGroup", "Apache/access.log").get());
+        // the control message is skipped by its header, and the invalid JSON fails to parse
+        assertEquals(parses + FILES.length - 2,
+                registry.histogram("stage_duration_microseconds", "stage", "parse").getSnapshot().getCount());
+        assertEquals(emits + 1,
+                registry.histogram("stage_duration_microseconds", "stage", "emit").getSnapshot().getCount());
+
+        Gauge checkpointLag = (Gauge) registry.getMetrics().get(
+                new MetricName("checkpoint_lag_milliseconds", "shardId", "shardId-000000000000"));
+        assertTrue(checkpointLag.getValue() >= 60000);
+    }
+
+    @Test
+    public void asyncEmitCheckpointsAfterEarlierBuffers() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1");
+        properties.setProperty("backoffInterval", "0");
+        properties.setProperty("retryLimit", "2");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+
+        RecordingAsyncEmitter emitter = new RecordingAsyncEmitter();
+        RecordingCheckpointer checkpointer = new RecordingCheckpointer();
+        CloudWatchLogsRecordProcessor<String> classUnderTest = new CloudWatchLogsRecordProcessor<>(
+                new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration), new AllPassFilter<CloudWatchLogsEvent>(),
+                emitter, new CloudWatchLogsSubscriptionTransformer<String>() {
+
+                    @Override
+                    public String fromClass(CloudWatchLogsEvent record) throws IOException {
+                        return record.getId();
+                    }
+
+                }, configuration, null);
+        classUnderTest.initialize("shardId-000000000000");
+
+        List<Record> noRecords = Collections.emptyList();
+        for (int i = 0; i < 3; i++) {
+            classUnderTest.processRecords(Collections.singletonList(new Record().withData(ByteBuffer.wrap(TestUtils
+                    .getCompressedTestFile("/access-log-example.json"))).withSequenceNumber(String.valueOf(i))),
+                    checkpointer);
+        }
+        assertEquals(3, emitter.callbacks.size());
+
+        // a later buffer is acknowledged first
+        emitter.complete(1, false);
+        classUnderTest.processRecords(noRecords, checkpointer);
+        assertEquals(Collections.emptyList(), checkpointer.checkpoints);
+
+        // the first buffer is retried, then acknowledged
+        emitter.complete(0, true);
+        classUnderTest.processRecords(noRecords, checkpointer);
+        assertEquals(4, emitter.callbacks.size());
+        emitter.complete(3, false);
+        classUnderTest.processRecords(noRecords, checkpointer);
+        assertEquals(Collections.singletonList("1"), checkpointer.checkpoints);
+
+        // the last buffer runs out of retries
+        emitter.complete(2, true);
+        classUnderTest.processRecords(noRecords, checkpointer);
+        emitter.complete(4, true);
+        classUnderTest.shutdown(checkpointer, ShutdownReason.TERMINATE);
+
+        assertEquals(emitter.sent.get(2), emitter.failed);
+        assertEquals("2", checkpointer.checkpoints.get(1));
+    }
+
+    @Test
+    public void emitEachPartition() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1000");
+        properties.setProperty("s3MaxOpenPartitions", "1");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+
+        final Map<String, List<String>> emitted = new LinkedHashMap<>();
+        RecordingCheckpointer checkpointer = new RecordingCheckpointer();
+        CloudWatchLogsRecordProcessor<String> classUnderTest = new CloudWatchLogsRecordProcessor<>(
+                new S3PartitionedBuffer(configuration), new AllPassFilter<CloudWatchLogsEvent>(),
+                new IPartitionedEmitter<String>() {
+
+                    @Override
+                    public List<String> emit(String partition, UnmodifiableBuffer<String> buffer) {
+                        emitted.put(partition, buffer.getRecords());
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public List<String> emit(UnmodifiableBuffer<String> buffer) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public void fail(List<String> records) {}
+
+                    @Override
+                    public void shutdown() {}
+
+                }, new CloudWatchLogsSubscriptionTransformer<String>() {
+
+                    @Override
+                    public String fromClass(CloudWatchLogsEvent record) throws IOException {
+                        return record.getId();
+                    }
+
+                }, configuration, null);
+        classUnderTest.initialize("shardId-000000000000");
+
+        classUnderTest.processRecords(Collections.singletonList(new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/access-log-example.json"))).withSequenceNumber("7")), checkpointer);
+
+        assertEquals(Collections.singleton("logGroup=Apache%2Faccess.log/dt=2015-01-13/hour=02/"), emitted.keySet());
+        assertEquals(Collections.singletonList("7"), checkpointer.checkpoints);
+    }
+
+    @Test
+    public void replayEventsDroppedByZombieShutdown() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1000");
+        properties.setProperty("deduplicate", "true");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+        IFilter<CloudWatchLogsEvent> filter = PredicateFilter.create(configuration);
+        List<Record> records = Collections.singletonList(new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/access-log-example.json"))).withSequenceNumber("12"));
+
+        // the lease is lost before the buffer is emitted
+        List<String> emitted = new ArrayList<>();
+        CloudWatchLogsRecordProcessor<String> zombie = createSink(configuration, filter, emitted);
+        zombie.initialize("shardId-000000000000");
+        zombie.processRecords(records, new RecordingCheckpointer());
+        zombie.shutdown(new RecordingCheckpointer(), ShutdownReason.ZOMBIE);
+        assertEquals(0, emitted.size());
+
+        // the worker takes the lease back and reads the records again from the last checkpoint
+        RecordingCheckpointer checkpointer = new RecordingCheckpointer();
+        CloudWatchLogsRecordProcessor<String> replay = createSink(configuration, filter, emitted);
+        replay.initialize("shardId-000000000000");
+        replay.processRecords(records, checkpointer);
+        replay.shutdown(checkpointer, ShutdownReason.TERMINATE);
+        assertEquals(2, emitted.size());
+        assertEquals("12", checkpointer.checkpoints.get(0));
+
+        // once emitted and checkpointed, the log events are duplicates
+        emitted.clear();
+        CloudWatchLogsRecordProcessor<String> duplicate = createSink(configuration, filter, emitted);
+        duplicate.initialize("shardId-000000000000");
+        duplicate.processRecords(records, new RecordingCheckpointer());
+        duplicate.shutdown(new RecordingCheckpointer(), ShutdownReason.TERMINATE);
+        assertEquals(0, emitted.size());
+    }
+
+    @Test
+    public void fanOutCheckpointsOnceEverySinkHasEmitted() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1");
+        properties.setProperty("slow.bufferRecordCountLimit", "1000");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+
+        List<String> fastEmitted = new ArrayList<>();
+        List<String> slowEmitted = new ArrayList<>();
+        List<CloudWatchLogsRecordProcessor<?>> sinks = new ArrayList<>();
+        sinks.add(createSink(configuration, new AllPassFilter<CloudWatchLogsEvent>(), fastEmitted));
+        sinks.add(createSink(configuration.withOverrides("slow."), new AllPassFilter<CloudWatchLogsEvent>(),
+                slowEmitted));
+
+        RecordingCheckpointer checkpointer = new RecordingCheckpointer();
+        FanOutRecordProcessor classUnderTest = new FanOutRecordProcessor(sinks);
+        classUnderTest.initialize("shardId-000000000000");
+
+        for (int i = 1; i <= 3; i++) {
+            classUnderTest.processRecords(Collections.singletonList(new Record().withData(ByteBuffer.wrap(TestUtils
+                    .getCompressedTestFile("/access-log-example.json"))).withSequenceNumber(String.valueOf(i))),
+                    checkpointer);
+        }
+
+        // the second sink still holds the log events of every record
+        assertEquals(6, fastEmitted.size());
+        assertEquals(0, slowEmitted.size());
+        assertEquals(Collections.emptyList(), checkpointer.checkpoints);
+
+        classUnderTest.shutdown(checkpointer, ShutdownReason.TERMINATE);
+        assertEquals(fastEmitted, slowEmitted);
+        assertEquals(Collections.singletonList(null), checkpointer.checkpoints);
+    }
+
+    @Test
+    public void fanOutCheckpointsRecordsFilteredOutBySinks() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+
+        List<CloudWatchLogsRecordProcessor<?>> sinks = new ArrayList<>();
+        sinks.add(createSink(configuration, new AllPassFilter<CloudWatchLogsEvent>(), new ArrayList<String>()));
+        sinks.add(createSink(configuration, new IFilter<CloudWatchLogsEvent>() {
+
+            @Override
+            public boolean keepRecord(CloudWatchLogsEvent record) {
+                return false;
+            }
+
+        }, new ArrayList<String>()));
+
+        RecordingCheckpointer checkpointer = new RecordingCheckpointer();
+        FanOutRecordProcessor classUnderTest = new FanOutRecordProcessor(sinks);
+        classUnderTest.initialize("shardId-000000000000");
+
+        classUnderTest.processRecords(Collections.singletonList(new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/access-log-example.json"))).withSequenceNumber("12")), checkpointer);
+        classUnderTest.processRecords(Collections.<Record> emptyList(), checkpointer);
+
+        assertEquals(Collections.singletonList("12"), checkpointer.checkpoints);
+    }
+
+    private static CloudWatchLogsRecordProcessor<String> createSink(CloudWatchLogsConnectorConfiguration configuration,
+            IFilter<CloudWatchLogsEvent> filter, final List<String> emitted) {
+        return new CloudWatchLogsRecordProcessor<>(new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration), filter,
+                new IEmitter<String>() {
+
+                    @Override
+                    public List<String> emit(UnmodifiableBuffer<String> buffer) throws IOException {
+                        emitted.addAll(buffer.getRecords());
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public void fail(List<String> records) {}
+
+                    @Override
+                    public void shutdown() {}
+
+                }, new CloudWatchLogsSubscriptionTransformer<String>() {
+
+                    @Override
+                    public String fromClass(CloudWatchLogsEvent record) throws IOException {
+                        return record.getId();
+                    }
+
+                }, configuration, null);
+    }
+
+    private static List<String> process(List<Record> records, ForkJoinPool pool,
+            IRecordProcessorCheckpointer checkpointer) {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "1");
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain());
+
+        final List<String> emitted = new ArrayList<>();
+        CloudWatchLogsRecordProcessor<String> classUnderTest = new CloudWatchLogsRecordProcessor<>(
+                new BasicMemoryBuffer<CloudWatchLogsEvent>(configuration), new AllPassFilter<CloudWatchLogsEvent>(),
+                new IEmitter<String>() {
+
+                    @Override
+                    public List<String> emit(UnmodifiableBuffer<String> buffer) throws IOException {
+                        emitted.addAll(buffer.getRecords());
+                        return Collections.emptyList();
+                    }
+
+                    @Override
+                    public void fail(List<String> records) {}
+
+                    @Override
+                    public void shutdown() {}
+
+                }, new CloudWatchLogsSubscriptionTransformer<String>() {
+
+                    @Override
+                    public String fromClass(CloudWatchLogsEvent record) throws IOException {
+                        return record.getId() + " " + record.getLogGroup();
+                    }
+
+                }, configuration, pool);
+
+        classUnderTest.initialize("shardId-000000000000");
+        classUnderTest.processRecords(records, checkpointer);
+
+        return emitted;
+    }
+
+    private static class RecordingAsyncEmitter implements IAsyncEmitter<String> {
+
+        private final List<List<String>> sent = new ArrayList<>();
+        private final List<Callback<String>> callbacks = new ArrayList<>();
+        private final List<String> failed = new ArrayList<>();
+
+        void complete(int emit, boolean failure) {
+            callbacks.get(emit).onComplete(failure ? sent.get(emit) : Collections.<String> emptyList());
+        }
+
+        @Override
+        public void emitAsync(List<String> records, Callback<String> callback) {
+            if (records.isEmpty()) {
+                callback.onComplete(records);
+                return;
+            }
+            sent.add(new ArrayList<>(records));
+            callbacks.add(callback);
+        }
+
+        @Override
+        public List<String> emit(UnmodifiableBuffer<String> buffer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void fail(List<String> records) {
+            failed.addAll(records);
+        }
+
+        @Override
+        public void shutdown() {}
+    }
+
+    private static class RecordingCheckpointer implements IRecordProcessorCheckpointer {
+
+        private final List<String> checkpoints = new ArrayList<>();
+
+        @Override
+        public void checkpoint() {
+            checkpoints.add(null);
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber) {
+            checkpoints.add(sequenceNumber);
+        }
+
+        @Override
+        public void checkpoint(String sequenceNumber, long subSequenceNumber) {
+            checkpoints.add(sequenceNumber);
+        }
+
+        @Override
+        public void checkpoint(Record record) {
+            checkpoints.add(record.getSequenceNumber());
+        }
+    }
+}
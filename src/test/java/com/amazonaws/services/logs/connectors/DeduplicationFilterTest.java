@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+public class DeduplicationFilterTest {
+
+    private static final BigInteger FIRST_ID =
+            new BigInteger("31953106606966983378809025079804211143289615424298221568");
+
+    @Test
+    public void dropEventsSeenBefore() {
+        DeduplicationFilter classUnderTest = new DeduplicationFilter(1000, 0.001, 60000);
+
+        assertTrue(classUnderTest.keepRecord(createEvent(FIRST_ID.toString())));
+        // events are only remembered once checkpointed
+        assertTrue(classUnderTest.keepRecord(createEvent(FIRST_ID.toString())));
+
+        classUnderTest.onCheckpoint(Collections.singletonList(FIRST_ID.toString()));
+        assertTrue(classUnderTest.keepRecord(createEvent(FIRST_ID.add(BigInteger.ONE).toString())));
+        assertFalse(classUnderTest.keepRecord(createEvent(FIRST_ID.toString())));
+
+        // events without an id cannot be told apart
+        assertTrue(classUnderTest.keepRecord(createEvent(null)));
+        assertTrue(classUnderTest.keepRecord(createEvent(null)));
+    }
+
+    @Test
+    public void keepFewNewEvents() {
+        RotatingBloomFilter classUnderTest = new RotatingBloomFilter(10000, 0.001, 60000);
+
+        // consecutive ids only differ in their last digits
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (!classUnderTest.add(FIRST_ID.add(BigInteger.valueOf(i)).toString())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 50);
+
+        for (int i = 0; i < 10000; i += 100) {
+            assertFalse(classUnderTest.add(FIRST_ID.add(BigInteger.valueOf(i)).toString()));
+        }
+    }
+
+    @Test
+    public void rememberIdsForOneMoreGeneration() {
+        RotatingBloomFilter classUnderTest = new RotatingBloomFilter(100, 0.001, 60000);
+
+        assertTrue(classUnderTest.add("first"));
+
+        // filling the current filter starts a new one, which still sees the ids of the previous one
+        for (int i = 0; i < 100; i++) {
+            classUnderTest.add("id-" + i);
+        }
+        assertFalse(classUnderTest.add("first"));
+
+        // the id was added again, so it outlives the next rotation
+        for (int i = 100; i < 300; i++) {
+            classUnderTest.add("id-" + i);
+        }
+        assertTrue(classUnderTest.add("id-0"));
+    }
+
+    private static CloudWatchLogsEvent createEvent(String id) {
+        return new BasicCloudWatchLogsEvent(id, 1421116133213L, "message", null, "123456789012", "Apache/access.log",
+                "i-c3f9bec9");
+    }
+}
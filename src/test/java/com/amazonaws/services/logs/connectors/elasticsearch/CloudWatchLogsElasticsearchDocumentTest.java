@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CloudWatchLogsElasticsearchDocumentTest {
+
+    private static final ObjectMapper JSON_OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void writeEventAttributesFirst() throws IOException {
+        CloudWatchLogsEvent event = new BasicCloudWatchLogsEvent("id-1", 1421116133213L,
+                "Received: { \"@id\": \"other\", \"key\": [ 1, { \"nested\": true } ] } trailing text", null,
+                "123456789012", "Apache/access.log", "i-c3f9bec9");
+
+        JsonNode sourceNode = JSON_OBJECT_MAPPER.readTree(new CloudWatchLogsElasticsearchDocument(event)
+                .getSourceBytes());
+
+        Iterator<String> fieldNames = sourceNode.fieldNames();
+        assertEquals("@id", fieldNames.next());
+        assertEquals("@timestamp", fieldNames.next());
+
+        // the event id wins over a field of the same name in the message
+        assertEquals("id-1", sourceNode.get("@id").asText());
+        assertEquals(7, sourceNode.size());
+        assertTrue(sourceNode.get("key").get(1).get("nested").asBoolean());
+    }
+
+    @Test
+    public void writeExtractedFields() throws IOException {
+        CloudWatchLogsEvent event = new BasicCloudWatchLogsEvent("id-1", 1421116133213L, null, new String[] { "status",
+                "size", "bytes", "event", "missing" }, new String[] { "200", "12345678901", "café",
+                "data: { \"key\": \"value\" }", null }, "123456789012", "Apache/access.log", "i-c3f9bec9");
+
+        CloudWatchLogsElasticsearchDocument document = new CloudWatchLogsElasticsearchDocument(event);
+        JsonNode sourceNode = JSON_OBJECT_MAPPER.readTree(document.getSourceBytes());
+
+        assertFalse(sourceNode.has("@message"));
+        assertFalse(sourceNode.has("missing"));
+        assertTrue(sourceNode.get("status").isIntegralNumber());
+        assertEquals(200, sourceNode.get("status").asLong());
+        assertEquals(12345678901L, sourceNode.get("size").asLong());
+        assertEquals("café", sourceNode.get("bytes").asText());
+        assertEquals("value", sourceNode.get("$event").get("key").asText());
+        assertEquals("data: { \"key\": \"value\" }", sourceNode.get("event").asText());
+
+        assertEquals(document.getSource(), new String(document.getSourceBytes(), "UTF-8"));
+    }
+
+    @Test
+    public void spliceJsonMessage() throws IOException {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append("\uD83D\uDE00");
+        }
+
+        CloudWatchLogsEvent event = new BasicCloudWatchLogsEvent("id-1", 1421116133213L, "{ \"a\": \"" + value
+                + "\", \"b\": { \"c\": [ 1, 2 ] } }", null, "123456789012", "Apache/access.log", "i-c3f9bec9");
+
+        JsonNode sourceNode = JSON_OBJECT_MAPPER.readTree(new CloudWatchLogsElasticsearchDocument(event)
+                .getSourceBytes());
+
+        assertEquals(value.toString(), sourceNode.get("a").asText());
+        assertEquals(2, sourceNode.get("b").get("c").get(1).asInt());
+        assertEquals(event.getMessage(), sourceNode.get("@message").asText());
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.transport.NoNodeAvailableException;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.IAsyncEmitter;
+
+public class CloudWatchLogsElasticsearchEmitterTest {
+
+    private File folder;
+    private Semaphore inFlightRequests;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("cwl-emitter-test").toFile();
+        inFlightRequests = new Semaphore(2);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : folder.listFiles()) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void retryThrottledDocuments() throws Exception {
+        ScriptedEmitter classUnderTest = createEmitter(new ElasticsearchRetryPolicy(5, 1, 1, 20, 10));
+        classUnderTest.respond("id-2", RestStatus.TOO_MANY_REQUESTS, RestStatus.TOO_MANY_REQUESTS);
+        classUnderTest.respond("id-3", RestStatus.BAD_REQUEST);
+
+        RecordingCallback callback = new RecordingCallback();
+        classUnderTest.emitAsync(documents("id-1", "id-2", "id-3"), callback);
+
+        assertEquals(Collections.emptyList(), callback.await());
+        assertEquals(Arrays.asList(Arrays.asList("id-1", "id-2", "id-3"), Arrays.asList("id-2"),
+                Arrays.asList("id-2")), classUnderTest.bulkRequests);
+        assertEquals(Arrays.asList("id-3"), spilledIds());
+        assertEquals(2, inFlightRequests.availablePermits());
+        classUnderTest.shutdown();
+    }
+
+    @Test
+    public void spillDocumentsOutOfRetries() throws Exception {
+        ScriptedEmitter classUnderTest = createEmitter(new ElasticsearchRetryPolicy(1, 1, 1, 20, 10));
+        classUnderTest.respond("id-1", RestStatus.TOO_MANY_REQUESTS, RestStatus.TOO_MANY_REQUESTS);
+        classUnderTest.respond("id-2", RestStatus.TOO_MANY_REQUESTS, RestStatus.TOO_MANY_REQUESTS);
+        // the health check is best effort
+        classUnderTest.failClusterStatus = true;
+
+        RecordingCallback callback = new RecordingCallback();
+        classUnderTest.emitAsync(documents("id-1", "id-2"), callback);
+
+        assertEquals(Collections.emptyList(), callback.await());
+        assertEquals(Arrays.asList(Arrays.asList("id-1", "id-2"), Arrays.asList("id-1", "id-2")),
+                classUnderTest.bulkRequests);
+        assertEquals(Arrays.asList("id-1", "id-2"), spilledIds());
+        // the cluster health is queried once the bulk request is complete
+        assertTrue(classUnderTest.clusterStatusRequested.await(10, TimeUnit.SECONDS));
+        assertEquals(2, inFlightRequests.availablePermits());
+        classUnderTest.shutdown();
+    }
+
+    @Test
+    public void retryFailedBulkRequests() throws Exception {
+        ScriptedEmitter classUnderTest = createEmitter(new ElasticsearchRetryPolicy(2, 1, 1, 20, 10));
+        classUnderTest.failedBulkRequests = 1;
+
+        RecordingCallback callback = new RecordingCallback();
+        classUnderTest.emitAsync(documents("id-1", "id-2"), callback);
+
+        assertEquals(Collections.emptyList(), callback.await());
+        assertEquals(Arrays.asList(Arrays.asList("id-1", "id-2"), Arrays.asList("id-1", "id-2")),
+                classUnderTest.bulkRequests);
+        assertEquals(Collections.emptyList(), spilledIds());
+        assertEquals(2, inFlightRequests.availablePermits());
+        classUnderTest.shutdown();
+    }
+
+    @Test
+    public void spillFailedBulkRequestsOutOfRetries() throws Exception {
+        ScriptedEmitter classUnderTest = createEmitter(new ElasticsearchRetryPolicy(2, 1, 1, 20, 10));
+        classUnderTest.failedBulkRequests = Integer.MAX_VALUE;
+
+        RecordingCallback callback = new RecordingCallback();
+        classUnderTest.emitAsync(documents("id-1", "id-2"), callback);
+
+        // the first attempt and two retries, after which the permit is released
+        assertEquals(Collections.emptyList(), callback.await());
+        assertEquals(3, classUnderTest.bulkRequests.size());
+        assertEquals(Arrays.asList("id-1", "id-2"), spilledIds());
+        assertEquals(2, inFlightRequests.availablePermits());
+        classUnderTest.shutdown();
+    }
+
+    @Test
+    public void failPendingRetriesOnShutdown() throws Exception {
+        ElasticsearchRetryPolicy retryPolicy = new ElasticsearchRetryPolicy(5, 60000, 60000, 0, 10);
+        ScriptedEmitter classUnderTest = createEmitter(retryPolicy);
+        classUnderTest.respond("id-2", RestStatus.TOO_MANY_REQUESTS);
+
+        RecordingCallback callback = new RecordingCallback();
+        List<ElasticsearchObject> records = documents("id-1", "id-2");
+        classUnderTest.emitAsync(records, callback);
+
+        // the retry waits for its backoff, keeping its permit
+        assertEquals(1, callback.latch.getCount());
+        assertEquals(1, inFlightRequests.availablePermits());
+
+        classUnderTest.shutdown();
+
+        assertEquals(Arrays.asList(records.get(1)), callback.await());
+        assertEquals(2, inFlightRequests.availablePermits());
+        assertEquals(10, retryPolicy.acquireRetries(100));
+        assertEquals(0, folder.list().length);
+    }
+
+    private ScriptedEmitter createEmitter(ElasticsearchRetryPolicy retryPolicy) {
+        CloudWatchLogsConnectorConfiguration configuration = new CloudWatchLogsConnectorConfiguration(
+                new Properties(), new DefaultAWSCredentialsProviderChain());
+        return new ScriptedEmitter(configuration, inFlightRequests, retryPolicy,
+                new ElasticsearchSpillFile(folder, 1024 * 1024));
+    }
+
+    private List<String> spilledIds() throws IOException {
+        List<String> ids = new ArrayList<>();
+        for (File file : folder.listFiles()) {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("{\"index\"")) {
+                    ids.add(line.replaceAll(".*\"_id\":\"([^\"]*)\".*", "$1"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static List<ElasticsearchObject> documents(String... ids) {
+        List<ElasticsearchObject> documents = new ArrayList<>();
+        for (String id : ids) {
+            documents.add(new ElasticsearchObject("cwl-2015.01.13", "Apache/access.log", id, "{}"));
+        }
+        return documents;
+    }
+
+    /**
+     * Answers bulk requests with the statuses set for each document, one for
+     * each attempt, and indexes the document once they run out.
+     */
+    private static final class ScriptedEmitter extends CloudWatchLogsElasticsearchEmitter {
+
+        private final Map<String, List<RestStatus>> statuses = new HashMap<>();
+        private final List<List<String>> bulkRequests = Collections.synchronizedList(new ArrayList<List<String>>());
+        private volatile boolean failClusterStatus;
+        // the number of bulk requests to fail as a whole before answering them
+        private volatile int failedBulkRequests;
+        private final CountDownLatch clusterStatusRequested = new CountDownLatch(1);
+
+        ScriptedEmitter(CloudWatchLogsConnectorConfiguration configuration, Semaphore inFlightRequests,
+                ElasticsearchRetryPolicy retryPolicy, ElasticsearchSpillFile spillFile) {
+            super(configuration, inFlightRequests, retryPolicy, spillFile);
+        }
+
+        void respond(String id, RestStatus... attempts) {
+            statuses.put(id, new ArrayList<>(Arrays.asList(attempts)));
+        }
+
+        @Override
+        void executeBulk(List<ElasticsearchObject> records, ActionListener<BulkResponse> listener) {
+            if (failedBulkRequests > 0) {
+                failedBulkRequests--;
+                List<String> ids = new ArrayList<>();
+                for (ElasticsearchObject record : records) {
+                    ids.add(record.getId());
+                }
+                bulkRequests.add(ids);
+                listener.onFailure(new NoNodeAvailableException("No node available"));
+                return;
+            }
+
+            List<String> ids = new ArrayList<>();
+            BulkItemResponse[] responses = new BulkItemResponse[records.size()];
+
+            synchronized (statuses) {
+                for (int i = 0; i < records.size(); i++) {
+                    ElasticsearchObject record = records.get(i);
+                    ids.add(record.getId());
+
+                    List<RestStatus> attempts = statuses.get(record.getId());
+                    BulkItemResponse.Failure failure = null;
+                    if (attempts != null && !attempts.isEmpty()) {
+                        RestStatus status = attempts.remove(0);
+                        failure = new BulkItemResponse.Failure(record.getIndex(), record.getType(), record.getId(),
+                                "Rejected with " + status, status);
+                    }
+                    responses[i] = new BulkItemResponse(i, "index", failure);
+                }
+            }
+
+            bulkRequests.add(ids);
+            listener.onResponse(new BulkResponse(responses, 1));
+        }
+
+        @Override
+        void printClusterStatus() {
+            clusterStatusRequested.countDown();
+            if (failClusterStatus) {
+                throw new IllegalStateException("No cluster");
+            }
+        }
+    }
+
+    private static final class RecordingCallback implements IAsyncEmitter.Callback<ElasticsearchObject> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile List<ElasticsearchObject> failures;
+
+        @Override
+        public void onComplete(List<ElasticsearchObject> failures) {
+            assertTrue(latch.getCount() > 0);
+            this.failures = failures;
+            latch.countDown();
+        }
+
+        List<ElasticsearchObject> await() throws InterruptedException {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            return failures;
+        }
+    }
+}
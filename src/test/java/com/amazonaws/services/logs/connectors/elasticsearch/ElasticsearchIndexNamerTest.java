@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.amazonaws.services.logs.connectors.elasticsearch.ElasticsearchIndexNamer.Rollover;
+
+public class ElasticsearchIndexNamerTest {
+
+    // 2015-01-13T02:28:53.213Z
+    private static final long TIMESTAMP = 1421116133213L;
+
+    @Test
+    public void dailyIndexName() {
+        ElasticsearchIndexNamer classUnderTest = new ElasticsearchIndexNamer();
+
+        String name = classUnderTest.getIndexName("Apache/access.log", TIMESTAMP);
+        assertEquals("cwl-2015.01.13", name);
+
+        // events of the same day get the cached name
+        assertSame(name, classUnderTest.getIndexName("Apache/error.log", TIMESTAMP + 3600000L));
+        assertEquals("cwl-2015.01.14", classUnderTest.getIndexName("Apache/access.log", 1421193600000L));
+        assertEquals("cwl-2015.01.13", classUnderTest.getIndexName("Apache/access.log", 1421193599999L));
+    }
+
+    @Test
+    public void hourlyAndWeeklyIndexNames() {
+        assertEquals("logs-2015.01.13.02", new ElasticsearchIndexNamer("logs-", Rollover.HOURLY).getIndexName(
+                "Apache/access.log", TIMESTAMP));
+        assertEquals("cwl-2015.w03", new ElasticsearchIndexNamer("cwl-", Rollover.fromString(" Weekly"))
+                .getIndexName("Apache/access.log", TIMESTAMP));
+    }
+
+    @Test
+    public void indexNamePerLogGroup() {
+        ElasticsearchIndexNamer classUnderTest = new ElasticsearchIndexNamer("cwl-{logGroup}-", Rollover.DAILY);
+
+        String name = classUnderTest.getIndexName("/aws/lambda/My Function/", TIMESTAMP);
+        assertEquals("cwl-aws-lambda-my-function-2015.01.13", name);
+        assertSame(name, classUnderTest.getIndexName("/aws/lambda/My Function/", TIMESTAMP + 1));
+        assertEquals("cwl-apache-access.log-2015.01.12", classUnderTest.getIndexName("Apache/access.log",
+                TIMESTAMP - 86400000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidRollover() {
+        Rollover.fromString("monthly");
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Test;
+
+public class ElasticsearchRetryPolicyTest {
+
+    @Test
+    public void retryBusyAndUnavailableNodes() {
+        ElasticsearchRetryPolicy classUnderTest = new ElasticsearchRetryPolicy(2, 100, 1000, 20, 10);
+
+        assertTrue(classUnderTest.isRetryable(RestStatus.TOO_MANY_REQUESTS));
+        assertTrue(classUnderTest.isRetryable(RestStatus.SERVICE_UNAVAILABLE));
+        assertFalse(classUnderTest.isRetryable(RestStatus.BAD_REQUEST));
+
+        assertTrue(classUnderTest.canRetry(1));
+        assertFalse(classUnderTest.canRetry(2));
+    }
+
+    @Test
+    public void jitteredExponentialBackoff() {
+        ElasticsearchRetryPolicy classUnderTest = new ElasticsearchRetryPolicy(100, 100, 1000, 20, 10);
+
+        for (int i = 0; i < 100; i++) {
+            long backoff = classUnderTest.getBackoff(0);
+            assertTrue(backoff >= 50 && backoff <= 100);
+
+            backoff = classUnderTest.getBackoff(2);
+            assertTrue(backoff >= 200 && backoff <= 400);
+
+            backoff = classUnderTest.getBackoff(i);
+            assertTrue(backoff >= 0 && backoff <= 1000);
+        }
+        assertTrue(classUnderTest.getBackoff(99) >= 500);
+    }
+
+    @Test
+    public void retryBudget() {
+        ElasticsearchRetryPolicy classUnderTest = new ElasticsearchRetryPolicy(5, 100, 1000, 20, 10);
+
+        // the budget starts full
+        assertEquals(10, classUnderTest.acquireRetries(15));
+        assertEquals(0, classUnderTest.acquireRetries(1));
+
+        // one retry for every five documents sent
+        classUnderTest.recordSent(12);
+        assertEquals(2, classUnderTest.acquireRetries(5));
+        classUnderTest.recordSent(3);
+        assertEquals(1, classUnderTest.acquireRetries(5));
+
+        // up to the capacity
+        classUnderTest.recordSent(1000);
+        assertEquals(10, classUnderTest.acquireRetries(100));
+
+        // retries that were not sent are given back
+        classUnderTest.releaseRetries(4);
+        assertEquals(4, classUnderTest.acquireRetries(5));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.elasticsearch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.connectors.elasticsearch.ElasticsearchObject;
+
+public class ElasticsearchSpillFileTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("cwl-spill-test").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    @Test
+    public void writeBulkActions() throws IOException {
+        File directory = new File(folder, "spill");
+        ElasticsearchSpillFile classUnderTest = new ElasticsearchSpillFile(directory, 1024 * 1024);
+
+        classUnderTest.write(Arrays.<ElasticsearchObject> asList(new CloudWatchLogsElasticsearchObject(
+                "cwl-2015.01.13", "Apache/access.log", "id-1", "{\n\"a\":\r\n\"b\\nc\"}".getBytes(
+                        StandardCharsets.UTF_8)), new ElasticsearchObject("cwl-2015.01.13", "Apache/access.log",
+                "id-2", "{\"d\":1}")));
+
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+
+        List<String> lines = Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList(
+                "{\"index\":{\"_index\":\"cwl-2015.01.13\",\"_type\":\"Apache/access.log\",\"_id\":\"id-1\"}}",
+                "{ \"a\":  \"b\\nc\"}",
+                "{\"index\":{\"_index\":\"cwl-2015.01.13\",\"_type\":\"Apache/access.log\",\"_id\":\"id-2\"}}",
+                "{\"d\":1}"), lines);
+    }
+
+    @Test
+    public void rollOverFullFiles() throws IOException {
+        ElasticsearchSpillFile classUnderTest = new ElasticsearchSpillFile(folder, 1);
+        List<ElasticsearchObject> records = Arrays.<ElasticsearchObject> asList(new ElasticsearchObject(
+                "cwl-2015.01.13", "Apache/access.log", "id-1", "{}"));
+
+        classUnderTest.write(records);
+        classUnderTest.write(records);
+
+        assertEquals(2, folder.listFiles().length);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
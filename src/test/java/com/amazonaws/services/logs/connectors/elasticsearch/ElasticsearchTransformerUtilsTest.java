@@ -15,8 +15,10 @@
 package com.amazonaws.services.logs.connectors.elasticsearch;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -53,4 +55,26 @@ public class ElasticsearchTransformerUtilsTest {
                 "{ \"array\": [ { \"key1\": \"100\" }, { \"key2\": \"200\" } ] }",
                 ElasticsearchTransformerUtils.extractJson("Received event: { \"array\": [ { \"key1\": \"100\" }, { \"key2\": \"200\" } ] }"));
     }
+
+    @Test
+    public void findJson() {
+        assertNull(ElasticsearchTransformerUtils.findJson(null));
+        assertNull(ElasticsearchTransformerUtils.findJson("no json here"));
+        assertNull(ElasticsearchTransformerUtils.findJson("{ \"key\": 100"));
+
+        String message = "Received: { \"key\": { \"@id\": 1 }, \"array\": [ {} ] } trailing text";
+        JsonSpan span = ElasticsearchTransformerUtils.findJson(message);
+
+        assertEquals(10, span.getStart());
+        assertEquals("{ \"key\": { \"@id\": 1 }, \"array\": [ {} ] }",
+                message.substring(span.getStart(), span.getEnd()));
+        assertEquals(2, span.getFieldCount());
+        assertFalse(span.hasAttributeFieldNames());
+
+        span = ElasticsearchTransformerUtils.findJson("{ \"@message\": \"x\" }");
+        assertEquals(1, span.getFieldCount());
+        assertTrue(span.hasAttributeFieldNames());
+
+        assertEquals(0, ElasticsearchTransformerUtils.findJson("{}").getFieldCount());
+    }
 }
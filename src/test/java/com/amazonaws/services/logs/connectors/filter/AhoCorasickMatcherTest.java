@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class AhoCorasickMatcherTest {
+
+    @Test
+    public void findAnySubstring() {
+        AhoCorasickMatcher classUnderTest = new AhoCorasickMatcher(Arrays.asList("he", "she", "his", "hers"));
+
+        assertTrue(classUnderTest.containsAny("ushers"));
+        assertTrue(classUnderTest.containsAny("this"));
+        assertTrue(classUnderTest.containsAny("he"));
+        assertFalse(classUnderTest.containsAny("hi s"));
+        assertFalse(classUnderTest.containsAny(""));
+        assertFalse(classUnderTest.containsAny(null));
+    }
+
+    @Test
+    public void followFailureLinks() {
+        AhoCorasickMatcher classUnderTest = new AhoCorasickMatcher(Arrays.asList("abcd", "bce", "ELB-HealthChecker"));
+
+        // the match of abc fails on e, and goes on from bc
+        assertTrue(classUnderTest.containsAny("xabce"));
+        assertFalse(classUnderTest.containsAny("abcabcab"));
+        assertTrue(classUnderTest.containsAny("\"GET / HTTP/1.1\" 200 - \"ELB-HealthChecker/2.0\""));
+        assertFalse(classUnderTest.containsAny("\"GET / HTTP/1.1\" 200 - \"ELB-HealthCheck\""));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.filter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.kinesis.connectors.impl.AllPassFilter;
+import com.amazonaws.services.kinesis.connectors.interfaces.IFilter;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.connectors.ICheckpointListener;
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.HeaderPredicate;
+
+public class PredicateFilterTest {
+
+    @Test
+    public void keepAllWithoutRules() {
+        assertTrue(PredicateFilter.create(createConfiguration(new Properties())) instanceof AllPassFilter);
+    }
+
+    @Test
+    public void matchGlobs() {
+        assertTrue(GlobMatcher.matches("/aws/lambda/*", "/aws/lambda/name"));
+        assertTrue(GlobMatcher.matches("*access*", "Apache/access.log"));
+        assertTrue(GlobMatcher.matches("i-????????", "i-c3f9bec9"));
+        assertTrue(GlobMatcher.matches("a*b*c", "aXbYbZc"));
+        assertFalse(GlobMatcher.matches("a*b*c", "aXbYbZ"));
+        assertFalse(GlobMatcher.matches("i-????????", "i-c3f9bec"));
+    }
+
+    @Test
+    public void filterHeaders() {
+        Properties properties = new Properties();
+        properties.setProperty("filterOwners", "123456789012");
+        properties.setProperty("filterLogGroups", "Apache/*, /aws/lambda/name");
+        properties.setProperty("filterExcludeLogStreams", "i-0000*");
+        HeaderPredicate classUnderTest = PredicateFilter.compileHeader(createConfiguration(properties));
+
+        assertTrue(classUnderTest.test("DATA_MESSAGE", "123456789012", "Apache/access.log", "i-c3f9bec9"));
+        assertTrue(classUnderTest.test("DATA_MESSAGE", "123456789012", "/aws/lambda/name", "i-c3f9bec9"));
+        assertFalse(classUnderTest.test("DATA_MESSAGE", "123456789012", "/aws/lambda/other", "i-c3f9bec9"));
+        assertFalse(classUnderTest.test("DATA_MESSAGE", "123456789012", "Apache/access.log", "i-00001234"));
+        assertFalse(classUnderTest.test("DATA_MESSAGE", "210987654321", "Apache/access.log", "i-c3f9bec9"));
+
+        // header rules are left out of the event filter
+        assertTrue(PredicateFilter.create(createConfiguration(properties)) instanceof AllPassFilter);
+        assertNull(PredicateFilter.compileHeader(createConfiguration(new Properties())));
+    }
+
+    @Test
+    public void filterTimestamps() {
+        Properties properties = new Properties();
+        properties.setProperty("filterStartTime", "1000");
+        properties.setProperty("filterEndTime", "2000");
+        IFilter<CloudWatchLogsEvent> classUnderTest = PredicateFilter.create(createConfiguration(properties));
+
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 999, "message", null)));
+        assertTrue(classUnderTest.keepRecord(createEvent("group", "stream", 1000, "message", null)));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 2000, "message", null)));
+
+        properties = new Properties();
+        properties.setProperty("filterMaxAge", "60000");
+        classUnderTest = PredicateFilter.create(createConfiguration(properties));
+
+        assertTrue(classUnderTest.keepRecord(createEvent("group", "stream", System.currentTimeMillis(), "m", null)));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 1000, "message", null)));
+    }
+
+    @Test
+    public void filterMessagesAndFields() {
+        Properties properties = new Properties();
+        properties.setProperty("filterExcludeMessages", "DEBUG, ELB-HealthChecker");
+        properties.setProperty("filterExcludeFields", "level=TRACE, status=2*, status=3*");
+        IFilter<CloudWatchLogsEvent> classUnderTest = PredicateFilter.create(createConfiguration(properties));
+
+        assertTrue(classUnderTest.keepRecord(createEvent("group", "stream", 0, "INFO started", null)));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 0, "DEBUG started", null)));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 0, "ELB-HealthChecker/2.0", null)));
+
+        assertTrue(classUnderTest.keepRecord(createEvent("group", "stream", 0, "GET /", fields("status", "503"))));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 0, "GET /", fields("status", "200"))));
+        assertFalse(classUnderTest.keepRecord(createEvent("group", "stream", 0, "GET /", fields("status", "304"))));
+        assertTrue(classUnderTest.keepRecord(createEvent("group", "stream", 0, "GET /", fields("verb", "200"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectInvalidFieldRules() {
+        Properties properties = new Properties();
+        properties.setProperty("filterFields", "level");
+        PredicateFilter.create(createConfiguration(properties));
+    }
+
+    @Test
+    public void deduplicateKeptEventsOnly() {
+        Properties properties = new Properties();
+        properties.setProperty("filterExcludeMessages", "DEBUG");
+        properties.setProperty("deduplicate", "true");
+        IFilter<CloudWatchLogsEvent> classUnderTest = PredicateFilter.create(createConfiguration(properties));
+
+        assertFalse(classUnderTest.keepRecord(createEvent("1", "DEBUG")));
+        assertTrue(classUnderTest.keepRecord(createEvent("1", "INFO")));
+
+        ((ICheckpointListener) classUnderTest).onCheckpoint(Collections.singletonList("1"));
+        assertFalse(classUnderTest.keepRecord(createEvent("1", "INFO")));
+    }
+
+    private static Map<String, String> fields(String name, String value) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(name, value);
+        return fields;
+    }
+
+    private static CloudWatchLogsEvent createEvent(String logGroup, String logStream, long timestamp, String message,
+            Map<String, String> extractedFields) {
+        return new BasicCloudWatchLogsEvent(null, timestamp, message, extractedFields, "123456789012", logGroup,
+                logStream);
+    }
+
+    private static CloudWatchLogsEvent createEvent(String id, String message) {
+        return new BasicCloudWatchLogsEvent(id, 0, message, null, "owner", "group", "s");
+    }
+
+    private static CloudWatchLogsConnectorConfiguration createConfiguration(Properties properties) {
+        return new CloudWatchLogsConnectorConfiguration(properties, new DefaultAWSCredentialsProviderChain());
+    }
+}
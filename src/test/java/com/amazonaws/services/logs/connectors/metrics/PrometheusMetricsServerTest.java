@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.kinesis.metrics.interfaces.IMetricsScope;
+import com.amazonaws.services.kinesis.metrics.interfaces.MetricsLevel;
+
+public class PrometheusMetricsServerTest {
+
+    @Test
+    public void writeTextFormat() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("events_total", "logGroup", "c").add(1);
+        registry.counter("events_total", "logGroup", "a\"b").add(3);
+        registry.gauge(new Gauge() {
+
+            @Override
+            public double getValue() {
+                return 2.5;
+            }
+        }, "buffered");
+
+        StripedHistogram latency = registry.histogram("latency");
+        latency.record(1);
+        latency.record(2);
+        latency.record(3);
+        latency.record(100);
+
+        assertEquals("# TYPE cwl_consumer_buffered gauge\n"
+                + "cwl_consumer_buffered 2.5\n"
+                + "# TYPE cwl_consumer_events_total counter\n"
+                + "cwl_consumer_events_total{logGroup=\"a\\\"b\"} 3\n"
+                + "cwl_consumer_events_total{logGroup=\"c\"} 1\n"
+                + "# TYPE cwl_consumer_latency summary\n"
+                + "cwl_consumer_latency{quantile=\"0.5\"} 2\n"
+                + "cwl_consumer_latency{quantile=\"0.9\"} 100\n"
+                + "cwl_consumer_latency{quantile=\"0.99\"} 100\n"
+                + "cwl_consumer_latency_sum 106\n"
+                + "cwl_consumer_latency_count 4\n", write(registry));
+    }
+
+    @Test
+    public void reportKclMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        LocalMetricsFactory factory = new LocalMetricsFactory(registry, MetricsLevel.SUMMARY);
+
+        IMetricsScope scope = factory.createMetrics();
+        scope.addDimension("ShardId", "shardId-000000000000");
+        scope.addData("MillisBehindLatest", 1500, StandardUnit.Milliseconds, MetricsLevel.SUMMARY);
+        // too detailed for the level of the factory
+        scope.addData("DataBytesProcessed", 100, StandardUnit.Bytes, MetricsLevel.DETAILED);
+        scope.end();
+
+        assertEquals("# TYPE cwl_consumer_kcl_MillisBehindLatest summary\n"
+                + "cwl_consumer_kcl_MillisBehindLatest{ShardId=\"shardId-000000000000\",quantile=\"0.5\"} 1500\n"
+                + "cwl_consumer_kcl_MillisBehindLatest{ShardId=\"shardId-000000000000\",quantile=\"0.9\"} 1500\n"
+                + "cwl_consumer_kcl_MillisBehindLatest{ShardId=\"shardId-000000000000\",quantile=\"0.99\"} 1500\n"
+                + "cwl_consumer_kcl_MillisBehindLatest_sum{ShardId=\"shardId-000000000000\"} 1500\n"
+                + "cwl_consumer_kcl_MillisBehindLatest_count{ShardId=\"shardId-000000000000\"} 1\n",
+                write(registry));
+    }
+
+    @Test
+    public void serveMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.meter("log_events_total").mark(42);
+
+        PrometheusMetricsServer classUnderTest = PrometheusMetricsServer.start(registry, 0);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+                    + classUnderTest.getPort() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+
+            try (InputStream body = connection.getInputStream()) {
+                assertTrue(IOUtils.toString(body, StandardCharsets.UTF_8).contains(
+                        "cwl_consumer_log_events_total 42\n"));
+            }
+        } finally {
+            classUnderTest.stop();
+        }
+    }
+
+    private static String write(MetricsRegistry registry) throws IOException {
+        StringWriter writer = new StringWriter();
+        PrometheusMetricsServer.write(registry, writer);
+        return writer.toString();
+    }
+}
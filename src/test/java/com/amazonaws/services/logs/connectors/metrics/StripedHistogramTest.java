@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StripedHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            int bucket = StripedHistogram.bucket(value);
+            assertTrue(StripedHistogram.upperBound(bucket) >= value);
+            if (bucket > 0) {
+                assertTrue(StripedHistogram.upperBound(bucket - 1) < value);
+            }
+        }
+        assertEquals(StripedHistogram.BUCKETS - 1, StripedHistogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, StripedHistogram.upperBound(StripedHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void quantilesWithinBucketWidth() {
+        StripedHistogram classUnderTest = new StripedHistogram();
+        for (int value = 1000; value >= 1; value--) {
+            classUnderTest.record(value);
+        }
+
+        StripedHistogram.Snapshot snapshot = classUnderTest.getSnapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500500, snapshot.getSum());
+        assertEquals(1000, snapshot.getMax());
+
+        long median = snapshot.getQuantile(0.5);
+        assertTrue("median: " + median, median >= 500 && median < 625);
+        long p99 = snapshot.getQuantile(0.99);
+        assertTrue("p99: " + p99, p99 >= 990 && p99 <= 1000);
+        assertEquals(0, new StripedHistogram().getSnapshot().getQuantile(0.99));
+    }
+
+    @Test
+    public void recordFromManyThreads() throws InterruptedException {
+        final StripedHistogram histogram = new StripedHistogram();
+        final StripedCounter counter = new StripedCounter();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final int value = i;
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        histogram.record(value);
+                        counter.add(2);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        StripedHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(800000, snapshot.getCount());
+        assertEquals(2800000, snapshot.getSum());
+        assertEquals(7, snapshot.getMax());
+        assertEquals(1600000, counter.get());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+public class S3ObjectOutputStreamTest {
+
+    private final RecordingS3Client s3client = new RecordingS3Client();
+
+    @Test
+    public void putSmallObjects() throws IOException {
+        S3ObjectOutputStream classUnderTest = new S3ObjectOutputStream(s3client, "bucket", "key", 0);
+        OutputStream out = S3Compression.GZIP.wrap(classUnderTest);
+        out.write("{\"id\":\"1\"}\n".getBytes("UTF-8"));
+        out.close();
+
+        assertNull(s3client.uploadId);
+        assertEquals(1, s3client.parts.size());
+        assertEquals(classUnderTest.getSize(), s3client.parts.get(0).length);
+        assertEquals("{\"id\":\"1\"}\n", new String(gunzip(s3client.parts.get(0)), "UTF-8"));
+    }
+
+    @Test
+    public void uploadLargeObjectsInParts() throws IOException {
+        byte[] data = new byte[2 * S3ObjectOutputStream.MIN_PART_SIZE + 1000];
+        new Random(42).nextBytes(data);
+
+        S3ObjectOutputStream classUnderTest = new S3ObjectOutputStream(s3client, "bucket", "key", 0);
+        for (int offset = 0; offset < data.length; offset += 1024) {
+            classUnderTest.write(data, offset, Math.min(1024, data.length - offset));
+        }
+        classUnderTest.close();
+
+        assertEquals(3, s3client.parts.size());
+        assertEquals(S3ObjectOutputStream.MIN_PART_SIZE, s3client.parts.get(0).length);
+        assertEquals(3, s3client.completedParts);
+        assertArrayEquals(data, concat(s3client.parts));
+    }
+
+    @Test
+    public void abortMultipartUploads() throws IOException {
+        S3ObjectOutputStream classUnderTest = new S3ObjectOutputStream(s3client, "bucket", "key", 0);
+        classUnderTest.write(new byte[S3ObjectOutputStream.MIN_PART_SIZE + 1]);
+        classUnderTest.abort();
+
+        assertTrue(s3client.aborted);
+        assertEquals(-1, s3client.completedParts);
+
+        try {
+            classUnderTest.write(1);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("Writes after an abort should fail");
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        return read(new GZIPInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] concat(List<byte[]> parts) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            output.write(part);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        for (int count = input.read(chunk); count >= 0; count = input.read(chunk)) {
+            output.write(chunk, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Keeps the uploaded bytes instead of sending them.
+     */
+    private static class RecordingS3Client extends AmazonS3Client {
+
+        private final List<byte[]> parts = new ArrayList<>();
+        private String uploadId;
+        private int completedParts = -1;
+        private boolean aborted;
+
+        @Override
+        public PutObjectResult putObject(String bucket, String key, InputStream input, ObjectMetadata metadata) {
+            try {
+                byte[] data = read(input);
+                assertEquals(metadata.getContentLength(), data.length);
+                parts.add(data);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new PutObjectResult();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            uploadId = "upload-1";
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId(uploadId);
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            assertEquals(uploadId, request.getUploadId());
+            assertEquals(parts.size() + 1, request.getPartNumber());
+            try {
+                byte[] data = read(request.getInputStream());
+                assertEquals(request.getPartSize(), data.length);
+                parts.add(data);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            completedParts = request.getPartETags().size();
+            return new CompleteMultipartUploadResult();
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            aborted = true;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.parquet.format.ColumnChunk;
+import org.apache.parquet.format.ColumnMetaData;
+import org.apache.parquet.format.CompressionCodec;
+import org.apache.parquet.format.ConvertedType;
+import org.apache.parquet.format.Encoding;
+import org.apache.parquet.format.FieldRepetitionType;
+import org.apache.parquet.format.FileMetaData;
+import org.apache.parquet.format.PageHeader;
+import org.apache.parquet.format.PageType;
+import org.apache.parquet.format.RowGroup;
+import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.Type;
+import org.apache.parquet.format.Util;
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+public class S3ParquetBufferTest {
+
+    @Test
+    public void writeParquetFile() throws IOException {
+        S3ParquetBuffer classUnderTest = createBuffer("none");
+
+        classUnderTest.consumeRecord(createEvent("1", new String[] { "status", "size" }, new String[] { "200",
+                null }), 0, "100");
+        classUnderTest.consumeRecord(createEvent("2", null, null), 0, "101");
+        classUnderTest.consumeRecord(createEvent("3", new String[] { "user" }, new String[] { "café" }), 0, "102");
+        assertTrue(classUnderTest.shouldFlush());
+
+        String file = read(classUnderTest.getSerializedRecords());
+        assertTrue(file.startsWith("PAR1"));
+        assertTrue(file.endsWith("PAR1"));
+        assertEquals(3, classUnderTest.getNumberOfRecords());
+        assertEquals("100", classUnderTest.getFirstSequenceNumber());
+        assertEquals("102", classUnderTest.getLastSequenceNumber());
+
+        // the pages are not compressed, and the schema is in the footer
+        assertTrue(file.contains("Apache/access.log"));
+        assertTrue(file.contains("café"));
+        assertTrue(file.indexOf("extractedFields") > file.indexOf("café"));
+        assertTrue(file.contains("status"));
+        assertTrue(file.contains("user"));
+
+        // the same file can be read again, for example to retry the upload
+        assertEquals(file, read(classUnderTest.getSerializedRecords()));
+    }
+
+    @Test
+    public void readParquetFile() throws IOException {
+        for (String compression : new String[] { "none", "gzip" }) {
+            S3ParquetBuffer classUnderTest = createBuffer(compression);
+            classUnderTest.consumeRecord(createEvent("1", new String[] { "status", "size" }, new String[] { "200",
+                    null }), 0, "100");
+            classUnderTest.consumeRecord(createEvent("2", null, null), 0, "101");
+            classUnderTest.consumeRecord(createEvent("3", new String[] { "user" }, new String[] { "café" }), 0,
+                    "102");
+
+            byte[] file = toBytes(classUnderTest.getSerializedRecords());
+            FileMetaData metaData = readFileMetaData(file);
+
+            // the schema is flattened depth first
+            List<String> names = new ArrayList<>();
+            for (SchemaElement element : metaData.getSchema()) {
+                names.add(element.getName());
+            }
+            assertEquals(Arrays.asList("schema", "id", "timestamp", "owner", "logGroup", "logStream", "message",
+                    "extractedFields", "status", "size", "user"), names);
+
+            SchemaElement root = metaData.getSchema().get(0);
+            assertEquals(7, root.getNum_children());
+            SchemaElement timestamp = metaData.getSchema().get(2);
+            assertEquals(Type.INT64, timestamp.getType());
+            assertEquals(FieldRepetitionType.REQUIRED, timestamp.getRepetition_type());
+            assertEquals(ConvertedType.TIMESTAMP_MILLIS, timestamp.getConverted_type());
+            SchemaElement message = metaData.getSchema().get(6);
+            assertEquals(Type.BYTE_ARRAY, message.getType());
+            assertEquals(FieldRepetitionType.OPTIONAL, message.getRepetition_type());
+            assertEquals(ConvertedType.UTF8, message.getConverted_type());
+            SchemaElement extractedFields = metaData.getSchema().get(7);
+            assertEquals(FieldRepetitionType.OPTIONAL, extractedFields.getRepetition_type());
+            assertEquals(3, extractedFields.getNum_children());
+            assertEquals(FieldRepetitionType.OPTIONAL, metaData.getSchema().get(10).getRepetition_type());
+
+            // a single row group with a value for each row in every column
+            assertEquals(3, metaData.getNum_rows());
+            assertEquals(1, metaData.getRow_groups().size());
+            RowGroup rowGroup = metaData.getRow_groups().get(0);
+            assertEquals(3, rowGroup.getNum_rows());
+            assertEquals(9, rowGroup.getColumns().size());
+
+            Map<String, ColumnMetaData> columns = new HashMap<>();
+            for (ColumnChunk chunk : rowGroup.getColumns()) {
+                ColumnMetaData column = chunk.getMeta_data();
+                assertEquals(3, column.getNum_values());
+                assertEquals("gzip".equals(compression) ? CompressionCodec.GZIP : CompressionCodec.UNCOMPRESSED,
+                        column.getCodec());
+                columns.put(join(column.getPath_in_schema()), column);
+            }
+
+            ColumnMetaData timestamps = columns.get("timestamp");
+            assertEquals(1421116133214L, readLongLittleEndian(timestamps.getStatistics().getMin_value()));
+            assertEquals(1421116133216L, readLongLittleEndian(timestamps.getStatistics().getMax_value()));
+
+            // 2 when the field is set, 1 when only extractedFields is, 0 when the event has none
+            assertEquals(Arrays.asList(2, 0, 1), readDefinitionLevels(file, columns.get("extractedFields.status")));
+            assertEquals(Arrays.asList(1, 0, 1), readDefinitionLevels(file, columns.get("extractedFields.size")));
+            assertEquals(Arrays.asList(1, 0, 2), readDefinitionLevels(file, columns.get("extractedFields.user")));
+            assertEquals(Arrays.asList(1, 1, 1), readDefinitionLevels(file, columns.get("message")));
+        }
+    }
+
+    @Test
+    public void startNewSchemaAfterClear() throws IOException {
+        S3ParquetBuffer classUnderTest = createBuffer("gzip");
+
+        classUnderTest.consumeRecord(createEvent("1", new String[] { "status" }, new String[] { "200" }), 0, "100");
+        classUnderTest.clear();
+        assertFalse(classUnderTest.shouldFlush());
+        assertEquals(0, classUnderTest.getSize());
+
+        classUnderTest.consumeRecord(createEvent("2", null, null), 0, "101");
+        String file = read(classUnderTest.getSerializedRecords());
+
+        // the pages are compressed, and the footer only has the columns of the new event
+        assertFalse(file.contains("status"));
+        assertFalse(file.contains("extractedFields"));
+        assertFalse(file.contains("Apache/access.log"));
+    }
+
+    private static S3ParquetBuffer createBuffer(String compression) {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "3");
+        properties.setProperty("s3Compression", compression);
+        return new S3ParquetBuffer(new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain()));
+    }
+
+    private static CloudWatchLogsEvent createEvent(String id, String[] names, String[] values) {
+        return new BasicCloudWatchLogsEvent(id, 1421116133213L + Long.parseLong(id), "message " + id, names, values,
+                "123456789012", "Apache/access.log", "i-c3f9bec9");
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static FileMetaData readFileMetaData(byte[] file) throws IOException {
+        int footerLength = ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        return Util.readFileMetaData(new ByteArrayInputStream(file, file.length - 8 - footerLength, footerLength));
+    }
+
+    /**
+     * Reads the definition levels from the single data page of a column chunk.
+     */
+    private static List<Integer> readDefinitionLevels(byte[] file, ColumnMetaData column) throws IOException {
+        int offset = (int) column.getData_page_offset();
+        ByteArrayInputStream in = new ByteArrayInputStream(file, offset, file.length - offset);
+        PageHeader header = Util.readPageHeader(in);
+        assertEquals(PageType.DATA_PAGE, header.getType());
+        assertEquals(Encoding.RLE, header.getData_page_header().getDefinition_level_encoding());
+
+        byte[] page = new byte[header.getCompressed_page_size()];
+        assertEquals(page.length, in.read(page, 0, page.length));
+        InputStream pageIn = new ByteArrayInputStream(page);
+        if (column.getCodec() == CompressionCodec.GZIP) {
+            pageIn = new GZIPInputStream(pageIn);
+        }
+        DataInputStream data = new DataInputStream(pageIn);
+
+        byte[] levels = new byte[Integer.reverseBytes(data.readInt())];
+        data.readFully(levels);
+
+        // every field of the path is optional, so the maximum level is the length of the path
+        int bitWidth = 32 - Integer.numberOfLeadingZeros(column.getPath_in_schema().size());
+        return decodeHybrid(levels, bitWidth, header.getData_page_header().getNum_values());
+    }
+
+    /**
+     * Decodes levels of up to 8 bits from the RLE and bit-packing hybrid
+     * encoding of Parquet.
+     */
+    private static List<Integer> decodeHybrid(byte[] bytes, int bitWidth, int count) {
+        List<Integer> levels = new ArrayList<>();
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        while (levels.size() < count) {
+            int header = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.read();
+                header |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+
+            if ((header & 1) == 0) {
+                int value = in.read();
+                for (int i = 0; i < header >>> 1; i++) {
+                    levels.add(value);
+                }
+            } else {
+                // groups of 8 values, the first value in the lowest bits
+                for (int group = 0; group < header >>> 1; group++) {
+                    long bits = 0;
+                    for (int i = 0; i < bitWidth; i++) {
+                        bits |= (long) in.read() << (8 * i);
+                    }
+                    for (int i = 0; i < 8; i++) {
+                        levels.add((int) (bits >>> (bitWidth * i)) & ((1 << bitWidth) - 1));
+                    }
+                }
+            }
+        }
+        return levels.subList(0, count);
+    }
+
+    private static long readLongLittleEndian(byte[] bytes) {
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+    private static String join(List<String> path) {
+        StringBuilder result = new StringBuilder();
+        for (String name : path) {
+            result.append(result.length() == 0 ? "" : ".").append(name);
+        }
+        return result.toString();
+    }
+
+    private static String read(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+
+        int footerLength = ByteBuffer.wrap(bytes, bytes.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        assertTrue(footerLength > 0 && footerLength < bytes.length - 12);
+        return new String(bytes, "UTF-8");
+    }
+}
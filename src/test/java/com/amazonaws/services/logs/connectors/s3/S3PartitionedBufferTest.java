@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+public class S3PartitionedBufferTest {
+
+    // 2015-01-13T02:28:53.213Z
+    private static final long TIMESTAMP = 1421116133213L;
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @Test
+    public void namePartitionsLikeHive() {
+        S3PartitionNamer namer = new S3PartitionNamer();
+
+        assertEquals("logGroup=%2Faws%2Flambda%2Fmy-function/dt=2015-01-13/hour=02/", namer.getPartition(
+                "/aws/lambda/my-function", TIMESTAMP));
+        assertEquals("logGroup=%2Faws%2Flambda%2Fmy-function/dt=2015-01-13/hour=03/", namer.getPartition(
+                "/aws/lambda/my-function", TIMESTAMP + HOUR));
+        assertEquals("logGroup=Apache%23access.log/dt=2015-01-12/hour=23/", namer.getPartition("Apache#access.log",
+                TIMESTAMP - 3 * HOUR));
+        assertEquals("logGroup=__HIVE_DEFAULT_PARTITION__/dt=1969-12-31/hour=23/", namer.getPartition(null, -1));
+    }
+
+    @Test
+    public void bufferEachPartitionSeparately() {
+        S3PartitionedBuffer classUnderTest = createBuffer("10", "1000000");
+
+        classUnderTest.consumeRecord(createEvent("1", "a", TIMESTAMP), 100, "100");
+        classUnderTest.consumeRecord(createEvent("2", "b", TIMESTAMP), 100, "101");
+        classUnderTest.consumeRecord(createEvent("3", "a", TIMESTAMP + HOUR), 100, "102");
+        classUnderTest.consumeRecord(createEvent("4", "a", TIMESTAMP + 1), 100, "103");
+        assertFalse(classUnderTest.shouldFlush());
+
+        Map<String, List<CloudWatchLogsEvent>> partitions = classUnderTest.getPartitions();
+        Iterator<Map.Entry<String, List<CloudWatchLogsEvent>>> iterator = partitions.entrySet().iterator();
+        assertPartition("logGroup=a/dt=2015-01-13/hour=02/", Arrays.asList("1", "4"), iterator.next());
+        assertPartition("logGroup=b/dt=2015-01-13/hour=02/", Arrays.asList("2"), iterator.next());
+        assertPartition("logGroup=a/dt=2015-01-13/hour=03/", Arrays.asList("3"), iterator.next());
+        assertFalse(iterator.hasNext());
+
+        assertEquals(4, classUnderTest.getRecords().size());
+        assertEquals("100", classUnderTest.getFirstSequenceNumber());
+        assertEquals("103", classUnderTest.getLastSequenceNumber());
+
+        classUnderTest.clear();
+        assertTrue(classUnderTest.getPartitions().isEmpty());
+    }
+
+    @Test
+    public void flushWhenPartitionsFill() {
+        S3PartitionedBuffer classUnderTest = createBuffer("2", "250");
+
+        // too many open partitions
+        classUnderTest.consumeRecord(createEvent("1", "a", TIMESTAMP), 100, "100");
+        classUnderTest.consumeRecord(createEvent("2", "b", TIMESTAMP), 100, "101");
+        assertTrue(classUnderTest.shouldFlush());
+        classUnderTest.clear();
+
+        // a partition holds too many bytes
+        classUnderTest.consumeRecord(createEvent("3", "a", TIMESTAMP), 100, "102");
+        classUnderTest.consumeRecord(createEvent("4", "a", TIMESTAMP), 100, "103");
+        assertFalse(classUnderTest.shouldFlush());
+        classUnderTest.consumeRecord(createEvent("5", "a", TIMESTAMP), 100, "104");
+        assertTrue(classUnderTest.shouldFlush());
+    }
+
+    private static void assertPartition(String name, List<String> ids,
+            Map.Entry<String, List<CloudWatchLogsEvent>> partition) {
+        assertEquals(name, partition.getKey());
+        assertEquals(ids.size(), partition.getValue().size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(i), partition.getValue().get(i).getId());
+        }
+    }
+
+    private static S3PartitionedBuffer createBuffer(String maxOpenPartitions, String partitionByteSizeLimit) {
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "100");
+        properties.setProperty("s3MaxOpenPartitions", maxOpenPartitions);
+        properties.setProperty("s3PartitionByteSizeLimit", partitionByteSizeLimit);
+        return new S3PartitionedBuffer(new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain()));
+    }
+
+    private static CloudWatchLogsEvent createEvent(String id, String logGroup, long timestamp) {
+        return new BasicCloudWatchLogsEvent(id, timestamp, "message " + id, null, "123456789012", logGroup,
+                "i-c3f9bec9");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.connectors.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.services.logs.connectors.CloudWatchLogsConnectorConfiguration;
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
+import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
+
+public class S3SegmentBufferTest {
+
+    private final S3Transformer transformer = new S3Transformer();
+
+    private File directory;
+    private S3SegmentBuffer classUnderTest;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cwl-s3-buffer-test").toFile();
+
+        Properties properties = new Properties();
+        properties.setProperty("bufferRecordCountLimit", "3");
+        properties.setProperty("bufferByteSizeLimit", "1024");
+        classUnderTest = new S3SegmentBuffer(new CloudWatchLogsConnectorConfiguration(properties,
+                new DefaultAWSCredentialsProviderChain()), transformer, directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        classUnderTest.close();
+        assertEquals(0, directory.list().length);
+        directory.delete();
+    }
+
+    @Test
+    public void keepSerializedRecords() throws IOException {
+        CloudWatchLogsEvent first = createEvent("1", "first message");
+        CloudWatchLogsEvent second = createEvent("2", "second message");
+
+        classUnderTest.consumeRecord(first, 0, "100");
+        classUnderTest.consumeRecord(second, 0, "101");
+        assertFalse(classUnderTest.shouldFlush());
+        assertTrue(classUnderTest.getRecords().isEmpty());
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(transformer.fromClass(first));
+        expected.write(transformer.fromClass(second));
+
+        assertEquals(2, classUnderTest.getNumberOfRecords());
+        assertEquals("100", classUnderTest.getFirstSequenceNumber());
+        assertEquals("101", classUnderTest.getLastSequenceNumber());
+        assertArrayEquals(expected.toByteArray(), read(classUnderTest));
+
+        classUnderTest.consumeRecord(second, 0, "102");
+        assertTrue(classUnderTest.shouldFlush());
+
+        classUnderTest.clear();
+        assertFalse(classUnderTest.shouldFlush());
+        assertEquals(0, classUnderTest.getSerializedRecords().remaining());
+    }
+
+    @Test
+    public void growBeyondTheMapping() throws IOException {
+        char[] message = new char[512 * 1024];
+        Arrays.fill(message, 'a');
+        CloudWatchLogsEvent event = createEvent("1", new String(message));
+
+        for (int i = 0; i < 4; i++) {
+            classUnderTest.consumeRecord(event, 0, String.valueOf(i));
+        }
+        assertTrue(classUnderTest.shouldFlush());
+
+        byte[] serialized = read(classUnderTest);
+        byte[] record = transformer.fromClass(event);
+        assertEquals(4 * record.length, serialized.length);
+        assertArrayEquals(record, Arrays.copyOfRange(serialized, 3 * record.length, serialized.length));
+    }
+
+    private static CloudWatchLogsEvent createEvent(String id, String message) {
+        return new BasicCloudWatchLogsEvent(id, 1421116133213L, message, null, "123456789012", "Apache/access.log",
+                "i-c3f9bec9");
+    }
+
+    private static byte[] read(S3SegmentBuffer buffer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream input = new ByteBufferInputStream(buffer.getSerializedRecords());
+
+        // the S3 client marks the stream so that it can retry the upload
+        input.mark(Integer.MAX_VALUE);
+        input.read();
+        input.reset();
+
+        byte[] chunk = new byte[4096];
+        for (int count = input.read(chunk); count >= 0; count = input.read(chunk)) {
+            output.write(chunk, 0, count);
+        }
+        return output.toByteArray();
+    }
+}
@@ -14,6 +14,7 @@
  */
 package com.amazonaws.services.logs.connectors.s3;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -26,6 +27,7 @@ import java.util.List;
 import org.junit.Test;
 
 import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.subscriptions.BasicCloudWatchLogsEvent;
 import com.amazonaws.services.logs.subscriptions.CloudWatchLogsEvent;
 import com.amazonaws.services.logs.subscriptions.util.TestUtils;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -88,6 +90,27 @@ public class S3TransformerTest {
         assertEquals("127.0.0.1", sourceNode.get("extractedFields").get("ip").asText());
     }
 
+    @Test
+    public void writeUtf8Lines() throws IOException {
+        S3Transformer classUnderTest = new S3Transformer();
+
+        CloudWatchLogsEvent event = new BasicCloudWatchLogsEvent("1", 1421116133213L, "caf\u00e9", new String[] {
+                "user", "missing" }, new String[] { "\u00e9lodie", null }, "123456789012", "Apache/access.log",
+                "i-c3f9bec9");
+
+        byte[] line = classUnderTest.fromClass(event);
+        assertEquals('\n', line[line.length - 1]);
+
+        String json = new String(line, "UTF-8");
+        assertEquals(json.length() - 1, json.indexOf('\n'));
+        assertEquals("{\"id\":\"1\",\"timestamp\":1421116133213,\"message\":\"caf\u00e9\","
+                + "\"extractedFields\":{\"user\":\"\u00e9lodie\"},\"owner\":\"123456789012\","
+                + "\"logGroup\":\"Apache/access.log\",\"logStream\":\"i-c3f9bec9\"}\n", json);
+
+        // the generator is kept for the next event
+        assertArrayEquals(line, classUnderTest.fromClass(event));
+    }
+
     @Test
     public void transformCloudTrailLog() throws IOException {
         S3Transformer classUnderTest = new S3Transformer();
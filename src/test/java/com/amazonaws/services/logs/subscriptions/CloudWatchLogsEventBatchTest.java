@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.subscriptions.util.TestUtils;
+
+public class CloudWatchLogsEventBatchTest {
+
+    private final CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionTransformer<String>() {
+
+        @Override
+        public String fromClass(CloudWatchLogsEvent record) throws IOException {
+            return record.getMessage();
+        }
+    };
+
+    @Test
+    public void batchMatchesEvents() throws IOException {
+        for (String filename : new String[] { "/access-log-example.json", "/aws-cloudtrail-log-example.json",
+                "/aws-lambda-log-example.json", "/header-after-log-events-example.json", "/unicode-log-example.json" }) {
+            Record record = new Record().withData(ByteBuffer.wrap(TestUtils.getCompressedTestFile(filename)));
+
+            List<CloudWatchLogsEvent> expected = new ArrayList<>(classUnderTest.toClass(record));
+            CloudWatchLogsEventBatch batch = classUnderTest.toBatch(record);
+
+            assertEquals(expected.size(), batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                assertEventEquals(expected.get(i), batch.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void batchKeepsUnicodeAndNullValues() throws IOException {
+        CloudWatchLogsEventBatch batch = classUnderTest.toBatch(new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/unicode-log-example.json"))));
+
+        assertEquals(3, batch.size());
+        assertEquals("Apache/access.log", batch.getLogGroup());
+        assertEquals("café 日本 😀 \\ \"quoted\"", batch.getMessage(0));
+        assertEquals("fränk", batch.get(0).getExtractedFields().get("user"));
+        assertNull(batch.getMessage(1));
+        assertEquals("", batch.getMessage(2));
+        assertEquals(-1, batch.getExtractedFieldCount(2));
+        assertNull(batch.get(2).getExtractedFields());
+
+        // events reporting the same extracted fields share their names
+        assertSame(batch.get(0).getExtractedFieldName(0), batch.get(1).getExtractedFieldName(0));
+    }
+
+    @Test
+    public void estimateHeapSizeOfEvents() throws IOException {
+        Record record = new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/aws-cloudtrail-log-example.json")));
+        List<CloudWatchLogsEvent> events = new ArrayList<>(classUnderTest.toClass(record));
+        CloudWatchLogsEventBatch batch = classUnderTest.toBatch(record);
+
+        long compressedSize = record.getData().array().length;
+        long eventsSize = 0;
+        long batchSize = 0;
+        for (int i = 0; i < events.size(); i++) {
+            CloudWatchLogsEvent event = events.get(i);
+            long messageSize = event.getMessage().getBytes("UTF-8").length;
+
+            // strings take two bytes per character, the shared buffer of a batch one byte per ASCII character
+            assertTrue(event.getEstimatedSize() > 2 * messageSize);
+            assertTrue(batch.get(i).getEstimatedSize() > messageSize);
+            assertTrue(batch.get(i).getEstimatedSize() < event.getEstimatedSize());
+            eventsSize += event.getEstimatedSize();
+            batchSize += batch.get(i).getEstimatedSize();
+        }
+
+        // more than the size of the compressed record counted once for each event
+        assertTrue(eventsSize > events.size() * compressedSize);
+        // the shared buffer is sized for the uncompressed payload, all of which is counted
+        assertTrue(batchSize >= GzipDecompressor.get().decompress(ByteBuffer.wrap(record.getData().array())));
+    }
+
+    @Test
+    public void viewsDecodeOnce() throws IOException {
+        CloudWatchLogsEventBatch batch = classUnderTest.toBatch(new Record().withData(ByteBuffer.wrap(TestUtils
+                .getCompressedTestFile("/access-log-example.json"))));
+        CloudWatchLogsEvent event = batch.get(0);
+        long estimatedSize = event.getEstimatedSize();
+
+        assertSame(event.getMessage(), event.getMessage());
+        assertSame(event.getId(), event.getId());
+
+        // the decoded strings are held by the view
+        assertEquals(estimatedSize + HeapSize.of(event.getId()) + HeapSize.of(event.getMessage()),
+                event.getEstimatedSize());
+    }
+
+    @Test
+    public void skippedRecordsGiveEmptyBatch() throws IOException {
+        for (String filename : new String[] { "/control-message-example.json", "/no-message-type-example.json",
+                "/invalid-json-example.json" }) {
+            Record record = new Record().withData(ByteBuffer.wrap(TestUtils.getCompressedTestFile(filename)));
+
+            assertTrue(classUnderTest.toBatch(record).isEmpty());
+        }
+    }
+
+    private static void assertEventEquals(CloudWatchLogsEvent expected, CloudWatchLogsEvent actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMessage(), actual.getMessage());
+        assertEquals(expected.getExtractedFields(), actual.getExtractedFields());
+        assertEquals(expected.getOwner(), actual.getOwner());
+        assertEquals(expected.getLogGroup(), actual.getLogGroup());
+        assertEquals(expected.getLogStream(), actual.getLogStream());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FieldTypeCacheTest {
+
+    @Test
+    public void trustTypeAfterConfirmations() {
+        FieldTypeCache classUnderTest = new FieldTypeCache();
+
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS - 1; i++) {
+            assertEquals(FieldType.STRING, classUnderTest.classify("group", "user", "frank"));
+        }
+        // one value short of the threshold, a number is still classified as such
+        assertEquals(FieldType.LONG, classUnderTest.classify("group", "user", "3"));
+
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS; i++) {
+            assertEquals(FieldType.STRING, classUnderTest.classify("group", "user", "frank"));
+        }
+        assertEquals(FieldType.STRING, classUnderTest.classify("group", "user", "3"));
+        assertEquals(FieldType.STRING, classUnderTest.classify("group", "user", "true"));
+    }
+
+    @Test
+    public void downgradeOnConflictingValue() {
+        FieldTypeCache classUnderTest = new FieldTypeCache();
+
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS; i++) {
+            assertEquals(FieldType.EPOCH, classUnderTest.classify("group", "time", "1421116133"));
+        }
+
+        // an integer outside of the epoch range widens the field to integers
+        assertEquals(FieldType.LONG, classUnderTest.classify("group", "time", "42"));
+        assertEquals(FieldType.LONG, classUnderTest.classify("group", "time", "1421116133"));
+
+        // a value of another kind drops the trusted type
+        assertEquals(FieldType.BOOLEAN, classUnderTest.classify("group", "time", "true"));
+        assertEquals(FieldType.EPOCH, classUnderTest.classify("group", "time", "1421116133"));
+    }
+
+    @Test
+    public void boundLogGroups() {
+        FieldTypeCache classUnderTest = new FieldTypeCache();
+
+        for (int i = 0; i < FieldTypeCache.MAX_LOG_GROUPS; i++) {
+            classUnderTest.classify("group" + i, "user", "frank");
+        }
+        assertTrusted(classUnderTest, "group0", "user");
+
+        // log groups beyond the limit are classified on each call
+        assertUntrusted(classUnderTest, "other", "user");
+        assertUntrusted(classUnderTest, null, "user");
+    }
+
+    @Test
+    public void boundFields() {
+        FieldTypeCache classUnderTest = new FieldTypeCache();
+
+        for (int i = 0; i < FieldTypeCache.MAX_FIELDS_PER_LOG_GROUP; i++) {
+            classUnderTest.classify("group", "field" + i, "frank");
+        }
+        assertTrusted(classUnderTest, "group", "field0");
+
+        // fields beyond the limit are classified on each call, unlike those of other log groups
+        assertUntrusted(classUnderTest, "group", "user");
+        assertUntrusted(classUnderTest, "group", null);
+        assertTrusted(classUnderTest, "other", "user");
+    }
+
+    private static void assertTrusted(FieldTypeCache cache, String logGroup, String fieldName) {
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS; i++) {
+            cache.classify(logGroup, fieldName, "frank");
+        }
+        assertEquals(FieldType.STRING, cache.classify(logGroup, fieldName, "3"));
+    }
+
+    private static void assertUntrusted(FieldTypeCache cache, String logGroup, String fieldName) {
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS; i++) {
+            cache.classify(logGroup, fieldName, "frank");
+        }
+        assertEquals(FieldType.LONG, cache.classify(logGroup, fieldName, "3"));
+    }
+}
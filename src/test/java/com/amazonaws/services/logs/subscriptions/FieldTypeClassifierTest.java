@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FieldTypeClassifierTest {
+
+    @Test
+    public void classify() {
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("200"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("-42"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("0"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("9223372036854775807"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("-9223372036854775808"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("9223372036854775808"));
+        assertEquals(FieldType.STRING,
+                FieldTypeClassifier.classify("49545295115971876468408574808414755329919666212443258898"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("02134"));
+
+        assertEquals(FieldType.DOUBLE, FieldTypeClassifier.classify("0.25"));
+        assertEquals(FieldType.DOUBLE, FieldTypeClassifier.classify("-1.5e-3"));
+        assertEquals(FieldType.DOUBLE, FieldTypeClassifier.classify("6E10"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("1."));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("1e"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("-"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("127.0.0.1"));
+
+        assertEquals(FieldType.BOOLEAN, FieldTypeClassifier.classify("true"));
+        assertEquals(FieldType.BOOLEAN, FieldTypeClassifier.classify("FALSE"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("trueish"));
+
+        assertEquals(FieldType.EPOCH, FieldTypeClassifier.classify("1421116133"));
+        assertEquals(FieldType.EPOCH, FieldTypeClassifier.classify("1421116133213"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("9999999999999"));
+        assertEquals(FieldType.LONG, FieldTypeClassifier.classify("-1421116133"));
+
+        assertEquals(FieldType.DATE, FieldTypeClassifier.classify("2015-01-13"));
+        assertEquals(FieldType.DATE, FieldTypeClassifier.classify("2015-01-13T02:28:53.213Z"));
+        assertEquals(FieldType.DATE, FieldTypeClassifier.classify("2015-01-13T02:28:53-07:00"));
+        assertEquals(FieldType.DATE, FieldTypeClassifier.classify("2015-01-13T02:28+0100"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("2015-13-13"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("2015-01-13T25:00Z"));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("2015-01-13 GET /index.html"));
+
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify(""));
+        assertEquals(FieldType.STRING, FieldTypeClassifier.classify("frank"));
+    }
+
+    @Test
+    public void isAssignable() {
+        assertTrue(FieldTypeClassifier.isAssignable("3", FieldType.DOUBLE));
+        assertTrue(FieldTypeClassifier.isAssignable("1421116133213", FieldType.LONG));
+        assertFalse(FieldTypeClassifier.isAssignable("3.5", FieldType.LONG));
+        assertFalse(FieldTypeClassifier.isAssignable("-", FieldType.LONG));
+        assertTrue(FieldTypeClassifier.isAssignable("anything", FieldType.STRING));
+    }
+
+    @Test
+    public void cacheKeepsFieldTypes() {
+        FieldTypeCache classUnderTest = new FieldTypeCache();
+
+        assertEquals(FieldType.LONG, classUnderTest.classify("group", "size", "3"));
+        assertEquals(FieldType.DOUBLE, classUnderTest.classify("group", "size", "3.5"));
+        for (int i = 0; i < FieldTypeCache.CONFIRMATIONS; i++) {
+            classUnderTest.classify("group", "size", "4.5");
+        }
+
+        // integers are now written as doubles, and other log groups are not affected
+        assertEquals(FieldType.DOUBLE, classUnderTest.classify("group", "size", "3"));
+        assertEquals(FieldType.LONG, classUnderTest.classify("other", "size", "3"));
+
+        // a value that does not fit the type of the field starts over
+        assertEquals(FieldType.STRING, classUnderTest.classify("group", "size", "-"));
+        assertEquals(FieldType.LONG, classUnderTest.classify("group", "size", "3"));
+    }
+}
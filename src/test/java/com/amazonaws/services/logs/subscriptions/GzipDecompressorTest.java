@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+public class GzipDecompressorTest {
+
+    @Test
+    public void decompressReusesBuffer() throws IOException {
+        GzipDecompressor classUnderTest = new GzipDecompressor();
+
+        byte[] large = randomText(200000);
+        byte[] small = randomText(10);
+
+        verifyDecompressed(large, classUnderTest, ByteBuffer.wrap(gzip(large)));
+        byte[] buffer = classUnderTest.getBuffer();
+
+        verifyDecompressed(small, classUnderTest, ByteBuffer.wrap(gzip(small)));
+        assertEquals(buffer, classUnderTest.getBuffer());
+    }
+
+    @Test
+    public void decompressSlicedAndDirectBuffers() throws IOException {
+        GzipDecompressor classUnderTest = new GzipDecompressor();
+
+        byte[] data = randomText(5000);
+        byte[] compressed = gzip(data);
+
+        // a heap buffer that is a window into a larger array
+        byte[] padded = new byte[compressed.length + 20];
+        System.arraycopy(compressed, 0, padded, 7, compressed.length);
+        ByteBuffer sliced = ByteBuffer.wrap(padded, 7, compressed.length).slice();
+        verifyDecompressed(data, classUnderTest, sliced);
+        assertEquals(0, sliced.position());
+
+        // a direct buffer has no backing array
+        ByteBuffer direct = ByteBuffer.allocateDirect(compressed.length);
+        direct.put(compressed);
+        direct.flip();
+        verifyDecompressed(data, classUnderTest, direct);
+
+        // a read-only buffer does not expose its array either
+        verifyDecompressed(data, classUnderTest, ByteBuffer.wrap(compressed).asReadOnlyBuffer());
+    }
+
+    @Test
+    public void decompressConcatenatedMembers() throws IOException {
+        GzipDecompressor classUnderTest = new GzipDecompressor();
+
+        byte[] first = randomText(3000);
+        byte[] second = randomText(100);
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(second));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+
+        verifyDecompressed(expected.toByteArray(), classUnderTest, ByteBuffer.wrap(compressed.toByteArray()));
+    }
+
+    @Test
+    public void decompressPrefixThenRemaining() throws IOException {
+        GzipDecompressor classUnderTest = new GzipDecompressor();
+
+        byte[] data = randomText(100000);
+        ByteBuffer compressed = ByteBuffer.wrap(gzip(data));
+
+        int prefixLength = classUnderTest.decompressPrefix(compressed, 2048);
+        assertTrue(prefixLength >= 2048 && prefixLength < data.length);
+        assertArrayEquals(Arrays.copyOf(data, prefixLength), Arrays.copyOf(classUnderTest.getBuffer(), prefixLength));
+
+        assertEquals(data.length, classUnderTest.decompressRemaining());
+        assertArrayEquals(data, Arrays.copyOf(classUnderTest.getBuffer(), data.length));
+
+        // a prefix longer than the data inflates all of it
+        byte[] small = randomText(100);
+        assertEquals(small.length, classUnderTest.decompressPrefix(ByteBuffer.wrap(gzip(small)), 2048));
+        assertEquals(small.length, classUnderTest.decompressRemaining());
+    }
+
+    @Test(expected = ZipException.class)
+    public void decompressNotGzip() throws IOException {
+        new GzipDecompressor().decompress(ByteBuffer.wrap(randomText(100)));
+    }
+
+    @Test(expected = ZipException.class)
+    public void decompressCorruptTrailer() throws IOException {
+        byte[] compressed = gzip(randomText(100));
+        compressed[compressed.length - 6] ^= 0x55;
+
+        new GzipDecompressor().decompress(ByteBuffer.wrap(compressed));
+    }
+
+    @Test
+    public void decompressHeaderCrc() throws IOException {
+        byte[] data = randomText(1000);
+        byte[] compressed = withHeaderCrc(gzip(data));
+
+        // the JDK checks the header CRC too
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] read = new byte[data.length];
+            int length = 0;
+            for (int count; (count = gzipInputStream.read(read, length, read.length - length)) > 0;) {
+                length += count;
+            }
+            assertArrayEquals(data, read);
+        }
+
+        verifyDecompressed(data, new GzipDecompressor(), ByteBuffer.wrap(compressed));
+    }
+
+    @Test(expected = ZipException.class)
+    public void decompressCorruptHeaderCrc() throws IOException {
+        byte[] compressed = withHeaderCrc(gzip(randomText(100)));
+        compressed[10] ^= 0x55;
+
+        new GzipDecompressor().decompress(ByteBuffer.wrap(compressed));
+    }
+
+    @Test(expected = IOException.class)
+    public void decompressTruncated() throws IOException {
+        byte[] compressed = gzip(randomText(1000));
+
+        new GzipDecompressor().decompress(ByteBuffer.wrap(Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    private static void verifyDecompressed(byte[] expected, GzipDecompressor decompressor, ByteBuffer data)
+            throws IOException {
+        int length = decompressor.decompress(data);
+
+        assertEquals(expected.length, length);
+        assertEquals(expected.length, decompressor.getLength());
+        assertArrayEquals(expected, Arrays.copyOf(decompressor.getBuffer(), length));
+    }
+
+    private static byte[] randomText(int length) {
+        Random random = new Random(length);
+        byte[] text = new byte[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return text;
+    }
+
+    /**
+     * Adds a file name and the header CRC16 to a gzip member written by
+     * GZIPOutputStream, which has neither.
+     */
+    private static byte[] withHeaderCrc(byte[] compressed) {
+        byte[] name = "events.json\0".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        out.write(compressed, 0, 10);
+        out.write(name, 0, name.length);
+        byte[] header = out.toByteArray();
+        header[3] = 2 | 8;
+
+        CRC32 crc = new CRC32();
+        crc.update(header);
+        out.reset();
+        out.write(header, 0, header.length);
+        out.write((int) crc.getValue());
+        out.write((int) crc.getValue() >>> 8);
+        out.write(compressed, 10, compressed.length - 10);
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            gzipOutputStream.write(data);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HeapSizeTest {
+
+    @Test
+    public void countInheritedFields() {
+        // the header, the timestamp and eight references
+        assertEquals(56, HeapSize.shallowSizeOf(BasicCloudWatchLogsEvent.class));
+        // the header and the fields of a subclass on top of them
+        assertEquals(64, HeapSize.shallowSizeOf(Extended.class));
+        // a view has no fields but its own: the header, three references and the index
+        assertEquals(32, HeapSize.shallowSizeOf(viewClass()));
+    }
+
+    private static Class<?> viewClass() {
+        for (Class<?> type : CloudWatchLogsEventBatch.class.getDeclaredClasses()) {
+            if (CloudWatchLogsEvent.class.isAssignableFrom(type)) {
+                return type;
+            }
+        }
+        throw new AssertionError("No view of a batch");
+    }
+
+    private static class Extended extends BasicCloudWatchLogsEvent {
+
+        @SuppressWarnings("unused")
+        private long extra;
+
+        Extended() {
+            super(null, 0, null, null, null, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Amazon Software License (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://aws.amazon.com/asl/
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.subscriptions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.logs.subscriptions.util.TestUtils;
+
+public class StringInternerTest {
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        StringInterner classUnderTest = new StringInterner(16);
+
+        String first = classUnderTest.intern("xxApache/access.logxx".toCharArray(), 2, 17);
+        String second = classUnderTest.intern("Apache/access.log".toCharArray(), 0, 17);
+
+        assertEquals("Apache/access.log", first);
+        assertSame(first, second);
+        assertEquals("", classUnderTest.intern(new char[0], 0, 0));
+    }
+
+    @Test
+    public void internIsBounded() {
+        StringInterner classUnderTest = new StringInterner(4);
+
+        String first = classUnderTest.intern("group-0".toCharArray(), 0, 7);
+        for (int i = 1; i < 100; i++) {
+            char[] chars = ("group-" + i).toCharArray();
+            assertEquals("group-" + i, classUnderTest.intern(chars, 0, chars.length));
+        }
+
+        // with four slots most of the earlier values have been evicted, but lookups stay correct
+        String again = classUnderTest.intern("group-0".toCharArray(), 0, 7);
+        assertEquals(first, again);
+    }
+
+    @Test
+    public void internLongValues() {
+        StringInterner classUnderTest = new StringInterner(16);
+
+        char[] chars = new char[StringInterner.MAX_LENGTH + 1];
+        assertNotSame(classUnderTest.intern(chars, 0, chars.length), classUnderTest.intern(chars, 0, chars.length));
+    }
+
+    @Test
+    public void headerAttributesAreSharedAcrossRecords() throws IOException {
+        CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionTransformer<String>() {
+
+            @Override
+            public String fromClass(CloudWatchLogsEvent record) throws IOException {
+                return record.getMessage();
+            }
+        };
+
+        byte[] data = TestUtils.getCompressedTestFile("/access-log-example.json");
+
+        List<CloudWatchLogsEvent> first = new ArrayList<>(
+                classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))));
+        List<CloudWatchLogsEvent> second = new ArrayList<>(
+                classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))));
+
+        assertSame(first.get(0).getOwner(), second.get(1).getOwner());
+        assertSame(first.get(0).getLogGroup(), second.get(1).getLogGroup());
+        assertSame(first.get(0).getLogStream(), second.get(1).getLogStream());
+    }
+}
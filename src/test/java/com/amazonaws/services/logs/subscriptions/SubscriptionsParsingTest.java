@@ -17,11 +17,15 @@ package com.amazonaws.services.logs.subscriptions;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.Test;
 
@@ -56,6 +60,9 @@ public class SubscriptionsParsingTest {
         assertEquals("GET", logEvents.get(0).getExtractedFields().get("verb"));
         assertEquals("200", logEvents.get(0).getExtractedFields().get("status_code"));
         assertEquals("4535", logEvents.get(0).getExtractedFields().get("response_size"));
+        assertEquals(5, logEvents.get(0).getExtractedFieldCount());
+        assertEquals("ip", logEvents.get(0).getExtractedFieldName(0));
+        assertEquals("127.0.0.1", logEvents.get(0).getExtractedFieldValue(0));
 
         assertEquals("49545295115971876468408574808465530214343480843939348498", logEvents.get(1).getId());
         assertEquals(1421116143214L, logEvents.get(1).getTimestamp());
@@ -88,12 +95,90 @@ public class SubscriptionsParsingTest {
         assertEquals("49545295115971876468408574808465530214343480843939348498", logEvents.get(0).getId());
         assertEquals(1421116143214L, logEvents.get(0).getTimestamp());
         assertNull(logEvents.get(0).getExtractedFields());
+        assertEquals(-1, logEvents.get(0).getExtractedFieldCount());
 
         assertEquals("49545295115971876468408574808465530214343150403450640305", logEvents.get(1).getId());
         assertEquals(1421116143456L, logEvents.get(1).getTimestamp());
         assertNull(logEvents.get(0).getExtractedFields());
     }
 
+    @Test
+    public void parseHeaderAfterLogEvents() throws IOException {
+        CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionToStringTransformer();
+
+        // load the example events
+        byte[] data = TestUtils.getCompressedTestFile("/header-after-log-events-example.json");
+
+        // execute
+        List<CloudWatchLogsEvent> logEvents = new ArrayList<>(
+                classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))));
+
+        // verify
+        assertEquals(1, logEvents.size());
+        assertEquals("123456789012", logEvents.get(0).getOwner());
+        assertEquals("Apache/access.log", logEvents.get(0).getLogGroup());
+        assertEquals("i-c3f9bec9", logEvents.get(0).getLogStream());
+        assertEquals("49545295115971876468408574808414755329919666212443258898", logEvents.get(0).getId());
+        assertEquals(1421116133213L, logEvents.get(0).getTimestamp());
+        assertEquals("127.0.0.1 frank GET 200 4535", logEvents.get(0).getMessage());
+        assertEquals("frank", logEvents.get(0).getExtractedFields().get("user"));
+    }
+
+    @Test
+    public void skipRecordsByHeader() throws IOException {
+        CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionToStringTransformer();
+        byte[] data = TestUtils.getCompressedTestFile("/access-log-example.json");
+
+        RecordingHeaderPredicate rejectAll = new RecordingHeaderPredicate(false);
+        classUnderTest.setHeaderPredicate(rejectAll);
+        assertEquals(0, classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))).size());
+        assertEquals("DATA_MESSAGE 123456789012 Apache/access.log i-c3f9bec9", rejectAll.header);
+
+        classUnderTest.setHeaderPredicate(new RecordingHeaderPredicate(true));
+        int kept = classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))).size();
+        classUnderTest.setHeaderPredicate(null);
+        assertEquals(classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))).size(), kept);
+        assertTrue(kept > 0);
+    }
+
+    @Test
+    public void skipRecordsByHeaderAfterLogEvents() throws IOException {
+        CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionToStringTransformer();
+        byte[] data = TestUtils.getCompressedTestFile("/header-after-log-events-example.json");
+
+        // the header is only complete once the log events have been read
+        RecordingHeaderPredicate rejectAll = new RecordingHeaderPredicate(false);
+        classUnderTest.setHeaderPredicate(rejectAll);
+        assertEquals(0, classUnderTest.toBatch(new Record().withData(ByteBuffer.wrap(data))).size());
+        assertEquals("DATA_MESSAGE 123456789012 Apache/access.log i-c3f9bec9", rejectAll.header);
+
+        classUnderTest.setHeaderPredicate(new RecordingHeaderPredicate(true));
+        assertEquals(1, classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))).size());
+    }
+
+    @Test
+    public void skipControlMessagesByHeader() throws IOException {
+        CloudWatchLogsSubscriptionTransformer<String> classUnderTest = new CloudWatchLogsSubscriptionToStringTransformer();
+
+        // a control message whose log events go well past the start of the payload
+        StringBuilder json = new StringBuilder("{\"messageType\":\"CONTROL_MESSAGE\",\"owner\":\"CloudwatchLogs\","
+                + "\"logGroup\":\"\",\"logStream\":\"\",\"subscriptionFilters\":[],\"logEvents\":[");
+        for (int i = 0; i < 200; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"id\":\"\",\"timestamp\":1438485463442,\"message\":")
+                    .append("\"CWL CONTROL MESSAGE: Checking health of destination Kinesis stream.\"}");
+        }
+        byte[] data = gzip(json.append("]}").toString());
+
+        // with or without a header predicate, the log events are neither uncompressed nor parsed
+        RecordingHeaderPredicate acceptAll = new RecordingHeaderPredicate(true);
+        for (HeaderPredicate predicate : new HeaderPredicate[] { null, acceptAll }) {
+            classUnderTest.setHeaderPredicate(predicate);
+            assertEquals(0, classUnderTest.toClass(new Record().withData(ByteBuffer.wrap(data))).size());
+            assertTrue(GzipDecompressor.get().getLength() <= 2048);
+        }
+        assertNull(acceptAll.header);
+    }
+
     @Test
     public void parseControlMessage() throws IOException {
         verifyRecordIsSkipped(TestUtils.getCompressedTestFile("/control-message-example.json"));
@@ -121,6 +206,30 @@ public class SubscriptionsParsingTest {
         assertEquals(0, logEvents.size());
     }
 
+    private static byte[] gzip(String json) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(compressed)) {
+            gzipOutputStream.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return compressed.toByteArray();
+    }
+
+    private static class RecordingHeaderPredicate implements HeaderPredicate {
+
+        private final boolean result;
+        private String header;
+
+        RecordingHeaderPredicate(boolean result) {
+            this.result = result;
+        }
+
+        @Override
+        public boolean test(String messageType, String owner, String logGroup, String logStream) {
+            header = messageType + " " + owner + " " + logGroup + " " + logStream;
+            return result;
+        }
+    }
+
     private class CloudWatchLogsSubscriptionToStringTransformer extends CloudWatchLogsSubscriptionTransformer<String> {
 
         @Override